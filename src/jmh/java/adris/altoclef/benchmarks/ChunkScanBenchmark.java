@@ -0,0 +1,49 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.ChunkScanEngine;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Scanning one chunk for the blocks the scanner tracks, which is what every chunk load costs the worker pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkScanBenchmark {
+
+    /**
+     * ORES only matches rare blocks, STONE also matches the block most of the chunk is made of.
+     */
+    @Param({"ORES", "STONE"})
+    public String filter;
+
+    private ChunkSection[] sections;
+    private Predicate<BlockState> blockFilter;
+    private final ChunkPos chunkPos = new ChunkPos(3, -7);
+
+    @Setup
+    public void setup() {
+        sections = Fixtures.terrainSections(42);
+        Set<Block> targets = filter.equals("ORES")
+                ? Set.of(Blocks.DIAMOND_ORE, Blocks.DEEPSLATE_DIAMOND_ORE, Blocks.IRON_ORE, Blocks.DEEPSLATE_IRON_ORE)
+                : Set.of(Blocks.DIAMOND_ORE, Blocks.DEEPSLATE_DIAMOND_ORE, Blocks.STONE);
+        blockFilter = state -> targets.contains(state.getBlock());
+    }
+
+    @Benchmark
+    public ChunkScanEngine.ChunkScanResult scanChunk() {
+        return ChunkScanEngine.scan(chunkPos, sections, Fixtures.BOTTOM_SECTION, blockFilter);
+    }
+}
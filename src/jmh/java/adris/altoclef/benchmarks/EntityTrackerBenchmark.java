@@ -0,0 +1,95 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.EntityTracker;
+import adris.altoclef.trackers.TrackerManager;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ExperienceOrbEntity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.chunk.ChunkSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The entity tracker sorting every loaded entity into close entities and grounded item drops, which it does every
+ * tick, and the drop lookups tasks run on the result.
+ * <p>
+ * Only item drops and experience orbs, the other entities can't be built without a world. So this doesn't include
+ * the hostile and projectile checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityTrackerBenchmark {
+
+    // Entities loaded around the player, a few hundred is a farm or a busy server
+    @Param({"50", "500"})
+    public int entities;
+
+    private EntityTracker entityTracker;
+    private Vec3d playerPos;
+    private Item[] drops;
+    private Item[] wanted;
+
+    @Setup
+    public void setup() {
+        Fixtures.bootstrap();
+        // Items only exist once the registries are bootstrapped
+        drops = new Item[]{Items.COBBLESTONE, Items.DIRT, Items.OAK_LOG, Items.ROTTEN_FLESH, Items.BONE, Items.STRING, Items.ARROW};
+        wanted = new Item[]{Items.OAK_LOG, Items.STRING};
+
+        ReplayView view = new ReplayView();
+        ReplayWorld world = new ReplayWorld(Fixtures.BOTTOM_SECTION, Fixtures.SECTION_COUNT);
+        ChunkSection[] sections = Fixtures.terrainSections(5);
+        for (int x = -3; x <= 3; x++) {
+            for (int z = -3; z <= 3; z++) {
+                world.putChunk(x, z, sections);
+            }
+        }
+        view.setWorld(world);
+        view.setTick(0, 0.5, Fixtures.SURFACE_Y + 1, 0.5);
+        playerPos = view.getPlayerPos();
+
+        List<Entity> fixtures = new ArrayList<>(Fixtures.scatteredEntities(entities, 48, 11));
+        for (int i = 0; i < fixtures.size(); i++) {
+            // One in four is an orb instead, they're close by when they show up
+            if (i % 4 == 3) {
+                Entity orb = new ExperienceOrbEntity(EntityType.EXPERIENCE_ORB, null);
+                orb.setPosition(fixtures.get(i).getPos().multiply(0.1, 1, 0.1));
+                fixtures.set(i, orb);
+            } else {
+                ((ItemEntity) fixtures.get(i)).setStack(new ItemStack(drops[i % drops.length], 1 + i % 16));
+            }
+        }
+        for (Entity entity : fixtures) {
+            view.entities.put(entity.getId(), entity);
+        }
+
+        TrackerManager trackers = new TrackerManager(null, view);
+        entityTracker = new EntityTracker(trackers);
+        // Catch up with the world once, like the first tick in it
+        entityTracker.getCloseEntities();
+    }
+
+    @Benchmark
+    public int updateState() {
+        entityTracker.setDirty();
+        return entityTracker.getCloseEntities().size();
+    }
+
+    @Benchmark
+    public Optional<ItemEntity> closestItemDrop() {
+        return entityTracker.getClosestItemDrop(playerPos, wanted);
+    }
+}
@@ -0,0 +1,72 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.Subscription;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing to synchronous subscribers, directly and through a supertype subscription.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int subscribers;
+
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+    private final BaseEvent baseEvent = new BaseEvent();
+    private final ChildEvent childEvent = new ChildEvent();
+    private final UnheardEvent unheardEvent = new UnheardEvent();
+    private long received;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(EventBus.subscribe(BaseEvent.class, evt -> received++));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Subscription<?> subscription : subscriptions) {
+            EventBus.unsubscribe(subscription);
+        }
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public long publish() {
+        EventBus.publish(baseEvent);
+        return received;
+    }
+
+    @Benchmark
+    public long publishToSupertype() {
+        EventBus.publish(childEvent);
+        return received;
+    }
+
+    @Benchmark
+    public long publishWithoutSubscribers() {
+        EventBus.publish(unheardEvent);
+        return received;
+    }
+
+    public static class BaseEvent {
+    }
+
+    public static class ChildEvent extends BaseEvent {
+    }
+
+    public static class UnheardEvent {
+    }
+}
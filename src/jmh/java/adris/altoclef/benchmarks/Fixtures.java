@@ -0,0 +1,91 @@
+package adris.altoclef.benchmarks;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.world.Bootstrap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic worlds for the benchmarks. Nothing here needs a running client, only the vanilla registries.
+ */
+final class Fixtures {
+
+    // Overworld layout: 24 sections from y = -64 to y = 319
+    static final int BOTTOM_SECTION = -4;
+    static final int SECTION_COUNT = 24;
+    static final int SURFACE_Y = 64;
+
+    private static boolean bootstrapped = false;
+
+    private Fixtures() {
+    }
+
+    static synchronized void bootstrap() {
+        if (bootstrapped) return;
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        bootstrapped = true;
+    }
+
+    /**
+     * Deepslate/stone up to the surface with a sprinkle of ores, grass on top and air above.
+     */
+    static ChunkSection[] terrainSections(long seed) {
+        bootstrap();
+        Random random = new Random(seed);
+        ChunkSection[] sections = new ChunkSection[SECTION_COUNT];
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            PalettedContainer<BlockState> blocks = new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+            // Biomes are never read while scanning
+            ChunkSection section = new ChunkSection(blocks, null);
+            int startY = (BOTTOM_SECTION + i) * 16;
+            for (int y = 0; y < 16; y++) {
+                int worldY = startY + y;
+                if (worldY > SURFACE_Y) break;
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        section.setBlockState(x, y, z, terrainAt(random, worldY), false);
+                    }
+                }
+            }
+            sections[i] = section;
+        }
+        return sections;
+    }
+
+    private static BlockState terrainAt(Random random, int y) {
+        if (y == SURFACE_Y) return Blocks.GRASS_BLOCK.getDefaultState();
+        if (y > SURFACE_Y - 4) return Blocks.DIRT.getDefaultState();
+        boolean deep = y < 0;
+        int roll = random.nextInt(1000);
+        if (roll < 2) return (deep ? Blocks.DEEPSLATE_DIAMOND_ORE : Blocks.DIAMOND_ORE).getDefaultState();
+        if (roll < 10) return (deep ? Blocks.DEEPSLATE_IRON_ORE : Blocks.IRON_ORE).getDefaultState();
+        if (roll < 20) return (deep ? Blocks.DEEPSLATE_COAL_ORE : Blocks.COAL_ORE).getDefaultState();
+        if (roll < 40) return Blocks.AIR.getDefaultState();
+        return (deep ? Blocks.DEEPSLATE : Blocks.STONE).getDefaultState();
+    }
+
+    /**
+     * Item entities spread around the origin. Entities don't touch their world until they tick, so they don't get one.
+     */
+    static List<ItemEntity> scatteredEntities(int count, double spread, long seed) {
+        bootstrap();
+        Random random = new Random(seed);
+        List<ItemEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ItemEntity entity = new ItemEntity(EntityType.ITEM, null);
+            entity.setPosition((random.nextDouble() - 0.5) * spread, SURFACE_Y + 1 + random.nextInt(4), (random.nextDouble() - 0.5) * spread);
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,70 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.util.baritone.GoalRunAwayFromEntities;
+import adris.altoclef.util.helpers.ProjectileHelper;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per node costs of the goals we hand baritone while fleeing. Baritone calls these for every node it expands,
+ * so anything here multiplies by tens of thousands per path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoalBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int entities;
+
+    private GoalRunAwayFromEntities runAway;
+    private final Vec3d arrowOrigin = new Vec3d(10.5, 70.2, -3.5);
+    private final Vec3d arrowVelocity = new Vec3d(-1.6, 0.15, 0.4);
+    private int node;
+
+    @Setup
+    public void setup() {
+        List<Entity> fixtures = new ArrayList<>(Fixtures.scatteredEntities(entities, 48, 3));
+        runAway = new GoalRunAwayFromEntities(null, 16, false, 0.8) {
+            @Override
+            protected List<Entity> getEntities(AltoClef mod) {
+                return fixtures;
+            }
+        };
+        runAway.takeSnapshot();
+    }
+
+    // Walks over a 32x32 area like a search spreading out from the player would
+    private int nextNode() {
+        node = (node + 1) & 1023;
+        return node;
+    }
+
+    @Benchmark
+    public double runAwayHeuristic() {
+        int n = nextNode();
+        return runAway.heuristic((n & 31) - 16, Fixtures.SURFACE_Y + 1, (n >> 5) - 16);
+    }
+
+    @Benchmark
+    public boolean runAwayIsInGoal() {
+        int n = nextNode();
+        return runAway.isInGoal((n & 31) - 16, Fixtures.SURFACE_Y + 1, (n >> 5) - 16);
+    }
+
+    @Benchmark
+    public Vec3d arrowClosestApproach() {
+        int n = nextNode();
+        Vec3d player = new Vec3d((n & 31) - 16, Fixtures.SURFACE_Y + 1, (n >> 5) - 16);
+        return ProjectileHelper.calculateArrowClosestApproach(arrowOrigin, arrowVelocity, ProjectileHelper.ARROW_GRAVITY_ACCEL, player);
+    }
+}
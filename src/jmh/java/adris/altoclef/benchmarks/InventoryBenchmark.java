@@ -0,0 +1,63 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.TrackerManager;
+import adris.altoclef.trackers.storage.InventorySubTracker;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory counts from the inventory tracker. It rebuilds its item index when a slot changes and answers from the
+ * index until the next change, so both are measured: a count right after a slot update, and one without.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryBenchmark {
+
+    private ReplayView view;
+    private InventorySubTracker inventoryTracker;
+    private Item[] queryItems;
+
+    @Setup
+    public void setup() {
+        Fixtures.bootstrap();
+        // A mid game inventory, the rest of the slots are empty
+        Item[] contents = new Item[]{
+                Items.DIAMOND_PICKAXE, Items.IRON_SWORD, Items.COBBLESTONE, Items.COBBLESTONE, Items.DIRT, Items.OAK_LOG,
+                Items.OAK_PLANKS, Items.STICK, Items.COAL, Items.RAW_IRON, Items.IRON_INGOT, Items.BREAD, Items.TORCH,
+                Items.CRAFTING_TABLE, Items.FURNACE, Items.WATER_BUCKET, Items.COBBLESTONE, Items.ROTTEN_FLESH,
+                Items.STRING, Items.BONE, Items.ARROW, Items.BOW, Items.GRAVEL, Items.FLINT
+        };
+        // What tasks usually ask for
+        queryItems = new Item[]{Items.OAK_LOG, Items.OAK_PLANKS, Items.STICK, Items.COBBLESTONE, Items.COAL, Items.IRON_INGOT, Items.DIAMOND};
+
+        view = new ReplayView();
+        for (int slot = 0; slot < contents.length; slot++) {
+            Item item = contents[slot];
+            view.inventory.setStack(slot, new ItemStack(item, Math.min(item.getMaxCount(), 1 + slot * 5)));
+        }
+        view.screenHandler.nextRevision();
+
+        TrackerManager trackers = new TrackerManager(null, view);
+        inventoryTracker = new InventorySubTracker(trackers);
+    }
+
+    @Benchmark
+    public int countAfterSlotUpdate() {
+        // Like a slot update from the server
+        view.screenHandler.nextRevision();
+        return inventoryTracker.getItemCount(true, false, queryItems);
+    }
+
+    @Benchmark
+    public int count() {
+        return inventoryTracker.getItemCount(true, false, queryItems);
+    }
+}
@@ -0,0 +1,87 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.BlockPositionGrid;
+import adris.altoclef.trackers.ChunkBlockIndex;
+import adris.altoclef.trackers.ChunkScanEngine;
+import adris.altoclef.util.collections.LongArrayList;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Nearest block queries against the scanner's index, which is the part of `BlockScanner.getNearestBlock`
+ * that grows with the number of known blocks. The world checks done on each candidate aren't included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearestBlockBenchmark {
+
+    // Chunks loaded in every direction around the player, 10 is a 21x21 chunk render distance
+    @Param({"4", "10"})
+    public int radius;
+
+    private BlockPositionGrid diamonds;
+    private BlockPositionGrid stone;
+    private double[] queries;
+    private int next;
+    private final LongArrayList result = new LongArrayList();
+
+    @Setup
+    public void setup() {
+        ChunkSection[] sections = Fixtures.terrainSections(42);
+        Predicate<BlockState> filter = state -> state.isOf(Blocks.DIAMOND_ORE) || state.isOf(Blocks.DEEPSLATE_DIAMOND_ORE) || state.isOf(Blocks.STONE);
+
+        // Same layout everywhere is fine, the positions still differ per chunk
+        ChunkBlockIndex index = new ChunkBlockIndex(64);
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                ChunkPos pos = new ChunkPos(x, z);
+                index.putChunk(pos, ChunkScanEngine.scan(pos, sections, Fixtures.BOTTOM_SECTION, filter).blocks());
+            }
+        }
+        diamonds = index.getGrid(Blocks.DEEPSLATE_DIAMOND_ORE);
+        stone = index.getGrid(Blocks.STONE);
+
+        Random random = new Random(7);
+        queries = new double[3 * 256];
+        for (int i = 0; i < queries.length; i += 3) {
+            queries[i] = (random.nextDouble() - 0.5) * radius * 16;
+            queries[i + 1] = random.nextInt(128) - 60;
+            queries[i + 2] = (random.nextDouble() - 0.5) * radius * 16;
+        }
+    }
+
+    private int nextQuery() {
+        next = (next + 3) % queries.length;
+        return next;
+    }
+
+    @Benchmark
+    public long nearestRare() {
+        int i = nextQuery();
+        return diamonds.nearest(queries[i], queries[i + 1], queries[i + 2], Double.POSITIVE_INFINITY, pos -> true);
+    }
+
+    @Benchmark
+    public long nearestCommon() {
+        int i = nextQuery();
+        return stone.nearest(queries[i], queries[i + 1], queries[i + 2], Double.POSITIVE_INFINITY, pos -> true);
+    }
+
+    @Benchmark
+    public LongArrayList nearestFiveRare() {
+        int i = nextQuery();
+        diamonds.nearest(queries[i], queries[i + 1], queries[i + 2], 5, pos -> true, result);
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.ClientView;
+import adris.altoclef.util.Dimension;
+import adris.altoclef.util.slots.PlayerSlot;
+import adris.altoclef.util.slots.Slot;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.screen.PlayerScreenHandler;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
+
+import java.util.LinkedHashMap;
+
+/**
+ * What the trackers see during a replay: the recorded world, entities and inventory.
+ * <p>
+ * There is no player entity, it can't be built without a real world. Its position is all the trackers need from it,
+ * except for the hostile checks which need it to raycast from.
+ */
+final class ReplayView implements ClientView {
+
+    // Same as the default entityReachRange setting
+    private static final double ENTITY_REACH = 4;
+
+    private ReplayWorld world;
+    private Vec3d playerPos;
+    private long time;
+
+    // Recorded entity id -> entity, in the order they showed up like the client world
+    final LinkedHashMap<Integer, Entity> entities = new LinkedHashMap<>();
+
+    final PlayerInventory inventory = new PlayerInventory(null);
+    final PlayerScreenHandler screenHandler = new PlayerScreenHandler(inventory, false, null);
+
+    ReplayWorld getReplayWorld() {
+        return world;
+    }
+
+    void setWorld(ReplayWorld world) {
+        this.world = world;
+        entities.clear();
+    }
+
+    void setTick(long time, double playerX, double playerY, double playerZ) {
+        this.time = time;
+        playerPos = new Vec3d(playerX, playerY, playerZ);
+    }
+
+    @Override
+    public boolean isInGame() {
+        return world != null;
+    }
+
+    @Override
+    public BlockView getWorld() {
+        return world;
+    }
+
+    @Override
+    public Dimension getDimension() {
+        return Dimension.OVERWORLD;
+    }
+
+    @Override
+    public ChunkSection[] getChunkSections(int chunkX, int chunkZ) {
+        return world != null ? world.getSections(chunkX, chunkZ) : null;
+    }
+
+    @Override
+    public int getBottomSectionCoord() {
+        return world != null ? world.getBottomSectionCoord() : 0;
+    }
+
+    @Override
+    public Vec3d getPlayerPos() {
+        return playerPos;
+    }
+
+    @Override
+    public PlayerEntity getPlayer() {
+        return null;
+    }
+
+    @Override
+    public double getEntityReachRange() {
+        return ENTITY_REACH;
+    }
+
+    @Override
+    public Iterable<Entity> getEntities() {
+        return entities.values();
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public ScreenHandler getScreenHandler() {
+        return screenHandler;
+    }
+
+    @Override
+    public Slot getScreenSlot(int windowSlot) {
+        return new PlayerSlot(windowSlot);
+    }
+
+    @Override
+    public ItemStack getCursorStack() {
+        return ItemStack.EMPTY;
+    }
+}
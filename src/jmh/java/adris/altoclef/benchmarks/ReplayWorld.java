@@ -0,0 +1,150 @@
+package adris.altoclef.benchmarks;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.HashMap;
+
+/**
+ * Stand-in for the client world during a replay. Only holds block states, which is all the trackers read from it.
+ * A new one is made every time the recording changes worlds, like the client does.
+ */
+final class ReplayWorld implements BlockView {
+
+    // Loaded chunks are always within render distance of each other, so a direct mapped window finds them
+    // without boxing a key. The map only backs up the rare far away chunk that shares a slot.
+    private static final int WINDOW = 128;
+
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+    private final HashMap<Long, ChunkSection[]> chunks = new HashMap<>();
+    private final long[] windowKeys = new long[WINDOW * WINDOW];
+    private final ChunkSection[][] windowSections = new ChunkSection[WINDOW * WINDOW][];
+
+    private final int bottomSectionCoord;
+    private final int sectionCount;
+
+    private boolean sharedSlots = false;
+
+    ReplayWorld(int bottomSectionCoord, int sectionCount) {
+        this.bottomSectionCoord = bottomSectionCoord;
+        this.sectionCount = sectionCount;
+    }
+
+    int getBottomSectionCoord() {
+        return bottomSectionCoord;
+    }
+
+    /**
+     * Builds real sections out of recorded state ids.
+     */
+    static ChunkSection[] buildSections(int[][] states) {
+        ChunkSection[] sections = new ChunkSection[states.length];
+        for (int i = 0; i < states.length; i++) {
+            PalettedContainer<BlockState> blocks = new PalettedContainer<>(Block.STATE_IDS, AIR, PalettedContainer.PaletteProvider.BLOCK_STATE);
+            // Biomes are never read while scanning
+            ChunkSection section = new ChunkSection(blocks, null);
+            int[] ids = states[i];
+            if (ids != null) {
+                int index = 0;
+                for (int y = 0; y < 16; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            BlockState state = Block.getStateFromRawId(ids[index++]);
+                            if (!state.isAir()) {
+                                section.setBlockState(x, y, z, state, false);
+                            }
+                        }
+                    }
+                }
+            }
+            sections[i] = section;
+        }
+        return sections;
+    }
+
+    void putChunk(int x, int z, ChunkSection[] sections) {
+        long key = ChunkPos.toLong(x, z);
+        chunks.put(key, sections);
+        int slot = slot(x, z);
+        if (windowSections[slot] != null && windowKeys[slot] != key) {
+            sharedSlots = true;
+        }
+        windowKeys[slot] = key;
+        windowSections[slot] = sections;
+    }
+
+    void removeChunk(int x, int z) {
+        long key = ChunkPos.toLong(x, z);
+        chunks.remove(key);
+        int slot = slot(x, z);
+        if (windowSections[slot] != null && windowKeys[slot] == key) {
+            windowSections[slot] = null;
+        }
+    }
+
+    ChunkSection[] getSections(int x, int z) {
+        long key = ChunkPos.toLong(x, z);
+        int slot = slot(x, z);
+        ChunkSection[] sections = windowSections[slot];
+        if (sections != null && windowKeys[slot] == key) return sections;
+        if (!sharedSlots) return null;
+        return chunks.get(key);
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return sectionCount * 16;
+    }
+
+    @Override
+    public int getBottomY() {
+        return bottomSectionCoord * 16;
+    }
+
+    BlockState getBlockState(int x, int y, int z) {
+        ChunkSection[] sections = getSections(x >> 4, z >> 4);
+        if (sections == null) return AIR;
+        int index = (y >> 4) - bottomSectionCoord;
+        if (index < 0 || index >= sections.length) return AIR;
+        return sections[index].getBlockState(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * @return the state that was there before, {@code null} if the chunk isn't loaded
+     */
+    BlockState setBlockState(int x, int y, int z, BlockState state) {
+        ChunkSection[] sections = getSections(x >> 4, z >> 4);
+        if (sections == null) return null;
+        int index = (y >> 4) - bottomSectionCoord;
+        if (index < 0 || index >= sections.length) return null;
+        return sections[index].setBlockState(x & 15, y & 15, z & 15, state, false);
+    }
+
+    private static int slot(int x, int z) {
+        return Math.floorMod(x, WINDOW) * WINDOW + Math.floorMod(z, WINDOW);
+    }
+}
@@ -0,0 +1,49 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.TaskCatalogue;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue lookups by name and by item, which tasks do every tick while deciding what to get next.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskCatalogueBenchmark {
+
+    private String[] names;
+    private Item[] items;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Fixtures.bootstrap();
+        names = TaskCatalogue.resourceNames().toArray(new String[0]);
+        items = new Item[]{Items.IRON_INGOT, Items.DIAMOND_PICKAXE, Items.OAK_PLANKS, Items.BREAD, Items.ENDER_EYE, Items.BEDROCK};
+    }
+
+    @Benchmark
+    public boolean taskExistsByName() {
+        next = (next + 1) % names.length;
+        return TaskCatalogue.taskExists(names[next]);
+    }
+
+    @Benchmark
+    public Item[] itemMatchesByName() {
+        next = (next + 1) % names.length;
+        return TaskCatalogue.getItemMatches(names[next]);
+    }
+
+    @Benchmark
+    public boolean taskExistsByItem() {
+        next = (next + 1) % items.length;
+        return TaskCatalogue.taskExists(items[next]);
+    }
+}
@@ -0,0 +1,359 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import adris.altoclef.eventbus.events.ChunkUnloadEvent;
+import adris.altoclef.eventbus.events.EntityLoadEvent;
+import adris.altoclef.eventbus.events.EntityUnloadEvent;
+import adris.altoclef.telemetry.SessionRecording;
+import adris.altoclef.trackers.BlockScanner;
+import adris.altoclef.trackers.ChunkScanEngine;
+import adris.altoclef.trackers.EntityTracker;
+import adris.altoclef.trackers.TrackerManager;
+import adris.altoclef.trackers.storage.InventorySubTracker;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ExperienceOrbEntity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.chunk.ChunkSection;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays a session recorded with {@code @record} against the real trackers, without the game, and reports how long
+ * each tick took and how much it allocated.
+ * <p>
+ * The trackers read the recording through a {@link ReplayView} instead of the client. Per tick, the recorded chunk
+ * loads, block updates and entity changes are handed to them the way the client's events would, then the
+ * {@link TrackerManager}, {@link BlockScanner}, {@link EntityTracker} and {@link InventorySubTracker} update and get
+ * asked what tasks usually ask them. Chunk scans run on workers in game, so they're timed on their own.
+ * <p>
+ * Not replayed, because they need a live client:
+ * <ul>
+ *     <li>The task runner and the chains, they need baritone and a player entity.</li>
+ *     <li>Entities other than item drops and experience orbs. Mobs, players and projectiles can't be built without a
+ *     real world, so the hostile and projectile parts of the entity tracker never run. The report says how many
+ *     were skipped.</li>
+ * </ul>
+ * Recorded commands are listed in the report so the numbers can be read against what the bot was doing.
+ * <p>
+ * Usage: {@code TickReplay <recording> [--warmup passes] [--csv file]}, or {@code gradlew :1.21.1:replay -PreplayArgs="..."}
+ */
+public final class TickReplay {
+
+    private TickReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        int warmup = 2;
+        Path csv = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--csv" -> csv = Path.of(args[++i]);
+                default -> file = Path.of(args[i]);
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: TickReplay <recording> [--warmup passes] [--csv file]");
+            System.exit(1);
+            return;
+        }
+
+        Fixtures.bootstrap();
+        List<SessionRecording.Tick> ticks = SessionRecording.read(file);
+        if (ticks.isEmpty()) {
+            System.err.println("No ticks in " + file);
+            System.exit(1);
+            return;
+        }
+        System.out.println("Replaying " + ticks.size() + " ticks from " + file + " (" + warmup + " warmup passes)");
+
+        // The trackers subscribe to the static event bus, so every pass reuses them. Recordings start with a world
+        // change, which makes them start over.
+        Replay replay = new Replay();
+        for (int i = 0; i < warmup; i++) {
+            replay.run(ticks);
+        }
+        replay.run(ticks);
+
+        replay.report(ticks);
+        if (csv != null) {
+            replay.writeCsv(csv);
+            System.out.println("Wrote per tick results to " + csv);
+        }
+    }
+
+    // Only built after Fixtures.bootstrap(), blocks and items don't exist before that
+    private static final class Replay {
+
+        // What tasks usually ask the scanner for
+        private final Block[] queryBlocks = new Block[]{
+                Blocks.OAK_LOG, Blocks.BIRCH_LOG, Blocks.SPRUCE_LOG,
+                Blocks.COAL_ORE, Blocks.IRON_ORE, Blocks.DIAMOND_ORE, Blocks.DEEPSLATE_IRON_ORE, Blocks.DEEPSLATE_DIAMOND_ORE,
+                Blocks.CRAFTING_TABLE, Blocks.FURNACE, Blocks.CHEST,
+                Blocks.WATER, Blocks.LAVA, Blocks.OBSIDIAN
+        };
+
+        // And the inventory for
+        private final Item[] queryItems = new Item[]{
+                Items.OAK_LOG, Items.OAK_PLANKS, Items.STICK, Items.COBBLESTONE, Items.COAL, Items.IRON_INGOT, Items.DIAMOND
+        };
+
+        private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private final ReplayView view = new ReplayView();
+        // Scans are run by hand after each tick, so they can be timed apart from it
+        private final List<Runnable> queuedScans = new ArrayList<>();
+
+        private final TrackerManager trackers = new TrackerManager(null, view);
+        private final EntityTracker entityTracker = new EntityTracker(trackers);
+        private final InventorySubTracker inventoryTracker = new InventorySubTracker(trackers);
+        private final BlockScanner blockScanner = new BlockScanner(null, view, new ChunkScanEngine(queuedScans::add));
+
+        // Events of the tick being replayed, handed to the trackers in the measured part. A ChunkPos is a chunk load.
+        private final List<Object> pending = new ArrayList<>();
+        private final HashSet<Integer> seenEntities = new HashSet<>();
+        private final HashSet<Integer> skippedIds = new HashSet<>();
+
+        private long[] tickNanos;
+        private long[] tickBytes;
+        private long[] scanNanos;
+        private int scanCount;
+        private long found;
+        private int replayedEntities;
+        private final Map<String, Integer> skippedEntities = new TreeMap<>();
+
+        private void run(List<SessionRecording.Tick> ticks) {
+            tickNanos = new long[ticks.size()];
+            tickBytes = new long[ticks.size()];
+            scanNanos = new long[64];
+            scanCount = 0;
+            found = 0;
+            replayedEntities = 0;
+            skippedEntities.clear();
+            skippedIds.clear();
+            for (SessionRecording.Tick tick : ticks) {
+                prepare(tick);
+
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                tick(tick);
+                tickNanos[tick.index()] = System.nanoTime() - start;
+                tickBytes[tick.index()] = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                runScans();
+            }
+        }
+
+        /**
+         * What the game does before we get to see a tick: loading chunks, changing blocks, moving entities.
+         */
+        private void prepare(SessionRecording.Tick tick) {
+            pending.clear();
+            for (SessionRecording.Event event : tick.events()) {
+                if (event instanceof SessionRecording.WorldChange change) {
+                    view.setWorld(new ReplayWorld(change.bottomSectionCoord(), change.sectionCount()));
+                    pending.clear();
+                } else if (event instanceof SessionRecording.ChunkLoad load) {
+                    ChunkSection[] sections = ReplayWorld.buildSections(load.sections());
+                    view.getReplayWorld().putChunk(load.x(), load.z(), sections);
+                    pending.add(new ChunkPos(load.x(), load.z()));
+                } else if (event instanceof SessionRecording.ChunkUnload unload) {
+                    view.getReplayWorld().removeChunk(unload.x(), unload.z());
+                    pending.add(new ChunkUnloadEvent(new ChunkPos(unload.x(), unload.z())));
+                } else if (event instanceof SessionRecording.BlockUpdate update) {
+                    BlockPos pos = BlockPos.fromLong(update.pos());
+                    BlockState state = Block.getStateFromRawId(update.state());
+                    BlockState previous = view.getReplayWorld().setBlockState(pos.getX(), pos.getY(), pos.getZ(), state);
+                    if (previous != null) {
+                        pending.add(new BlockUpdateEvent(pos, previous, state));
+                    }
+                }
+            }
+
+            view.setTick(tick.index(), tick.playerX(), tick.playerY(), tick.playerZ());
+            prepareEntities(tick.entities());
+            if (tick.inventory() != null) {
+                prepareInventory(tick.inventory());
+            }
+        }
+
+        private void prepareEntities(SessionRecording.Entities recorded) {
+            seenEntities.clear();
+            double[] positions = recorded.positions();
+            for (int i = 0; i < recorded.size(); i++) {
+                int id = recorded.ids()[i];
+                seenEntities.add(id);
+                Entity entity = view.entities.get(id);
+                if (entity == null) {
+                    EntityType<?> type = Registries.ENTITY_TYPE.get(recorded.types()[i]);
+                    entity = createEntity(type);
+                    if (entity == null) {
+                        if (skippedIds.add(id)) {
+                            skippedEntities.merge(EntityType.getId(type).getPath(), 1, Integer::sum);
+                        }
+                        continue;
+                    }
+                    replayedEntities++;
+                    view.entities.put(id, entity);
+                    pending.add(new EntityLoadEvent(entity));
+                }
+                entity.setPosition(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+            }
+            for (Iterator<Map.Entry<Integer, Entity>> it = view.entities.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Integer, Entity> entry = it.next();
+                if (!seenEntities.contains(entry.getKey())) {
+                    it.remove();
+                    pending.add(new EntityUnloadEvent(entry.getValue()));
+                }
+            }
+        }
+
+        /**
+         * @return {@code null} for types that can't be built without a world
+         */
+        private static Entity createEntity(EntityType<?> type) {
+            if (type == EntityType.ITEM) return new ItemEntity(EntityType.ITEM, null);
+            if (type == EntityType.EXPERIENCE_ORB) return new ExperienceOrbEntity(EntityType.EXPERIENCE_ORB, null);
+            return null;
+        }
+
+        private void prepareInventory(SessionRecording.Inventory inventory) {
+            int size = Math.min(inventory.items().length, view.inventory.size());
+            for (int slot = 0; slot < size; slot++) {
+                int count = inventory.counts()[slot];
+                Item item = Item.byRawId(inventory.items()[slot]);
+                view.inventory.setStack(slot, count > 0 ? new ItemStack(item, count) : ItemStack.EMPTY);
+            }
+            // Like a slot update from the server
+            view.screenHandler.nextRevision();
+        }
+
+        private void tick(SessionRecording.Tick tick) {
+            for (Object event : pending) {
+                if (event instanceof ChunkPos pos) {
+                    blockScanner.onChunkLoad(pos);
+                } else {
+                    EventBus.publish(event);
+                }
+            }
+
+            trackers.tick();
+            blockScanner.tick();
+
+            Vec3d playerPos = view.getPlayerPos();
+            for (Block block : queryBlocks) {
+                if (blockScanner.getNearestBlock(block, playerPos).isPresent()) {
+                    found++;
+                }
+            }
+            found += entityTracker.getCloseEntities().size();
+            found += entityTracker.getDroppedItems().size();
+            found += inventoryTracker.getItemCount(true, false, queryItems);
+        }
+
+        private void runScans() {
+            for (Runnable scan : queuedScans) {
+                long start = System.nanoTime();
+                scan.run();
+                addScanNanos(System.nanoTime() - start);
+            }
+            queuedScans.clear();
+        }
+
+        private void addScanNanos(long nanos) {
+            if (scanCount == scanNanos.length) {
+                scanNanos = Arrays.copyOf(scanNanos, scanCount * 2);
+            }
+            scanNanos[scanCount++] = nanos;
+        }
+
+        private void report(List<SessionRecording.Tick> ticks) {
+            long[] sorted = tickNanos.clone();
+            Arrays.sort(sorted);
+            long totalNanos = 0;
+            for (long nanos : tickNanos) totalNanos += nanos;
+            long totalBytes = 0;
+            for (long bytes : tickBytes) totalBytes += bytes;
+
+            System.out.printf(Locale.ROOT, "Tick:  mean %.3fms  p50 %.3fms  p90 %.3fms  p99 %.3fms  p99.9 %.3fms  max %.3fms%n",
+                    totalNanos / (double) sorted.length / 1_000_000.0,
+                    percentile(sorted, 0.5) / 1_000_000.0,
+                    percentile(sorted, 0.9) / 1_000_000.0,
+                    percentile(sorted, 0.99) / 1_000_000.0,
+                    percentile(sorted, 0.999) / 1_000_000.0,
+                    sorted[sorted.length - 1] / 1_000_000.0);
+            // The game runs 20 ticks a second, so that's what the rate is relative to
+            System.out.printf(Locale.ROOT, "Alloc: %.1f KB/tick  %.2f MB/s at 20 tps  %.1f MB total%n",
+                    totalBytes / (double) sorted.length / 1024.0,
+                    totalBytes / (double) sorted.length * 20 / (1024.0 * 1024.0),
+                    totalBytes / (1024.0 * 1024.0));
+
+            if (scanCount > 0) {
+                long[] scansSorted = Arrays.copyOf(scanNanos, scanCount);
+                Arrays.sort(scansSorted);
+                System.out.printf(Locale.ROOT, "Chunk scans (worker): %d  p50 %.3fms  p99 %.3fms  max %.3fms%n",
+                        scanCount,
+                        percentile(scansSorted, 0.5) / 1_000_000.0,
+                        percentile(scansSorted, 0.99) / 1_000_000.0,
+                        scansSorted[scanCount - 1] / 1_000_000.0);
+            }
+
+            System.out.println("Entities: " + replayedEntities + " replayed"
+                    + (skippedEntities.isEmpty() ? "" : ", skipped (need a live world) " + skippedEntities));
+
+            for (SessionRecording.Tick tick : ticks) {
+                for (SessionRecording.Event event : tick.events()) {
+                    if (event instanceof SessionRecording.Command command) {
+                        System.out.println("Command at tick " + tick.index() + ": " + command.line());
+                    }
+                }
+            }
+            // Keeps the results alive so none of the work is optimized away
+            System.out.println("(" + found + " hits)");
+        }
+
+        private void writeCsv(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                writer.println("tick,nanos,allocated_bytes");
+                for (int i = 0; i < tickNanos.length; i++) {
+                    writer.println(i + "," + tickNanos[i] + "," + tickBytes[i]);
+                }
+            }
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
@@ -36,6 +36,9 @@ import adris.altoclef.telemetry.BaritoneLogManager;
 import adris.altoclef.telemetry.DeathLogManager;
 import adris.altoclef.telemetry.LogTrimManager;
 import adris.altoclef.telemetry.StuckLogManager;
+import adris.altoclef.telemetry.SessionArchiveReader;
+import adris.altoclef.telemetry.TelemetryWriter;
+import adris.altoclef.telemetry.TickProfiler;
 import baritone.Baritone;
 import baritone.altoclef.AltoClefSettings;
 import baritone.api.BaritoneAPI;
@@ -106,6 +109,7 @@ public class AltoClef implements ModInitializer {
     // Telemetry
     private DeathLogManager deathLogManager;
     private StuckLogManager stuckLogManager;
+    private TelemetryWriter telemetryWriter;
     private TaskPersistenceManager taskPersistenceManager;
     private BaritoneLogManager baritoneLogManager;
     private LogTrimManager logTrimManager;
@@ -197,6 +201,7 @@ public class AltoClef implements ModInitializer {
         trackerManager = new TrackerManager(this);
         botBehaviour = new BotBehaviour(this);
         extraController = new PlayerExtraController(this);
+    telemetryWriter = new TelemetryWriter(getTelemetrySessionDir() != null ? SessionArchiveReader.inSession(getTelemetrySessionDir()) : null);
     deathLogManager = new DeathLogManager(this);
     stuckLogManager = new StuckLogManager(this);
     camBridge = new CamBridge(this);
@@ -326,6 +331,15 @@ public class AltoClef implements ModInitializer {
 
     // Client tick
     private void onClientTick() {
+        int scope = TickProfiler.push(AltoClef.class);
+        try {
+            tickInternal();
+        } finally {
+            TickProfiler.pop(scope);
+        }
+    }
+
+    private void tickInternal() {
         runEnqueuedPostInits();
 
         if (logTrimManager != null) {
@@ -339,12 +353,15 @@ public class AltoClef implements ModInitializer {
             stopTasks();
         }
 
-        // TODO: should this go here?
-        storageTracker.setDirty();
         containerSubTracker.onServerTick();
         miscBlockTracker.tick();
         trackerManager.tick();
-        blockScanner.tick();
+        int scannerScope = TickProfiler.push(BlockScanner.class);
+        try {
+            blockScanner.tick();
+        } finally {
+            TickProfiler.pop(scannerScope);
+        }
         taskRunner.tick();
 
         messageSender.tick();
@@ -622,6 +639,13 @@ public class AltoClef implements ModInitializer {
         return stuckLogManager;
     }
 
+    /**
+     * Archives death/stuck snapshots off the client thread
+     */
+    public TelemetryWriter getTelemetryWriter() {
+        return telemetryWriter;
+    }
+
     public TaskPersistenceManager getTaskPersistenceManager() {
         return taskPersistenceManager;
     }
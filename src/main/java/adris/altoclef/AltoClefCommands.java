@@ -41,7 +41,10 @@ public class AltoClefCommands {
                 new DummyTaskCommand(),
                 new FollowCommand(),
                 new ScanCommand(),
-                new GiveCommand()
+                new GiveCommand(),
+                new ProfileCommand(),
+                new RecordCommand(),
+                new ArchiveCommand()
         );
     }
 }
@@ -1,15 +1,18 @@
 package adris.altoclef;
 
+import adris.altoclef.util.BlockPosRules;
 import adris.altoclef.util.slots.Slot;
 import baritone.altoclef.AltoClefSettings;
 import baritone.api.Settings;
 import baritone.api.utils.RayTraceUtils;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.Entity;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.Pair;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.RaycastContext;
 
@@ -29,6 +32,8 @@ public class BotBehaviour {
 
     private final AltoClef mod;
     Deque<State> states = new ArrayDeque<>();
+    // Bumped whenever the set of protected items might have changed
+    private int protectedItemsRevision = 0;
 
     public BotBehaviour(AltoClef mod) {
         this.mod = mod;
@@ -109,21 +114,65 @@ public class BotBehaviour {
         current().applyState();
     }
 
+    public void avoidBlockBreaking(BlockBox box) {
+        current().toAvoidBreaking.add(box);
+        current().applyState();
+    }
+
+    public void avoidBlockBreaking(Block... blocks) {
+        current().toAvoidBreaking.add(blocks);
+        current().applyState();
+    }
+
+    /**
+     * Prefer the position, box or block overloads where possible, predicates are tested one by one for every
+     * node baritone looks at.
+     */
     public void avoidBlockBreaking(Predicate<BlockPos> pred) {
         current().toAvoidBreaking.add(pred);
         current().applyState();
     }
 
+    public void avoidBlockPlacing(BlockPos pos) {
+        current().toAvoidPlacing.add(pos);
+        current().applyState();
+    }
+
+    public void avoidBlockPlacing(BlockBox box) {
+        current().toAvoidPlacing.add(box);
+        current().applyState();
+    }
+
+    public void avoidBlockPlacing(Block... blocks) {
+        current().toAvoidPlacing.add(blocks);
+        current().applyState();
+    }
+
     public void avoidBlockPlacing(Predicate<BlockPos> pred) {
         current().toAvoidPlacing.add(pred);
         current().applyState();
     }
 
+    public void allowWalkingOn(Block... blocks) {
+        current().allowWalking.add(blocks);
+        current().applyState();
+    }
+
     public void allowWalkingOn(Predicate<BlockPos> pred) {
         current().allowWalking.add(pred);
         current().applyState();
     }
 
+    public void avoidWalkingThrough(BlockBox box) {
+        current().avoidWalkingThrough.add(box);
+        current().applyState();
+    }
+
+    public void avoidWalkingThrough(Block... blocks) {
+        current().avoidWalkingThrough.add(blocks);
+        current().applyState();
+    }
+
     public void avoidWalkingThrough(Predicate<BlockPos> pred) {
         current().avoidWalkingThrough.add(pred);
         current().applyState();
@@ -153,11 +202,13 @@ public class BotBehaviour {
 
     public void addProtectedItems(Item... items) {
         Collections.addAll(current().protectedItems, items);
+        protectedItemsRevision++;
         current().applyState();
     }
 
     public void removeProtectedItems(Item... items) {
         current().protectedItems.removeAll(Arrays.asList(items));
+        protectedItemsRevision++;
         current().applyState();
     }
 
@@ -166,6 +217,13 @@ public class BotBehaviour {
         return current().protectedItems.contains(item);
     }
 
+    /**
+     * Changes whenever {@link #isProtected(Item)} might answer differently, so results that depend on it can be cached.
+     */
+    public int getProtectedItemsRevision() {
+        return protectedItemsRevision;
+    }
+
     public boolean shouldForceFieldPlayers() {
         return current().forceFieldPlayers;
     }
@@ -223,6 +281,7 @@ public class BotBehaviour {
 
     /// Stack management
     public void push() {
+        protectedItemsRevision++;
         if (states.isEmpty()) {
             states.push(new State());
         } else {
@@ -232,6 +291,7 @@ public class BotBehaviour {
     }
 
     public void push(State customState) {
+        protectedItemsRevision++;
         states.push(customState);
     }
 
@@ -241,6 +301,7 @@ public class BotBehaviour {
             return null;
         }
         State popped = states.pop();
+        protectedItemsRevision++;
         if (states.isEmpty()) {
             Debug.logError("State stack is empty after pop. This shouldn't be happening.");
             return null;
@@ -277,10 +338,11 @@ public class BotBehaviour {
 
         // Extra Baritone Settings
         public HashSet<BlockPos> blocksToAvoidBreaking = new HashSet<>();
-        public List<Predicate<BlockPos>> toAvoidBreaking = new ArrayList<>();
-        public List<Predicate<BlockPos>> toAvoidPlacing = new ArrayList<>();
-        public List<Predicate<BlockPos>> allowWalking = new ArrayList<>();
-        public List<Predicate<BlockPos>> avoidWalkingThrough = new ArrayList<>();
+        // Handed to baritone as one compiled predicate each
+        public BlockPosRules toAvoidBreaking = new BlockPosRules();
+        public BlockPosRules toAvoidPlacing = new BlockPosRules();
+        public BlockPosRules allowWalking = new BlockPosRules();
+        public BlockPosRules avoidWalkingThrough = new BlockPosRules();
         public List<BiPredicate<BlockState, ItemStack>> forceUseTools = new ArrayList<>();
         public List<BiFunction<Double, BlockPos, Double>> globalHeuristics = new ArrayList<>();
         public boolean _allowWalkThroughFlowingWater = false;
@@ -341,12 +403,12 @@ public class BotBehaviour {
             synchronized (settings.getBreakMutex()) {
                 synchronized (settings.getPlaceMutex()) {
                     blocksToAvoidBreaking = new HashSet<>(settings.getBlocksToAvoidBreaking());
-                    toAvoidBreaking = new ArrayList<>(settings.getBreakAvoiders());
-                    toAvoidPlacing = new ArrayList<>(settings.getPlaceAvoiders());
+                    toAvoidBreaking = BlockPosRules.of(settings.getBreakAvoiders());
+                    toAvoidPlacing = BlockPosRules.of(settings.getPlaceAvoiders());
                     protectedItems = new HashSet<>(settings.getProtectedItems());
                     synchronized (settings.getPropertiesMutex()) {
-                        allowWalking = new ArrayList<>(settings.getForceWalkOnPredicates());
-                        avoidWalkingThrough = new ArrayList<>(settings.getForceAvoidWalkThroughPredicates());
+                        allowWalking = BlockPosRules.of(settings.getForceWalkOnPredicates());
+                        avoidWalkingThrough = BlockPosRules.of(settings.getForceAvoidWalkThroughPredicates());
                         forceUseTools = new ArrayList<>(settings.getForceUseToolPredicates());
                     }
                 }
@@ -379,19 +441,15 @@ public class BotBehaviour {
             // Kinda jank but it works.
             synchronized (sa.getBreakMutex()) {
                 synchronized (sa.getPlaceMutex()) {
-                    sa.getBreakAvoiders().clear();
-                    sa.getBreakAvoiders().addAll(toAvoidBreaking);
+                    applyRules(sa.getBreakAvoiders(), toAvoidBreaking);
                     sa.getBlocksToAvoidBreaking().clear();
                     sa.getBlocksToAvoidBreaking().addAll(blocksToAvoidBreaking);
-                    sa.getPlaceAvoiders().clear();
-                    sa.getPlaceAvoiders().addAll(toAvoidPlacing);
+                    applyRules(sa.getPlaceAvoiders(), toAvoidPlacing);
                     sa.getProtectedItems().clear();
                     sa.getProtectedItems().addAll(protectedItems);
                     synchronized (sa.getPropertiesMutex()) {
-                        sa.getForceWalkOnPredicates().clear();
-                        sa.getForceWalkOnPredicates().addAll(allowWalking);
-                        sa.getForceAvoidWalkThroughPredicates().clear();
-                        sa.getForceAvoidWalkThroughPredicates().addAll(avoidWalkingThrough);
+                        applyRules(sa.getForceWalkOnPredicates(), allowWalking);
+                        applyRules(sa.getForceAvoidWalkThroughPredicates(), avoidWalkingThrough);
                         sa.getForceUseToolPredicates().clear();
                         sa.getForceUseToolPredicates().addAll(forceUseTools);
                     }
@@ -412,5 +470,13 @@ public class BotBehaviour {
             // Minecraft
             MinecraftClient.getInstance().options.pauseOnLostFocus = pauseOnLostFocus;
         }
+
+        // Baritone tests every predicate in the list for every node, so it only ever gets one
+        private void applyRules(Collection<Predicate<BlockPos>> target, BlockPosRules rules) {
+            target.clear();
+            if (!rules.isEmpty()) {
+                target.add(rules.compile());
+            }
+        }
     }
 }
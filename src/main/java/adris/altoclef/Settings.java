@@ -85,6 +85,12 @@ public class Settings implements IFailableConfigFile {
      */
     private String autoStartCommand = "@gamer";
 
+    /**
+     * How often (in milliseconds) the command journal used to resume commands after a restart is synced to disk.
+     * 0 syncs after every write, a negative value never syncs and leaves it to the operating system.
+     */
+    private long taskJournalSyncIntervalMs = 0;
+
 
     /**
      * Sets the log level of the mod; allowed values:
@@ -344,6 +350,17 @@ public class Settings implements IFailableConfigFile {
      */
     private String camBridgeFilePath = "cambridge-events.jsonl";
 
+    /**
+     * How often (in milliseconds) the "file" transport writes buffered CamBridge events to disk.
+     */
+    private long camBridgeFileFlushIntervalMs = 1000;
+
+    /**
+     * Once the CamBridge events file grows past this many bytes it's rotated (older files get a .1, .2, ... suffix).
+     * Set to 0 to never rotate.
+     */
+    private long camBridgeFileMaxBytes = 64L * 1024 * 1024;
+
     /**
      * Controls the volume of telemetry emitted by CamBridge. "full" preserves the legacy
      * camera-focused stream while "status-only" keeps just the lightweight task updates for overlays.
@@ -567,6 +584,10 @@ public class Settings implements IFailableConfigFile {
         return autoStartCommand == null ? "" : autoStartCommand;
     }
 
+    public long getTaskJournalSyncIntervalMs() {
+        return taskJournalSyncIntervalMs;
+    }
+
     public String getChatLogPrefix() {
         return chatLogPrefix;
     }
@@ -659,6 +680,14 @@ public class Settings implements IFailableConfigFile {
         return camBridgeFilePath == null || camBridgeFilePath.isBlank() ? "cambridge-events.jsonl" : camBridgeFilePath;
     }
 
+    public long getCamBridgeFileFlushIntervalMs() {
+        return camBridgeFileFlushIntervalMs <= 0 ? 1000 : camBridgeFileFlushIntervalMs;
+    }
+
+    public long getCamBridgeFileMaxBytes() {
+        return Math.max(0, camBridgeFileMaxBytes);
+    }
+
     public List<Integer> getCamBridgeMirrorUdpPorts() {
         if (camBridgeMirrorUdpPorts == null) {
             return Collections.emptyList();
@@ -30,9 +30,9 @@ import adris.altoclef.util.helpers.StorageHelper;
 import adris.altoclef.util.helpers.WorldHelper;
 import adris.altoclef.trackers.EntityTracker;
 import adris.altoclef.trackers.storage.ItemStorageTracker;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.item.Item;
@@ -88,9 +88,14 @@ public final class CamBridge implements AutoCloseable {
     private static final long STATUS_MIN_INTERVAL_MS = 750L;
     private static final long STATUS_FORCE_INTERVAL_MS = 5_000L;
     private static final long REROUTE_STATUS_WINDOW_MS = 6_000L;
+    private static final int BATCH_INITIAL_BYTES = 4 * 1024;
+    // Batches that grew past this (one huge inspect payload) aren't worth keeping around
+    private static final int BATCH_MAX_POOLED_BYTES = 256 * 1024;
+    private static final int BATCH_POOL_SIZE = 4;
 
     private final AltoClef mod;
-    private final ObjectWriter writer;
+    private final JsonFactory jsonFactory;
+    private final Queue<CamBridgeBatch> freeBatches = new ConcurrentLinkedQueue<>();
     private final ExecutorService dispatcher;
     private final Deque<CamEvent> history = new ArrayDeque<>(RING_CAPACITY);
     private final List<CamEvent> pendingSend = new ArrayList<>();
@@ -121,6 +126,9 @@ public final class CamBridge implements AutoCloseable {
     private CamPhase currentPhase;
     private Task currentTask;
     private ResourceSnapshot lastResources;
+    // Only inventory contents go into a snapshot, so it's reused until the inventory revision changes
+    private ResourceSnapshot cachedResources;
+    private int cachedResourcesRevision;
     private Dimension lastDimension;
     private boolean stallActive;
     private Vec3d lastProgressPos;
@@ -131,7 +139,8 @@ public final class CamBridge implements AutoCloseable {
 
     public CamBridge(AltoClef mod) {
         this.mod = mod;
-        this.writer = new ObjectMapper().writer();
+        // The mapper's factory, so generators can still fall back to databind for unusual payload values
+        this.jsonFactory = new ObjectMapper().getFactory();
         this.dispatcher = Executors.newSingleThreadExecutor(new CamBridgeThreadFactory());
         for (HazardType type : HazardType.values()) {
             hazardStates.put(type, new HazardState());
@@ -160,7 +169,8 @@ public final class CamBridge implements AutoCloseable {
         try {
             switch (transportMode) {
                 case "udp" -> newTransport = createUdpTransport(settings);
-                case "file" -> newTransport = new FileCamBridgeTransport(Path.of(settings.getCamBridgeFilePath()));
+                case "file" -> newTransport = new FileCamBridgeTransport(Path.of(settings.getCamBridgeFilePath()),
+                        settings.getCamBridgeFileFlushIntervalMs(), settings.getCamBridgeFileMaxBytes());
                 default -> {
                     Debug.logWarning("Unknown CamBridge transport: " + transportMode + ". Falling back to UDP.");
                     newTransport = createUdpTransport(settings);
@@ -198,7 +208,7 @@ public final class CamBridge implements AutoCloseable {
         }
 
         long now = System.currentTimeMillis();
-        ResourceSnapshot currentSnapshot = ResourceSnapshot.capture(mod);
+        ResourceSnapshot currentSnapshot = captureResources();
 
         updateDimension(currentSnapshot, now);
         updatePhase(currentSnapshot, now);
@@ -218,6 +228,15 @@ public final class CamBridge implements AutoCloseable {
         flushIfNeeded();
     }
 
+    private ResourceSnapshot captureResources() {
+        int revision = mod.getItemStorage().getInventoryRevision();
+        if (cachedResources == null || revision != cachedResourcesRevision) {
+            cachedResources = ResourceSnapshot.capture(mod);
+            cachedResourcesRevision = revision;
+        }
+        return cachedResources;
+    }
+
     public void notifyPlayerDeath(String deathMessage) {
         String message = deathMessage == null || deathMessage.isBlank() ? "Player died" : deathMessage;
         setLifecycle(LifecycleState.DEAD, message);
@@ -316,44 +335,29 @@ public final class CamBridge implements AutoCloseable {
         String host = settings.getCamBridgeHost();
         int primaryPort = settings.getCamBridgePort();
         List<Integer> mirrors = settings.getCamBridgeMirrorUdpPorts();
-        List<CamBridgeTransport> transports = new ArrayList<>();
+        // One transport for every port, so mirrors get the same packed datagrams
+        List<Integer> ports = new ArrayList<>();
         Set<Integer> seenPorts = new HashSet<>();
 
-        try {
-            transports.add(new UdpCamBridgeTransport(host, primaryPort));
-            seenPorts.add(primaryPort);
-            if (mirrors != null) {
-                for (int mirrorPort : mirrors) {
-                    if (mirrorPort <= 0 || seenPorts.contains(mirrorPort)) {
-                        continue;
-                    }
-                    transports.add(new UdpCamBridgeTransport(host, mirrorPort));
-                    seenPorts.add(mirrorPort);
-                }
-            }
-        } catch (IOException ex) {
-            for (CamBridgeTransport transport : transports) {
-                try {
-                    transport.close();
-                } catch (IOException ignored) {
+        ports.add(primaryPort);
+        seenPorts.add(primaryPort);
+        if (mirrors != null) {
+            for (int mirrorPort : mirrors) {
+                if (mirrorPort <= 0 || seenPorts.contains(mirrorPort)) {
+                    continue;
                 }
+                ports.add(mirrorPort);
+                seenPorts.add(mirrorPort);
             }
-            throw ex;
-        }
-
-        if (transports.isEmpty()) {
-            throw new IOException("No valid CamBridge UDP transports configured.");
-        }
-        if (transports.size() == 1) {
-            return transports.get(0);
         }
-        return new CompositeCamBridgeTransport(transports);
+        return new UdpCamBridgeTransport(host, ports);
     }
 
     private void resetState() {
         currentTask = null;
         currentPhase = null;
         lastResources = null;
+        cachedResources = null;
         lastDimension = null;
         stallActive = false;
         milestoneAccumulator.reset();
@@ -1072,23 +1076,44 @@ public final class CamBridge implements AutoCloseable {
             pendingSend.clear();
             return;
         }
-        List<String> serialized = pendingSend.stream().map(this::toJsonLine).toList();
+        CamBridgeBatch batch = acquireBatch();
+        serialize(pendingSend, batch);
         pendingSend.clear();
+        if (batch.isEmpty()) {
+            releaseBatch(batch);
+            return;
+        }
         CamBridgeTransport target = active;
         Runnable sender = () -> {
             try {
-                target.sendBatch(serialized);
+                target.sendBatch(batch);
             } catch (IOException ex) {
                 logTransportError("CamBridge send failed", ex);
+            } finally {
+                releaseBatch(batch);
             }
         };
         if (target instanceof FileCamBridgeTransport) {
+            // Only copies into the file writer's buffer, the batch can go straight back to the pool
             sender.run();
         } else {
             dispatcher.submit(sender);
         }
     }
 
+    private CamBridgeBatch acquireBatch() {
+        CamBridgeBatch batch = freeBatches.poll();
+        return batch != null ? batch : new CamBridgeBatch(BATCH_INITIAL_BYTES);
+    }
+
+    private void releaseBatch(CamBridgeBatch batch) {
+        batch.clear();
+        // Approximate bound, a few extra batches don't matter
+        if (batch.capacity() <= BATCH_MAX_POOLED_BYTES && freeBatches.size() < BATCH_POOL_SIZE) {
+            freeBatches.offer(batch);
+        }
+    }
+
     private void logTransportError(String message, Exception ex) {
         long now = System.currentTimeMillis();
         if (now - lastTransportErrorLogMs < 5_000L) {
@@ -1098,12 +1123,31 @@ public final class CamBridge implements AutoCloseable {
         Debug.logWarning(message + ": " + ex.getMessage());
     }
 
-    private String toJsonLine(CamEvent event) {
-        try {
-            return writer.writeValueAsString(event.toJson());
-        } catch (JsonProcessingException e) {
-            Debug.logWarning("CamBridge serialization failure: " + e.getMessage());
-            return "{}";
+    private void serialize(List<CamEvent> events, CamBridgeBatch batch) {
+        JsonGenerator generator = null;
+        for (CamEvent event : events) {
+            try {
+                if (generator == null) {
+                    generator = jsonFactory.createGenerator(batch);
+                    // Events are framed by the batch, not by separators
+                    generator.setRootValueSeparator(null);
+                }
+                event.writeJson(generator);
+                generator.flush();
+                batch.endEvent();
+            } catch (IOException | RuntimeException e) {
+                Debug.logWarning("CamBridge serialization failure: " + e.getMessage());
+                // The generator is in the middle of an object now, start over with a fresh one
+                batch.discardPartial();
+                generator = null;
+            }
+        }
+        if (generator != null) {
+            try {
+                // Hands the generator's buffers back to jackson's recycler
+                generator.close();
+            } catch (IOException ignored) {
+            }
         }
     }
 
@@ -1129,6 +1173,25 @@ public final class CamBridge implements AutoCloseable {
         drainBridgeEvents(payload);
     }
 
+    private void writeTransportStats(Map<String, Object> payload) {
+        CamBridgeTransport active;
+        synchronized (this) {
+            active = transport;
+        }
+        // Only UDP loses events on the way, the file transport writes or fails loudly
+        if (!(active instanceof UdpCamBridgeTransport udp)) {
+            return;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sent_datagrams", udp.getSentDatagrams());
+        stats.put("sent_events", udp.getSentEvents());
+        stats.put("dropped_datagrams", udp.getDroppedDatagrams());
+        stats.put("dropped_events", udp.getDroppedEvents());
+        stats.put("send_errors", udp.getSendErrors());
+        stats.put("reopens", udp.getReopens());
+        payload.put("transport", stats);
+    }
+
     private void drainBridgeEvents(Map<String, Object> payload) {
         if (eventQueue.isEmpty()) {
             return;
@@ -1352,6 +1415,7 @@ public final class CamBridge implements AutoCloseable {
             }
             Map<String, Object> payload = new LinkedHashMap<>();
             CamBridge.this.writeLifecycle(payload);
+            CamBridge.this.writeTransportStats(payload);
             writeSupplement(payload);
             if (!payload.containsKey("task_queue")) {
                 Map<String, Object> queue = new LinkedHashMap<>();
@@ -1368,6 +1432,7 @@ public final class CamBridge implements AutoCloseable {
 
         void appendHeartbeat(Map<String, Object> payload) {
             CamBridge.this.writeLifecycle(payload);
+            CamBridge.this.writeTransportStats(payload);
             writeSupplement(payload);
         }
 
@@ -1852,25 +1917,26 @@ public final class CamBridge implements AutoCloseable {
             return "FULL".equals(suggestedMode);
         }
 
-        Map<String, Object> toJson() {
-            Map<String, Object> root = new HashMap<>();
-            root.put("id", id);
-            root.put("ts", ts);
-            root.put("type", type.name());
+        void writeJson(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeNumberField("ts", ts);
+            generator.writeStringField("type", type.name());
             if (priority != null) {
-                root.put("priority", priority);
+                generator.writeStringField("priority", priority);
             }
             if (phase != null) {
-                root.put("phase", phase.name());
+                generator.writeStringField("phase", phase.name());
             }
-            root.put("payload", payload == null ? Map.of() : payload);
+            generator.writeFieldName("payload");
+            CamJson.writeMap(generator, payload == null ? Map.of() : payload);
             if (suggestedMode != null) {
-                root.put("suggested_mode", suggestedMode);
+                generator.writeStringField("suggested_mode", suggestedMode);
             }
             if (suggestedDurationSec != null) {
-                root.put("suggested_duration_sec", suggestedDurationSec);
+                generator.writeNumberField("suggested_duration_sec", suggestedDurationSec);
             }
-            return root;
+            generator.writeEndObject();
         }
     }
 
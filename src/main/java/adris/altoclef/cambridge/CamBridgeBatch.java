@@ -0,0 +1,98 @@
+package adris.altoclef.cambridge;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A batch of serialized events: UTF-8 JSON objects back to back in one reusable byte array, with the end of every
+ * event recorded so transports can send them as slices.
+ * <p>
+ * Batches are pooled by {@link CamBridge}. A transport must be done with the bytes when {@code sendBatch} returns.
+ */
+final class CamBridgeBatch extends OutputStream {
+
+    private byte[] bytes;
+    private int length = 0;
+    private int[] ends = new int[16];
+    private int count = 0;
+
+    CamBridgeBatch(int initialCapacity) {
+        bytes = new byte[initialCapacity];
+    }
+
+    /**
+     * @return how many events are in the batch
+     */
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * The backing array, only valid up to {@link #byteLength()}. Changes when the batch grows.
+     */
+    byte[] array() {
+        return bytes;
+    }
+
+    int byteLength() {
+        return length;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    int offset(int event) {
+        return event == 0 ? 0 : ends[event - 1];
+    }
+
+    int length(int event) {
+        return ends[event] - offset(event);
+    }
+
+    /**
+     * Marks everything written since the previous event as one event.
+     */
+    void endEvent() {
+        if (length == offset(count)) return;
+        if (count == ends.length) {
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        ends[count++] = length;
+    }
+
+    /**
+     * Drops whatever was written since the last complete event.
+     */
+    void discardPartial() {
+        length = offset(count);
+    }
+
+    void clear() {
+        length = 0;
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(length + 1);
+        bytes[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(b, off, bytes, length, len);
+        length += len;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+}
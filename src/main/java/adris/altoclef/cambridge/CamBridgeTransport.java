@@ -2,14 +2,14 @@ package adris.altoclef.cambridge;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Collection;
 
 interface CamBridgeTransport extends Closeable {
 
     /**
-     * Deliver a batch of already-serialized JSON lines to the remote subscriber.
+     * Deliver a batch of serialized JSON events to the remote subscriber. The batch is reused once this returns,
+     * so anything kept for later has to be copied.
      */
-    void sendBatch(Collection<String> events) throws IOException;
+    void sendBatch(CamBridgeBatch batch) throws IOException;
 
     /**
      * @return true if the transport is ready to send data.
@@ -0,0 +1,71 @@
+package adris.altoclef.cambridge;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Writes the plain values event payloads are made of (maps, collections, strings, numbers, booleans, enums)
+ * straight to a generator. Anything else goes through the generator's codec, like it would with an ObjectMapper.
+ */
+final class CamJson {
+
+    private CamJson() {
+    }
+
+    static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String string) {
+            generator.writeString(string);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Double number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Float number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(generator, map);
+        } else if (value instanceof Iterable<?> iterable) {
+            generator.writeStartArray();
+            for (Object element : iterable) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Object[] array) {
+            generator.writeStartArray();
+            for (Object element : array) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Enum<?> constant) {
+            generator.writeString(constant.name());
+        } else if (value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof BigDecimal number) {
+            generator.writeNumber(number);
+        } else if (value instanceof BigInteger number) {
+            generator.writeNumber(number);
+        } else if (value instanceof CharSequence chars) {
+            generator.writeString(chars.toString());
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    static void writeMap(JsonGenerator generator, Map<?, ?> map) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            generator.writeFieldName(String.valueOf(entry.getKey()));
+            writeValue(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+}
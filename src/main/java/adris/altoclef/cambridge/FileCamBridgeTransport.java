@@ -3,60 +3,226 @@ package adris.altoclef.cambridge;
 import adris.altoclef.Debug;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.Collection;
+import java.util.Arrays;
 
+/**
+ * Appends events as JSON lines to a file.
+ * <p>
+ * {@link #sendBatch} only copies the events into a buffer, so it's cheap enough for the client thread. A writer
+ * thread owns the file and commits everything that piled up once per flush interval (or sooner if a lot piled up)
+ * with a single write and sync. When the file grows past the size limit it's rotated to {@code name.1.ext}, older
+ * rotations move up by one and the oldest is deleted.
+ */
 final class FileCamBridgeTransport implements CamBridgeTransport {
 
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    // Commit early once this much is waiting
+    private static final int EAGER_COMMIT_BYTES = 256 * 1024;
+    // If the disk can't keep up, drop batches rather than buffering without bound
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_ROTATED_FILES = 5;
+    private static final long CLOSE_TIMEOUT_MS = 2_000L;
+    private static final long WARNING_INTERVAL_MS = 5_000L;
+
     private final Path output;
+    private final long flushIntervalMs;
+    private final long maxFileBytes;
     private final Object lock = new Object();
+    private final Thread writer;
+
+    // Filled by senders, swapped with the writer's buffer on every commit. Guarded by lock.
+    private byte[] pending = new byte[64 * 1024];
+    private int pendingLength = 0;
+    private boolean closing = false;
+    private long droppedBatches = 0;
+
+    // Only touched by the writer thread
+    private byte[] writing = new byte[64 * 1024];
+    private FileChannel channel;
+    private long fileBytes;
+    private long lastWarningMs = Long.MIN_VALUE;
 
-    FileCamBridgeTransport(Path output) throws IOException {
+    /**
+     * @param flushIntervalMs How long events may wait before they're committed
+     * @param maxFileBytes    Rotate once the file is bigger than this, 0 to never rotate
+     */
+    FileCamBridgeTransport(Path output, long flushIntervalMs, long maxFileBytes) throws IOException {
         this.output = output.toAbsolutePath();
+        this.flushIntervalMs = Math.max(1L, flushIntervalMs);
+        this.maxFileBytes = Math.max(0L, maxFileBytes);
         Path parent = this.output.getParent();
         if (parent != null) {
             Files.createDirectories(parent);
         }
-        Files.writeString(this.output, "", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel = FileChannel.open(this.output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileBytes = 0;
+
+        writer = new Thread(this::runWriter, "CamBridge-file-writer");
+        writer.setDaemon(true);
+        writer.start();
     }
 
     @Override
-    public void sendBatch(Collection<String> events) throws IOException {
-        if (events.isEmpty()) {
+    public void sendBatch(CamBridgeBatch batch) throws IOException {
+        if (batch.isEmpty()) {
             return;
         }
-        try {
+        int needed = batch.byteLength() + batch.size() * LINE_SEPARATOR.length;
+        synchronized (lock) {
+            if (closing) {
+                throw new IOException("CamBridge file transport closed");
+            }
+            if (pendingLength + needed > MAX_PENDING_BYTES) {
+                droppedBatches++;
+                throw new IOException("CamBridge file writer is behind, dropped " + droppedBatches + " batches so far");
+            }
+            if (pendingLength + needed > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pendingLength + needed, pending.length * 2));
+            }
+            byte[] bytes = batch.array();
+            for (int i = 0; i < batch.size(); i++) {
+                int length = batch.length(i);
+                System.arraycopy(bytes, batch.offset(i), pending, pendingLength, length);
+                pendingLength += length;
+                System.arraycopy(LINE_SEPARATOR, 0, pending, pendingLength, LINE_SEPARATOR.length);
+                pendingLength += LINE_SEPARATOR.length;
+            }
+            if (pendingLength >= EAGER_COMMIT_BYTES) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void runWriter() {
+        long nextCommitMs = System.currentTimeMillis() + flushIntervalMs;
+        while (true) {
+            int length;
+            boolean done;
             synchronized (lock) {
-                StringBuilder builder = new StringBuilder();
-                for (String line : events) {
-                    builder.append(line).append(System.lineSeparator());
+                while (!closing && pendingLength < EAGER_COMMIT_BYTES) {
+                    long waitMs = nextCommitMs - System.currentTimeMillis();
+                    if (waitMs <= 0) break;
+                    try {
+                        lock.wait(waitMs);
+                    } catch (InterruptedException e) {
+                        // Nothing should interrupt the writer, close() goes through closing
+                    }
                 }
-        Files.writeString(output,
-            builder.toString(),
-            StandardCharsets.UTF_8,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.APPEND);
+                // Swap, so senders keep appending while we write
+                byte[] filled = pending;
+                pending = writing;
+                writing = filled;
+                length = pendingLength;
+                pendingLength = 0;
+                done = closing;
+            }
+            nextCommitMs = System.currentTimeMillis() + flushIntervalMs;
+
+            if (length > 0) {
+                commit(writing, length);
+            }
+            if (done) {
+                // Whatever was added while we wrote the last commit is rejected by sendBatch, so this was all of it
+                closeChannel();
+                return;
+            }
+        }
+    }
+
+    private void commit(byte[] bytes, int length) {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                fileBytes = channel.size();
+            }
+            if (maxFileBytes > 0 && fileBytes > 0 && fileBytes + length > maxFileBytes) {
+                rotate();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining()) {
+                fileBytes += channel.write(buffer);
             }
+            channel.force(false);
         } catch (IOException ex) {
-            Debug.logWarning("CamBridge file transport failed: " + ex.getMessage());
-            throw ex;
+            // Drop this commit, the next one reopens the file
+            warn("CamBridge file transport failed: " + ex.getMessage());
+            closeChannel();
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeChannel();
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        Files.deleteIfExists(output.resolveSibling(base + "." + MAX_ROTATED_FILES + extension));
+        for (int i = MAX_ROTATED_FILES - 1; i >= 1; i--) {
+            Path from = output.resolveSibling(base + "." + i + extension);
+            if (Files.exists(from)) {
+                Files.move(from, output.resolveSibling(base + "." + (i + 1) + extension), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(output, output.resolveSibling(base + ".1" + extension), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileBytes = 0;
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
         }
+        channel = null;
+    }
+
+    private void warn(String message) {
+        long now = System.currentTimeMillis();
+        if (lastWarningMs != Long.MIN_VALUE && now - lastWarningMs < WARNING_INTERVAL_MS) return;
+        lastWarningMs = now;
+        Debug.logWarning(message);
     }
 
     @Override
     public boolean isHealthy() {
-        return Files.exists(output);
+        synchronized (lock) {
+            // Write errors only cost the commit they happened in, so a running writer is a healthy one
+            return !closing && writer.isAlive();
+        }
     }
 
+    /**
+     * Commits everything still pending and closes the file. The collected telemetry stays on disk for post-run inspection.
+     */
     @Override
     public void close() {
-        // Leave the collected telemetry on disk for post-run inspection.
+        synchronized (lock) {
+            if (closing) return;
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     Path getOutputPath() {
         return output;
     }
+
+    long getDroppedBatches() {
+        synchronized (lock) {
+            return droppedBatches;
+        }
+    }
 }
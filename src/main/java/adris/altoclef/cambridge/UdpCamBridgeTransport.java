@@ -3,58 +3,251 @@ package adris.altoclef.cambridge;
 import adris.altoclef.Debug;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
-import java.nio.charset.StandardCharsets;
-import java.util.Collection;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Sends events over UDP to one or more ports, packing as many newline terminated events as fit into each datagram.
+ * <p>
+ * Packed datagrams wait in a bounded queue inside one direct buffer. When the socket can't keep up the oldest
+ * datagrams are dropped (and counted) instead of blocking the sender. Send errors only pause the transport for a
+ * short backoff, the channel is reopened if it was closed underneath us. Every port gets the same packed bytes.
+ */
 final class UdpCamBridgeTransport implements CamBridgeTransport {
 
-    private final DatagramSocket socket;
-    private final InetAddress address;
-    private final int port;
-    private final AtomicBoolean healthy = new AtomicBoolean(true);
+    // Stays under a 1500 byte ethernet MTU after IP and UDP headers
+    private static final int TARGET_DATAGRAM_BYTES = 1400;
+    // A single event bigger than the target still goes out alone, up to this size
+    private static final int MAX_DATAGRAM_BYTES = 16 * 1024;
+    private static final int QUEUE_CAPACITY = 64;
+    // A datagram no target accepted this many times in a row is given up on
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long MIN_BACKOFF_NANOS = 100_000_000L;
+    private static final long MAX_BACKOFF_NANOS = 5_000_000_000L;
+    private static final long WARNING_INTERVAL_NANOS = 5_000_000_000L;
 
-    UdpCamBridgeTransport(String host, int port) throws IOException {
-        this.port = port;
-        try {
-            this.socket = new DatagramSocket();
-        } catch (SocketException e) {
-            throw new IOException("Unable to open UDP socket", e);
+    private final List<InetSocketAddress> targets;
+    private DatagramChannel channel;
+
+    // Ring of datagram slots, head is the oldest queued datagram
+    private final ByteBuffer[] slots = new ByteBuffer[QUEUE_CAPACITY];
+    private final int[] slotLengths = new int[QUEUE_CAPACITY];
+    private final int[] slotEvents = new int[QUEUE_CAPACITY];
+    private int head = 0;
+    private int queued = 0;
+    // Index of the next target for the datagram at head, so a partial fan-out resumes where it stopped
+    private int headTarget = 0;
+    private int headAttempts = 0;
+    // Whether the newest queued datagram can still take more events
+    private boolean tailOpen = false;
+
+    private long retryAtNanos = Long.MIN_VALUE;
+    private long backoffNanos = MIN_BACKOFF_NANOS;
+    private long lastWarningNanos = Long.MIN_VALUE;
+    private boolean closed = false;
+
+    private long sentDatagrams = 0;
+    private long sentEvents = 0;
+    private long droppedDatagrams = 0;
+    private long droppedEvents = 0;
+    private long oversizedEvents = 0;
+    private long sendErrors = 0;
+    private long reopens = 0;
+
+    UdpCamBridgeTransport(String host, List<Integer> ports) throws IOException {
+        InetAddress address = InetAddress.getByName(host);
+        List<InetSocketAddress> resolved = new ArrayList<>(ports.size());
+        for (int port : ports) {
+            resolved.add(new InetSocketAddress(address, port));
+        }
+        if (resolved.isEmpty()) {
+            throw new IOException("No UDP ports given");
         }
-        this.socket.connect(InetAddress.getByName(host), port);
-        this.address = this.socket.getInetAddress();
+        this.targets = List.copyOf(resolved);
+        this.channel = openChannel();
+
+        ByteBuffer queue = ByteBuffer.allocateDirect(QUEUE_CAPACITY * MAX_DATAGRAM_BYTES);
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            slots[i] = queue.slice(i * MAX_DATAGRAM_BYTES, MAX_DATAGRAM_BYTES);
+        }
+    }
+
+    private static DatagramChannel openChannel() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        return channel;
     }
 
     @Override
-    public void sendBatch(Collection<String> events) throws IOException {
-        if (!healthy.get()) {
-            throw new IOException("UDP transport marked unhealthy");
-        }
-        for (String payload : events) {
-            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
-            DatagramPacket packet = new DatagramPacket(bytes, bytes.length, address, port);
-            try {
-                socket.send(packet);
-            } catch (IOException e) {
-                healthy.set(false);
-                Debug.logWarning("CamBridge UDP send failed: " + e.getMessage());
-                throw e;
+    public synchronized void sendBatch(CamBridgeBatch batch) throws IOException {
+        if (closed) {
+            throw new IOException("UDP transport closed");
+        }
+        byte[] bytes = batch.array();
+        for (int i = 0; i < batch.size(); i++) {
+            enqueue(bytes, batch.offset(i), batch.length(i));
+        }
+        // Everything from this batch goes out now, the next batch starts a fresh datagram
+        tailOpen = false;
+        drain();
+    }
+
+    private void enqueue(byte[] bytes, int offset, int length) {
+        int size = length + 1;
+        if (size > MAX_DATAGRAM_BYTES) {
+            oversizedEvents++;
+            warn("CamBridge UDP dropped an event of " + length + " bytes, too big for a datagram");
+            return;
+        }
+        int tail = tailOpen ? (head + queued - 1) % QUEUE_CAPACITY : -1;
+        if (tail == -1 || slotLengths[tail] + size > TARGET_DATAGRAM_BYTES) {
+            tail = openSlot();
+        }
+        int position = slotLengths[tail];
+        ByteBuffer slot = slots[tail];
+        slot.limit(MAX_DATAGRAM_BYTES);
+        slot.put(position, bytes, offset, length);
+        slot.put(position + length, (byte) '\n');
+        slotLengths[tail] = position + size;
+        slotEvents[tail]++;
+    }
+
+    private int openSlot() {
+        if (queued == QUEUE_CAPACITY) {
+            droppedDatagrams++;
+            droppedEvents += slotEvents[head];
+            removeHead();
+            warn("CamBridge UDP queue full, dropped " + droppedEvents + " events so far");
+        }
+        int index = (head + queued) % QUEUE_CAPACITY;
+        queued++;
+        slotLengths[index] = 0;
+        slotEvents[index] = 0;
+        tailOpen = true;
+        return index;
+    }
+
+    private void removeHead() {
+        head = (head + 1) % QUEUE_CAPACITY;
+        queued--;
+        headTarget = 0;
+        headAttempts = 0;
+    }
+
+    private void drain() {
+        long now = System.nanoTime();
+        if (now < retryAtNanos) return;
+
+        while (queued > 0) {
+            ByteBuffer slot = slots[head];
+            int length = slotLengths[head];
+            boolean anySent = false;
+            while (headTarget < targets.size()) {
+                slot.limit(length).position(0);
+                try {
+                    if (channel.send(slot, targets.get(headTarget)) == 0) {
+                        // Socket buffer is full, try again with the next batch
+                        return;
+                    }
+                    anySent = true;
+                } catch (ClosedChannelException e) {
+                    reopen(e);
+                    return;
+                } catch (IOException e) {
+                    // Usually one unreachable port, the others still get the datagram
+                    sendErrors++;
+                    warn("CamBridge UDP send to " + targets.get(headTarget) + " failed: " + e.getMessage());
+                    if (!anySent && headTarget == targets.size() - 1) {
+                        backOff(now);
+                        headTarget = 0;
+                        if (++headAttempts >= MAX_ATTEMPTS) {
+                            droppedDatagrams++;
+                            droppedEvents += slotEvents[head];
+                            removeHead();
+                        }
+                        return;
+                    }
+                }
+                headTarget++;
             }
+            sentDatagrams++;
+            sentEvents += slotEvents[head];
+            removeHead();
+            backoffNanos = MIN_BACKOFF_NANOS;
         }
     }
 
+    private void backOff(long now) {
+        retryAtNanos = now + backoffNanos;
+        backoffNanos = Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+    }
+
+    private void reopen(IOException cause) {
+        sendErrors++;
+        backOff(System.nanoTime());
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            channel = openChannel();
+            reopens++;
+        } catch (IOException e) {
+            warn("CamBridge UDP couldn't reopen its channel: " + e.getMessage());
+            return;
+        }
+        warn("CamBridge UDP channel was closed (" + cause + "), reopened it");
+    }
+
+    private void warn(String message) {
+        long now = System.nanoTime();
+        if (lastWarningNanos != Long.MIN_VALUE && now - lastWarningNanos < WARNING_INTERVAL_NANOS) return;
+        lastWarningNanos = now;
+        Debug.logWarning(message);
+    }
+
     @Override
-    public boolean isHealthy() {
-        return healthy.get();
+    public synchronized boolean isHealthy() {
+        // Errors only pause sending, queued events go out once the backoff is over
+        return !closed;
     }
 
     @Override
-    public void close() {
-        healthy.set(false);
-        socket.close();
+    public synchronized void close() {
+        closed = true;
+        queued = 0;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    synchronized long getSentDatagrams() {
+        return sentDatagrams;
+    }
+
+    synchronized long getSentEvents() {
+        return sentEvents;
+    }
+
+    synchronized long getDroppedDatagrams() {
+        return droppedDatagrams;
+    }
+
+    synchronized long getDroppedEvents() {
+        return droppedEvents + oversizedEvents;
+    }
+
+    synchronized long getSendErrors() {
+        return sendErrors;
+    }
+
+    synchronized long getReopens() {
+        return reopens;
     }
 }
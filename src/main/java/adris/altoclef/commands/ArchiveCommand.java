@@ -0,0 +1,92 @@
+package adris.altoclef.commands;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.commandsystem.ArgParser;
+import adris.altoclef.commandsystem.Command;
+import adris.altoclef.commandsystem.args.StringArg;
+import adris.altoclef.commandsystem.exception.CommandException;
+import adris.altoclef.telemetry.SessionArchiveReader;
+import adris.altoclef.telemetry.TelemetryWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class ArchiveCommand extends Command {
+
+    public ArchiveCommand() throws CommandException {
+        // archive stuck
+        // archive stuck MobDefenseStall
+        // archive death minecraft:lava
+        super("archive", "Pull events of one type (stuck, death) and optionally one category out of this session's telemetry archive into a single file",
+                new StringArg("type", "stuck"),
+                new StringArg("category", null)
+        );
+    }
+
+    @Override
+    protected void call(AltoClef mod, ArgParser parser) throws CommandException {
+        String type = parser.get(String.class);
+        String category = parser.get(String.class);
+
+        Path sessionDir = mod.getTelemetrySessionDir();
+        if (sessionDir == null) {
+            mod.logWarning("No telemetry session folder, nothing archived.");
+            finish();
+            return;
+        }
+        TelemetryWriter writer = mod.getTelemetryWriter();
+        if (writer == null) {
+            mod.logWarning("No telemetry writer, nothing archived.");
+            finish();
+            return;
+        }
+
+        // Decompressing a big archive can take a while, so the writer does it after the snapshots still queued
+        String label = category == null ? type : type + "/" + category;
+        if (writer.runAfterQueued(() -> query(mod, sessionDir, type, category))) {
+            mod.log("Querying the telemetry archive for " + label + " events...");
+        } else {
+            mod.logWarning("Telemetry writer is busy or closed, try again in a bit.");
+        }
+        finish();
+    }
+
+    // Runs on the telemetry writer
+    private static void query(AltoClef mod, Path sessionDir, String type, String category) {
+        SessionArchiveReader reader = new SessionArchiveReader(SessionArchiveReader.inSession(sessionDir));
+        String name = category == null ? type : type + "-" + category.replaceAll("[^a-zA-Z0-9-_]+", "_");
+        Path output = sessionDir.resolve("query-" + name + ".ndjson");
+        ObjectMapper mapper = new ObjectMapper();
+        int[] count = {0};
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            int totalBlocks = reader.readIndex().size();
+            int readBlocks = reader.forEach(type, category, Long.MIN_VALUE, Long.MAX_VALUE, event -> {
+                try {
+                    out.write(mapper.writeValueAsString(event.data()));
+                    out.newLine();
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            String message = String.format(Locale.ROOT, "Found %d %s events (read %d of %d blocks) -> %s",
+                    count[0],
+                    category == null ? type : type + "/" + category,
+                    readBlocks,
+                    totalBlocks,
+                    output);
+            // Chat messages go out from the client thread
+            MinecraftClient.getInstance().execute(() -> mod.log(message));
+        } catch (IOException | UncheckedIOException e) {
+            String message = "Failed to read the telemetry archive: " + e.getMessage();
+            MinecraftClient.getInstance().execute(() -> mod.logWarning(message));
+        }
+    }
+}
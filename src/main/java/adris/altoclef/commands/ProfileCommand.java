@@ -0,0 +1,68 @@
+package adris.altoclef.commands;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.commandsystem.ArgParser;
+import adris.altoclef.commandsystem.Command;
+import adris.altoclef.commandsystem.args.IntArg;
+import adris.altoclef.commandsystem.args.StringArg;
+import adris.altoclef.commandsystem.exception.CommandException;
+import adris.altoclef.telemetry.TickProfiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ProfileCommand extends Command {
+
+    public ProfileCommand() throws CommandException {
+        // profile start
+        // profile stop
+        // profile dump [count]
+        super("profile", "Profile the client tick. start/stop toggle it, dump prints the slowest scopes and writes a flame graph file",
+                new StringArg("action", "dump"),
+                new IntArg("count", 15)
+        );
+    }
+
+    @Override
+    protected void call(AltoClef mod, ArgParser parser) throws CommandException {
+        String action = parser.get(String.class);
+        int count = parser.get(Integer.class);
+
+        switch (action.toLowerCase()) {
+            case "start" -> {
+                TickProfiler.enable();
+                mod.log("Profiler started.");
+            }
+            case "stop" -> {
+                TickProfiler.disable();
+                mod.log("Profiler stopped, use @profile dump to see the results.");
+            }
+            case "dump" -> dump(mod, count);
+            default -> mod.logWarning("Unknown action \"" + action + "\", use start, stop or dump.");
+        }
+        finish();
+    }
+
+    private static void dump(AltoClef mod, int count) {
+        TickProfiler.Summary summary = TickProfiler.summarize();
+        if (summary.nodes().isEmpty()) {
+            mod.log(TickProfiler.isEnabled() ? "Nothing profiled yet." : "Nothing profiled, use @profile start first.");
+            return;
+        }
+
+        mod.log("Top " + count + " by self time over " + summary.scopeCount() + " scopes" + (summary.wrapped() ? " (older ones were dropped)" : "") + ":");
+        List<TickProfiler.NodeStats> top = summary.topBySelfTime(count);
+        for (TickProfiler.NodeStats stats : top) {
+            mod.log(stats.toString());
+        }
+
+        Path file = mod.getTelemetrySessionDir().resolve("profile").resolve("tick-" + System.currentTimeMillis() + ".collapsed");
+        try {
+            TickProfiler.writeCollapsedStacks(summary, file);
+            mod.log("Wrote collapsed stacks to " + file);
+        } catch (IOException e) {
+            mod.logWarning("Failed to write profile: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package adris.altoclef.commands;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.commandsystem.ArgParser;
+import adris.altoclef.commandsystem.Command;
+import adris.altoclef.commandsystem.args.StringArg;
+import adris.altoclef.commandsystem.exception.CommandException;
+import adris.altoclef.telemetry.SessionRecorder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class RecordCommand extends Command {
+
+    public RecordCommand() throws CommandException {
+        // record start
+        // record stop
+        super("record", "Record the session (chunks, entities, inventory, commands) for the headless tick replay. start/stop toggle it",
+                new StringArg("action", "start")
+        );
+    }
+
+    @Override
+    protected void call(AltoClef mod, ArgParser parser) throws CommandException {
+        String action = parser.get(String.class);
+
+        switch (action.toLowerCase()) {
+            case "start" -> {
+                if (SessionRecorder.isRecording()) {
+                    mod.log("Already recording, use @record stop first.");
+                    break;
+                }
+                try {
+                    Path file = SessionRecorder.start(mod);
+                    mod.log("Recording to " + file);
+                } catch (IOException e) {
+                    mod.logWarning("Failed to start recording: " + e.getMessage());
+                }
+            }
+            case "stop" -> {
+                try {
+                    int ticks = SessionRecorder.stop();
+                    mod.log(ticks == -1 ? "Not recording." : "Recording stopped after " + ticks + " ticks.");
+                } catch (IOException e) {
+                    mod.logWarning("Failed to finish recording: " + e.getMessage());
+                }
+            }
+            default -> mod.logWarning("Unknown action \"" + action + "\", use start or stop.");
+        }
+        finish();
+    }
+}
@@ -1,79 +1,183 @@
 package adris.altoclef.eventbus;
 
-import net.minecraft.util.Pair;
-
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * A static class to solve dependency issues. Lets us send and receive events globally, decoupling our codebase.
  * <p>
  * Technically `ConfigHelper` does something like this, but here is a more general case.
+ * <p>
+ * Every event type keeps its subscribers in an array that's replaced (never modified) whenever someone subscribes
+ * or a deleted subscription is pruned. Publishing just walks the current array, so it doesn't allocate and it's fine
+ * to subscribe or unsubscribe from inside a callback.
+ * <p>
+ * Subscribing to a type also receives every event that extends or implements it.
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class EventBus {
 
-    private static final HashMap<Class, List<Subscription>> topics = new HashMap<>();
-    private static final List<Pair<Class, Subscription>> toAdd = new ArrayList<>();
-    private static boolean lock;
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+    // Ties between subscriptions of the same priority go to whoever subscribed first
+    private static final Comparator<Subscription> DISPATCH_ORDER = (a, b) -> {
+        if (a.getPriority() != b.getPriority()) return Integer.compare(b.getPriority(), a.getPriority());
+        return Long.compare(a.getSequence(), b.getSequence());
+    };
+
+    private static final ConcurrentHashMap<Class, Topic> topics = new ConcurrentHashMap<>();
+    // Event class -> every subscription it should reach, including the ones for its supertypes.
+    // Thrown away as a whole whenever a topic changes, so a dispatch list built from outdated topics can't stick around.
+    private static volatile ConcurrentHashMap<Class, Subscription[]> dispatch = new ConcurrentHashMap<>();
+    private static final AtomicLong nextSequence = new AtomicLong();
 
     public static <T> void publish(T event) {
-        Class type = event.getClass();
+        Subscription[] subscribers = getDispatchList(event.getClass());
 
-        // Add all subscriptions we need to add
-        for (Pair<Class, Subscription> toAdd : toAdd) {
-            subscribeInternal(toAdd.getLeft(), toAdd.getRight());
-        }
-        toAdd.clear();
-
-        if (topics.containsKey(type)) {
-            List<Subscription> subscribers = topics.get(type);
-
-            // Subscriptions can be deleted while they're called
-            List<Subscription> toDelete = new ArrayList<>();
-
-            // Go through our subscription list. We shouldn't modify the list while we're iterating it.
-            lock = true;
-            for (Subscription subRaw : subscribers) {
-                Subscription<T> sub;
-                try {
-                    sub = (Subscription<T>) subRaw;
-                    if (sub.shouldDelete()) {
-                        toDelete.add(sub);
-                    } else {
-                        sub.accept(event);
-                    }
-                } catch (ClassCastException e) {
-                    System.err.println("TRIED PUBLISHING MISMAPPED EVENT: " + event);
-                    e.printStackTrace();
+        boolean foundDeleted = false;
+        for (Subscription subRaw : subscribers) {
+            Subscription<T> sub;
+            try {
+                sub = (Subscription<T>) subRaw;
+                if (sub.shouldDelete()) {
+                    foundDeleted = true;
+                } else {
+                    sub.accept(event);
                 }
+            } catch (ClassCastException e) {
+                System.err.println("TRIED PUBLISHING MISMAPPED EVENT: " + event);
+                e.printStackTrace();
             }
-            // Delete all subscriptions
-            lock = false;
         }
+        // Subscriptions can be deleted directly, clean those up the first time we run into them
+        if (foundDeleted) {
+            for (Topic topic : topics.values()) {
+                topic.prune();
+            }
+        }
+    }
+
+    public static <T> Subscription<T> subscribe(Class<T> type, Consumer<T> consumeEvent) {
+        return subscribe(type, DEFAULT_PRIORITY, consumeEvent);
     }
 
-    private static <T> void subscribeInternal(Class<T> type, Subscription<T> sub) {
-        if (!topics.containsKey(type)) {
-            topics.put(type, new ArrayList<>());
+    /**
+     * @param priority Subscribers with a higher priority are called first, equal priorities are called in the order they subscribed.
+     */
+    public static <T> Subscription<T> subscribe(Class<T> type, int priority, Consumer<T> consumeEvent) {
+        return subscribeInternal(type, new Subscription<>(consumeEvent, priority, nextSequence.getAndIncrement()));
+    }
+
+    public static <T> void unsubscribe(Subscription<T> subscription) {
+        if (subscription == null) return;
+        subscription.delete();
+        for (Topic topic : topics.values()) {
+            if (topic.contains(subscription)) {
+                topic.prune();
+                return;
+            }
         }
-        topics.get(type).add(sub);
     }
 
-    public static <T> Subscription<T> subscribe(Class<T> type, Consumer<T> consumeEvent) {
-        Subscription<T> sub = new Subscription<>(consumeEvent);
-        if (lock) {
-            toAdd.add(new Pair<>(type, sub));
-        } else {
-            subscribeInternal(type, sub);
+    /**
+     * @return how many live subscriptions an event of this type would reach
+     */
+    public static int getSubscriberCount(Class<?> type) {
+        int count = 0;
+        for (Subscription sub : getDispatchList(type)) {
+            if (!sub.shouldDelete()) count++;
         }
+        return count;
+    }
+
+    private static <T> Subscription<T> subscribeInternal(Class<T> type, Subscription<T> sub) {
+        topics.computeIfAbsent(type, ignored -> new Topic()).add(sub);
         return sub;
     }
 
-    public static <T> void unsubscribe(Subscription<T> subscription) {
-        if (subscription != null)
-            subscription.delete();
+    private static Subscription[] getDispatchList(Class type) {
+        ConcurrentHashMap<Class, Subscription[]> cache = dispatch;
+        Subscription[] subscribers = cache.get(type);
+        if (subscribers == null) {
+            subscribers = buildDispatchList(type);
+            cache.put(type, subscribers);
+        }
+        return subscribers;
+    }
+
+    private static Subscription[] buildDispatchList(Class type) {
+        LinkedHashSet<Class> types = new LinkedHashSet<>();
+        collectSupertypes(type, types);
+
+        ArrayList<Subscription> result = new ArrayList<>();
+        for (Class t : types) {
+            Topic topic = topics.get(t);
+            if (topic != null) {
+                result.addAll(Arrays.asList(topic.subscribers));
+            }
+        }
+        if (result.isEmpty()) return EMPTY;
+        result.sort(DISPATCH_ORDER);
+        return result.toArray(EMPTY);
+    }
+
+    private static void collectSupertypes(Class type, LinkedHashSet<Class> types) {
+        if (type == null || !types.add(type)) return;
+        collectSupertypes(type.getSuperclass(), types);
+        for (Class implemented : type.getInterfaces()) {
+            collectSupertypes(implemented, types);
+        }
+    }
+
+    private static void invalidateDispatch() {
+        dispatch = new ConcurrentHashMap<>();
+    }
+
+    private static class Topic {
+        // Never modified after it's assigned
+        private volatile Subscription[] subscribers = EMPTY;
+
+        private synchronized void add(Subscription sub) {
+            Subscription[] current = subscribers;
+            // Insert after everything with the same or a higher priority
+            int insertAt = current.length;
+            while (insertAt > 0 && current[insertAt - 1].getPriority() < sub.getPriority()) {
+                insertAt--;
+            }
+            Subscription[] updated = new Subscription[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = sub;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            subscribers = updated;
+            invalidateDispatch();
+        }
+
+        private synchronized void prune() {
+            Subscription[] current = subscribers;
+            Subscription[] updated = new Subscription[current.length];
+            int size = 0;
+            for (Subscription sub : current) {
+                if (!sub.shouldDelete()) {
+                    updated[size++] = sub;
+                }
+            }
+            if (size != current.length) {
+                subscribers = size == 0 ? EMPTY : Arrays.copyOf(updated, size);
+                invalidateDispatch();
+            }
+        }
+
+        private boolean contains(Subscription sub) {
+            for (Subscription other : subscribers) {
+                if (other == sub) return true;
+            }
+            return false;
+        }
     }
 }
@@ -5,10 +5,18 @@ import java.util.function.Consumer;
 // A wrapper object for event subscription
 public class Subscription<T> {
     private final Consumer<T> callback;
-    private boolean shouldDelete;
+    private final int priority;
+    private final long sequence;
+    private volatile boolean shouldDelete;
 
     public Subscription(Consumer<T> callback) {
+        this(callback, EventBus.DEFAULT_PRIORITY, Long.MAX_VALUE);
+    }
+
+    Subscription(Consumer<T> callback, int priority, long sequence) {
         this.callback = callback;
+        this.priority = priority;
+        this.sequence = sequence;
     }
 
     public void accept(T event) {
@@ -22,4 +30,12 @@ public class Subscription<T> {
     public boolean shouldDelete() {
         return shouldDelete;
     }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
 }
@@ -0,0 +1,19 @@
+package adris.altoclef.eventbus.events;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Fired whenever the server changes a block in the client world (block update and chunk delta packets).
+ */
+public class BlockUpdateEvent {
+    public BlockPos blockPos;
+    public BlockState previousState;
+    public BlockState blockState;
+
+    public BlockUpdateEvent(BlockPos blockPos, BlockState previousState, BlockState blockState) {
+        this.blockPos = blockPos;
+        this.previousState = previousState;
+        this.blockState = blockState;
+    }
+}
@@ -0,0 +1,11 @@
+package adris.altoclef.eventbus.events;
+
+import net.minecraft.entity.Entity;
+
+public class EntityLoadEvent {
+    public Entity entity;
+
+    public EntityLoadEvent(Entity entity) {
+        this.entity = entity;
+    }
+}
@@ -0,0 +1,15 @@
+package adris.altoclef.eventbus.events;
+
+/**
+ * Fired whenever the server changes slots in the player's inventory or open screen (slot update and inventory packets).
+ */
+public class SlotUpdateEvent {
+    public int syncId;
+    // -1 if the whole screen handler was replaced
+    public int slot;
+
+    public SlotUpdateEvent(int syncId, int slot) {
+        this.syncId = syncId;
+        this.slot = slot;
+    }
+}
@@ -1,9 +1,33 @@
 package adris.altoclef.mixins;
 
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.SlotUpdateEvent;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.InventoryS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(ClientPlayNetworkHandler.class)
 public abstract class ClientPlayNetworkHandlerMixin {
-    // Intentionally empty; previously used for respawn telemetry.
+
+    // Handlers bounce themselves to the client thread first, so TAIL only runs there, after the slots were updated
+
+    @Inject(
+            method = "onScreenHandlerSlotUpdate",
+            at = @At("TAIL")
+    )
+    private void onSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo ci) {
+        EventBus.publish(new SlotUpdateEvent(packet.getSyncId(), packet.getSlot()));
+    }
+
+    @Inject(
+            method = "onInventory",
+            at = @At("TAIL")
+    )
+    private void onInventory(InventoryS2CPacket packet, CallbackInfo ci) {
+        EventBus.publish(new SlotUpdateEvent(packet.getSyncId(), -1));
+    }
 }
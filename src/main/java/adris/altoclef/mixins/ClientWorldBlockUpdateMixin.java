@@ -0,0 +1,46 @@
+package adris.altoclef.mixins;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientWorld.class)
+public class ClientWorldBlockUpdateMixin {
+
+    @Unique
+    private BlockState altoclef$previousState;
+
+    /**
+     * Remembers the state before the server's update is applied.
+     */
+    @Inject(
+            method = "handleBlockUpdate",
+            at = @At("HEAD")
+    )
+    private void onBlockUpdateStart(BlockPos pos, BlockState state, int flags, CallbackInfo ci) {
+        altoclef$previousState = ((ClientWorld) (Object) this).getBlockState(pos);
+    }
+
+    /**
+     * Publishes a BlockUpdateEvent if the update actually changed the block (pending client predictions may swallow it).
+     */
+    @Inject(
+            method = "handleBlockUpdate",
+            at = @At("TAIL")
+    )
+    private void onBlockUpdateEnd(BlockPos pos, BlockState state, int flags, CallbackInfo ci) {
+        BlockState previous = altoclef$previousState;
+        altoclef$previousState = null;
+        BlockState current = ((ClientWorld) (Object) this).getBlockState(pos);
+        if (previous != current) {
+            EventBus.publish(new BlockUpdateEvent(pos.toImmutable(), previous, current));
+        }
+    }
+}
@@ -56,11 +56,14 @@ public class PlaceObsidianBucketTask extends Task {
         // Push the behaviour onto the behaviour stack
         botBehaviour.push();
 
-        // Avoid breaking blocks within the specified conditions
-        botBehaviour.avoidBlockBreaking(this::isBlockInCastFrame);
+        // Avoid breaking the cast frame
+        for (Vec3i framePosRelative : CAST_FRAME) {
+            botBehaviour.avoidBlockBreaking(_pos.add(framePosRelative));
+        }
 
-        // Avoid placing blocks within the specified conditions
-        botBehaviour.avoidBlockPlacing(this::isBlockInCastWaterOrLava);
+        // Avoid placing blocks where the lava and water go
+        botBehaviour.avoidBlockPlacing(_pos);
+        botBehaviour.avoidBlockPlacing(_pos.up());
 
         // Reset the progress checker
         _progressChecker.reset();
@@ -73,30 +76,6 @@ public class PlaceObsidianBucketTask extends Task {
         Debug.logInternal("Progress checker reset");
     }
 
-    private boolean isBlockInCastFrame(BlockPos block) {
-        return Arrays.stream(PlaceObsidianBucketTask.CAST_FRAME)
-                .map(_pos::add)
-                .anyMatch(block::equals);
-    }
-
-    /**
-     * Checks if a given block position is either the same as the current position or the position above it.
-     *
-     * @param blockPos The block position to check
-     * @return True if the block position is the same as the current position or the position above it, false otherwise
-     */
-    private boolean isBlockInCastWaterOrLava(BlockPos blockPos) {
-        // Calculate the position above the current position
-        BlockPos waterTarget = _pos.up();
-
-        // Logging statement for debugging
-        Debug.logInternal("blockPos: " + blockPos);
-        Debug.logInternal("waterTarget: " + waterTarget);
-
-        // Check if the block position is either the same as the current position or the position above it
-        return blockPos.equals(_pos) || blockPos.equals(waterTarget);
-    }
-
     /**
      * This method is called periodically to perform a specific task.
      * It handles the logic for casting a spell using lava and water buckets.
@@ -4,7 +4,6 @@ import adris.altoclef.AltoClef;
 import adris.altoclef.tasks.movement.GetToBlockTask;
 import adris.altoclef.tasks.movement.TimeoutWanderTask;
 import adris.altoclef.tasksystem.Task;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 
@@ -20,10 +19,7 @@ public class ExampleTask2 extends Task {
         AltoClef mod = AltoClef.getInstance();
 
         mod.getBehaviour().push();
-        mod.getBehaviour().avoidBlockBreaking(blockPos -> {
-            BlockState s = mod.getWorld().getBlockState(blockPos);
-            return s.getBlock() == Blocks.OAK_LEAVES || s.getBlock() == Blocks.OAK_LOG;
-        });
+        mod.getBehaviour().avoidBlockBreaking(Blocks.OAK_LEAVES, Blocks.OAK_LOG);
     }
 
     @Override
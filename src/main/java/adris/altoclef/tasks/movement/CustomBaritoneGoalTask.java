@@ -6,8 +6,10 @@ import adris.altoclef.control.InputControls;
 import adris.altoclef.multiversion.versionedfields.Blocks;
 import adris.altoclef.tasksystem.ITaskRequiresGrounded;
 import adris.altoclef.tasksystem.Task;
+import adris.altoclef.util.baritone.ISnapshotGoal;
 import adris.altoclef.util.helpers.WorldHelper;
 import adris.altoclef.util.progresscheck.MovementProgressChecker;
+import adris.altoclef.util.time.TimerGame;
 import baritone.api.pathing.goals.Goal;
 import baritone.api.utils.input.Input;
 import net.minecraft.block.*;
@@ -17,8 +19,11 @@ import net.minecraft.util.math.BlockPos;
  * Turns a baritone goal into a task.
  */
 public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequiresGrounded {
+    private static final double SNAPSHOT_INTERVAL_SECONDS = 1;
     private final Task wanderTask = new TimeoutWanderTask(5, true);
     private final MovementProgressChecker stuckCheck = new MovementProgressChecker();
+    // Snapshots copy blocks and raycast around the player, too much to redo every tick
+    private final TimerGame snapshotTimer = new TimerGame(SNAPSHOT_INTERVAL_SECONDS);
     private final boolean wander;
     protected MovementProgressChecker checker = new MovementProgressChecker();
     protected Goal cachedGoal = null;
@@ -147,7 +152,10 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
             stuckCheck.reset();
         }
         if (cachedGoal == null) {
-            cachedGoal = newGoal(mod);
+            cachedGoal = createGoal(mod);
+        } else if (snapshotTimer.elapsed()) {
+            // Baritone replans on its own while walking the path, keep what those calculations see reasonably fresh
+            refreshSnapshot(mod);
         }
 
         if (wander) {
@@ -169,6 +177,10 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
         }
         if (!mod.getClientBaritone().getCustomGoalProcess().isActive()
                 && mod.getClientBaritone().getPathingBehavior().isSafeToCancel()) {
+            // A new calculation starts right away, let it see the world as it is now (unless that's this tick's)
+            if (snapshotTimer.getDuration() > 0) {
+                refreshSnapshot(mod);
+            }
             mod.getClientBaritone().getCustomGoalProcess().setGoalAndPath(cachedGoal);
         }
         setDebugState("Completing goal.");
@@ -178,7 +190,7 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
     @Override
     public boolean isFinished() {
         if (cachedGoal == null) {
-            cachedGoal = newGoal(AltoClef.getInstance());
+            cachedGoal = createGoal(AltoClef.getInstance());
         }
         return cachedGoal != null && cachedGoal.isInGoal(AltoClef.getInstance().getPlayer().getBlockPos());
     }
@@ -188,6 +200,23 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
         AltoClef.getInstance().getClientBaritone().getPathingBehavior().forceCancel();
     }
 
+    private Goal createGoal(AltoClef mod) {
+        Goal goal = newGoal(mod);
+        if (goal instanceof ISnapshotGoal snapshotGoal) {
+            snapshotGoal.takeSnapshot();
+            snapshotTimer.reset();
+        }
+        return goal;
+    }
+
+    private void refreshSnapshot(AltoClef mod) {
+        // Only swap the snapshot between path calculations, so every calculation sees the same state
+        if (cachedGoal instanceof ISnapshotGoal snapshotGoal && mod.getClientBaritone().getPathingBehavior().getInProgress().isEmpty()) {
+            snapshotGoal.takeSnapshot();
+            snapshotTimer.reset();
+        }
+    }
+
     protected abstract Goal newGoal(AltoClef mod);
 
     protected void onWander(AltoClef mod) {
@@ -1,13 +1,11 @@
 package adris.altoclef.tasks.movement;
 
 import adris.altoclef.AltoClef;
-import adris.altoclef.chains.MobDefenseChain;
 import adris.altoclef.tasksystem.Task;
 import adris.altoclef.util.baritone.GoalRunAwayFromEntities;
 import baritone.api.pathing.goals.Goal;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.CreeperEntity;
-import net.minecraft.util.math.Vec3d;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -55,11 +53,20 @@ public class RunAwayFromCreepersTask extends CustomBaritoneGoalTask {
         }
 
         @Override
-        protected double getCostOfEntity(Entity entity, int x, int y, int z) {
-            if (entity instanceof CreeperEntity) {
-                return MobDefenseChain.getCreeperSafety(new Vec3d(x + 0.5, y + 0.5, z + 0.5), (CreeperEntity) entity);
+        protected double captureFactor(Entity entity) {
+            if (entity instanceof CreeperEntity creeper) {
+                // Same weighting as MobDefenseChain.getCreeperSafety, less is WORSE
+                return creeper.getClientFuseTime(1) <= 0.001f ? 1 : 0.2;
             }
-            return super.getCostOfEntity(entity, x, y, z);
+            return super.captureFactor(entity);
+        }
+
+        @Override
+        protected double getCostOfEntity(EntitySnapshot entities, int index, int x, int y, int z) {
+            double dx = entities.getX(index) - (x + 0.5);
+            double dy = entities.getY(index) - (y + 0.5);
+            double dz = entities.getZ(index) - (z + 0.5);
+            return (dx * dx + dy * dy + dz * dz) * entities.getFactor(index);
         }
     }
 }
@@ -5,18 +5,18 @@ import adris.altoclef.tasksystem.Task;
 import adris.altoclef.util.baritone.GoalRunAwayFromEntities;
 import adris.altoclef.util.helpers.BaritoneHelper;
 import adris.altoclef.util.helpers.LookHelper;
-import adris.altoclef.util.helpers.WorldHelper;
 import baritone.api.pathing.goals.Goal;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.mob.SkeletonEntity;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 import net.minecraft.block.Blocks;
 import net.minecraft.fluid.Fluids;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -58,13 +58,14 @@ public class RunAwayFromHostilesTask extends CustomBaritoneGoalTask {
 
     private class GoalRunAwayFromHostiles extends GoalRunAwayFromEntities {
 
-    private static final double WATER_COST_MULTIPLIER = 4.0;
-    private static final double HEAVY_WATER_COST_MULTIPLIER = 8.0;
+        private static final double WATER_COST_MULTIPLIER = 4.0;
+        private static final double HEAVY_WATER_COST_MULTIPLIER = 8.0;
         private static final double LOS_BREAK_BONUS_MULTIPLIER = 4.0;
-        private static final double LOS_CHECK_RANGE = 32.0;
 
         private final AltoClef modReference;
 
+        private volatile AreaSnapshot area = AreaSnapshot.EMPTY;
+
         public GoalRunAwayFromHostiles(AltoClef mod, double distance) {
             super(mod, distance, false, 0.8);
             this.modReference = mod;
@@ -82,47 +83,159 @@ public class RunAwayFromHostilesTask extends CustomBaritoneGoalTask {
         }
 
         @Override
-        protected double getCostOfEntity(Entity entity, int x, int y, int z) {
-            double cost = super.getCostOfEntity(entity, x, y, z);
-
-            BlockPos pos = new BlockPos(x, y, z);
+        protected void onSnapshot(EntitySnapshot snapshot, Entity[] entities) {
             World world = modReference.getWorld();
-            if (world == null) {
+            Entity player = modReference.getPlayer();
+            if (world == null || player == null) {
+                area = AreaSnapshot.EMPTY;
+                return;
+            }
+            area = new AreaSnapshot(world, snapshot, entities, MAX_HEURISTIC_ENTITIES, player.getBlockPos());
+        }
+
+        @Override
+        protected double getCostOfEntity(EntitySnapshot entities, int index, int x, int y, int z) {
+            double cost = super.getCostOfEntity(entities, index, x, y, z);
+
+            AreaSnapshot area = this.area;
+            // Taken along with a different entity snapshot, don't mix them up
+            if (area.entities != entities) {
                 return cost;
             }
 
-            BlockPos surface = pos.down();
-            boolean tileWater = isWater(world, pos) || isWater(world, surface);
+            boolean tileWater = area.isWater(x, y, z) || area.isWater(x, y - 1, z);
             if (tileWater) {
                 cost = Math.max(cost, 1.0) * WATER_COST_MULTIPLIER;
             }
 
-            int waterNeighbors = countWaterNeighbors(world, surface);
+            int waterNeighbors = area.countWaterNeighbors(x, y - 1, z);
             if (waterNeighbors >= 2) {
                 cost = Math.max(cost, 1.0) * HEAVY_WATER_COST_MULTIPLIER;
             }
 
-            boolean breaksLos = !LookHelper.cleanLineOfSight(entity, WorldHelper.toVec3d(pos), LOS_CHECK_RANGE);
-            if (breaksLos) {
+            if (area.breaksLineOfSight(index, x, y, z)) {
                 cost *= LOS_BREAK_BONUS_MULTIPLIER;
             }
 
             return cost;
         }
+    }
 
-        private boolean isWater(World world, BlockPos pos) {
-            return world.getFluidState(pos).getFluid() == Fluids.WATER || world.getBlockState(pos).getBlock() == Blocks.WATER;
+    /**
+     * Water blocks around the player and which spots the hostiles can see, copied on the client thread so the
+     * goal never touches the world from the pathing thread. Never changed after it's created.
+     */
+    private static final class AreaSnapshot {
+        private static final AreaSnapshot EMPTY = new AreaSnapshot();
+
+        private static final double LOS_CHECK_RANGE = 32.0;
+
+        // How far around the player water is copied, outside of it nothing counts as water
+        private static final int WATER_RADIUS = 10;
+        private static final int WATER_HEIGHT = 4;
+        // Line of sight is sampled every LOS_STEP blocks on the player's level, every sample is one raycast per
+        // hostile. That's 81 raycasts per hostile, spots up to LOS_HEIGHT above or below use the same samples.
+        private static final int LOS_RADIUS = 8;
+        private static final int LOS_HEIGHT = 2;
+        private static final int LOS_STEP = 2;
+
+        private final GoalRunAwayFromEntities.EntitySnapshot entities;
+
+        private final int waterMinX, waterMinY, waterMinZ;
+        private final int waterSizeX, waterSizeY, waterSizeZ;
+        private final BitSet water;
+
+        private final int losMinX, losY, losMinZ;
+        private final int losSizeX, losSizeZ;
+        // One set per hostile, a bit is set if the sample is hidden from it
+        private final BitSet[] hidden;
+
+        private AreaSnapshot() {
+            entities = null;
+            waterMinX = waterMinY = waterMinZ = 0;
+            waterSizeX = waterSizeY = waterSizeZ = 0;
+            water = new BitSet();
+            losMinX = losY = losMinZ = 0;
+            losSizeX = losSizeZ = 0;
+            hidden = new BitSet[0];
         }
 
-        private int countWaterNeighbors(World world, BlockPos pos) {
-            int count = 0;
-            for (Direction dir : Direction.Type.HORIZONTAL) {
-                BlockPos offset = pos.offset(dir);
-                if (isWater(world, offset)) {
-                    count++;
+        private AreaSnapshot(World world, GoalRunAwayFromEntities.EntitySnapshot entities, Entity[] live, int maxEntities, BlockPos center) {
+            this.entities = entities;
+
+            // One extra block on every side for the neighbor and below checks
+            waterMinX = center.getX() - WATER_RADIUS - 1;
+            waterMinY = center.getY() - WATER_HEIGHT - 1;
+            waterMinZ = center.getZ() - WATER_RADIUS - 1;
+            waterSizeX = WATER_RADIUS * 2 + 3;
+            waterSizeY = WATER_HEIGHT * 2 + 2;
+            waterSizeZ = WATER_RADIUS * 2 + 3;
+            water = new BitSet(waterSizeX * waterSizeY * waterSizeZ);
+            BlockPos.Mutable pos = new BlockPos.Mutable();
+            for (int dx = 0; dx < waterSizeX; dx++) {
+                for (int dy = 0; dy < waterSizeY; dy++) {
+                    for (int dz = 0; dz < waterSizeZ; dz++) {
+                        pos.set(waterMinX + dx, waterMinY + dy, waterMinZ + dz);
+                        if (isWater(world, pos)) {
+                            water.set((dx * waterSizeY + dy) * waterSizeZ + dz);
+                        }
+                    }
                 }
             }
+
+            int steps = LOS_RADIUS / LOS_STEP;
+            losMinX = center.getX() - steps * LOS_STEP;
+            losY = center.getY();
+            losMinZ = center.getZ() - steps * LOS_STEP;
+            losSizeX = steps * 2 + 1;
+            losSizeZ = steps * 2 + 1;
+            // The heuristic never looks past the first few entities
+            hidden = new BitSet[Math.min(live.length, maxEntities)];
+            for (int i = 0; i < hidden.length; i++) {
+                hidden[i] = new BitSet(losSizeX * losSizeZ);
+                Vec3d eyePos = new Vec3d(entities.getX(i), entities.getEyeY(i), entities.getZ(i));
+                for (int sx = 0; sx < losSizeX; sx++) {
+                    for (int sz = 0; sz < losSizeZ; sz++) {
+                        Vec3d target = new Vec3d(losMinX + sx * LOS_STEP + 0.5, losY + 0.5, losMinZ + sz * LOS_STEP + 0.5);
+                        if (!LookHelper.cleanLineOfSight(live[i], eyePos, target, LOS_CHECK_RANGE)) {
+                            hidden[i].set(sx * losSizeZ + sz);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static boolean isWater(World world, BlockPos pos) {
+            return world.getFluidState(pos).getFluid() == Fluids.WATER || world.getBlockState(pos).getBlock() == Blocks.WATER;
+        }
+
+        private boolean isWater(int x, int y, int z) {
+            int dx = x - waterMinX, dy = y - waterMinY, dz = z - waterMinZ;
+            if (dx < 0 || dy < 0 || dz < 0 || dx >= waterSizeX || dy >= waterSizeY || dz >= waterSizeZ) return false;
+            return water.get((dx * waterSizeY + dy) * waterSizeZ + dz);
+        }
+
+        private int countWaterNeighbors(int x, int y, int z) {
+            int count = 0;
+            if (isWater(x + 1, y, z)) count++;
+            if (isWater(x - 1, y, z)) count++;
+            if (isWater(x, y, z + 1)) count++;
+            if (isWater(x, y, z - 1)) count++;
             return count;
         }
+
+        /**
+         * Uses the closest sample. Spots outside of the sampled area count as visible on purpose: they only miss
+         * out on the hiding bonus, and that far out the distance to the hostiles matters more anyway. Checking them
+         * for real would mean raycasting from the pathing thread.
+         */
+        private boolean breaksLineOfSight(int index, int x, int y, int z) {
+            if (index >= hidden.length || Math.abs(y - losY) > LOS_HEIGHT) return false;
+            int step = LOS_STEP;
+            int sx = Math.floorDiv(x - losMinX + step / 2, step);
+            int sz = Math.floorDiv(z - losMinZ + step / 2, step);
+            if (sx < 0 || sz < 0 || sx >= losSizeX || sz >= losSizeZ) return false;
+            return hidden[index].get(sx * losSizeZ + sz);
+        }
     }
 }
@@ -8,7 +8,6 @@ import adris.altoclef.tasks.ResourceTask;
 import adris.altoclef.tasksystem.Task;
 import adris.altoclef.util.*;
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 
 public class CollectAmethystBlockTask extends ResourceTask {
 
@@ -28,10 +27,7 @@ public class CollectAmethystBlockTask extends ResourceTask {
     protected void onResourceStart(AltoClef mod) {
         // Bot will not break Budding Amethyst
         mod.getBehaviour().push();
-        mod.getBehaviour().avoidBlockBreaking(blockPos -> {
-            BlockState s = mod.getWorld().getBlockState(blockPos);
-            return s.getBlock() == Blocks.BUDDING_AMETHYST;
-        });
+        mod.getBehaviour().avoidBlockBreaking(Blocks.BUDDING_AMETHYST);
     }
 
     @Override
@@ -66,8 +66,8 @@ public class CollectBucketLiquidTask extends ResourceTask {
         mod.getBehaviour().setRayTracingFluidHandling(RaycastContext.FluidHandling.SOURCE_ONLY);
 
         // Avoid breaking / placing blocks at our liquid
-        mod.getBehaviour().avoidBlockBreaking((pos) -> MinecraftClient.getInstance().world.getBlockState(pos).getBlock() == toCollect);
-        mod.getBehaviour().avoidBlockPlacing((pos) -> MinecraftClient.getInstance().world.getBlockState(pos).getBlock() == toCollect);
+        mod.getBehaviour().avoidBlockBreaking(toCollect);
+        mod.getBehaviour().avoidBlockPlacing(toCollect);
 
         mod.getClientBaritoneSettings().avoidUpdatingFallingBlocks.value = true;
         //_blacklist.clear();
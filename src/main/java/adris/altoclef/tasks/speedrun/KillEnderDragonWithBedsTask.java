@@ -24,6 +24,7 @@ import net.minecraft.entity.boss.dragon.phase.Phase;
 import net.minecraft.entity.boss.dragon.phase.PhaseType;
 import net.minecraft.entity.mob.EndermanEntity;
 import net.minecraft.item.Items;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
@@ -58,7 +59,7 @@ public class KillEnderDragonWithBedsTask extends Task {
     @Override
     protected void onStart() {
         // do not block our view
-        AltoClef.getInstance().getBehaviour().avoidBlockPlacing((pos) -> pos.getZ() == 0 && Math.abs(pos.getX()) < 5);
+        AltoClef.getInstance().getBehaviour().avoidBlockPlacing(new BlockBox(-4, Integer.MIN_VALUE, 0, 4, Integer.MAX_VALUE, 0));
     }
 
     @Override
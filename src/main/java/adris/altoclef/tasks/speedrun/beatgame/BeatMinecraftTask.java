@@ -1292,7 +1292,7 @@ public class BeatMinecraftTask extends Task {
         wasRecoveringFurnace = false;
         endPortalOpened = detectEndPortalOpen(mod, endPortalCenterLocation);
 
-        mod.getBehaviour().avoidBlockBreaking((pos) -> mod.getWorld().getBlockState(pos).getBlock().equals(Blocks.NETHER_PORTAL));
+        mod.getBehaviour().avoidBlockBreaking(Blocks.NETHER_PORTAL);
     }
 
     /**
@@ -2,6 +2,8 @@ package adris.altoclef.tasksystem;
 
 import adris.altoclef.Debug;
 import adris.altoclef.tasks.movement.TimeoutWanderTask;
+import adris.altoclef.telemetry.TickProfiler;
+import adris.altoclef.util.helpers.WorldHelper;
 
 import java.util.function.Predicate;
 
@@ -18,14 +20,31 @@ public abstract class Task {
 
     private boolean active = false;
 
+    // Where and since when this task has been running, for the task runner's history
+    private TaskChain lifetimeChain = null;
+    private long lifetimeStartTick;
+
     public void tick(TaskChain parentChain) {
         parentChain.addTaskToChain(this);
+        // Sub tasks tick inside of this scope, so the profiler sees the same tree as the task chain
+        int scope = TickProfiler.push(getClass());
+        try {
+            tickInternal(parentChain);
+        } finally {
+            TickProfiler.pop(scope);
+        }
+    }
+
+    private void tickInternal(TaskChain parentChain) {
         if (first) {
             Debug.logInternal("Task START: " + this);
             active = true;
             onStart();
             first = false;
             stopped = false;
+            endLifetime();
+            lifetimeChain = parentChain;
+            lifetimeStartTick = WorldHelper.getTicks();
         }
         if (stopped) return;
 
@@ -80,6 +99,7 @@ public abstract class Task {
         if (!first) {
             onStop(interruptTask);
         }
+        endLifetime();
 
         if (sub != null && !sub.stopped()) {
             sub.stop(interruptTask);
@@ -102,6 +122,8 @@ public abstract class Task {
         if (!first) {
             onStop(interruptTask);
         }
+        // We'll start over next tick, which counts as a new run
+        endLifetime();
 
         if (sub != null && !sub.stopped()) {
             sub.interrupt(interruptTask);
@@ -110,6 +132,13 @@ public abstract class Task {
         first = true;
     }
 
+    private void endLifetime() {
+        if (lifetimeChain != null) {
+            lifetimeChain.getRunner().recordCompletedTask(this, lifetimeChain, lifetimeStartTick);
+            lifetimeChain = null;
+        }
+    }
+
     protected void setDebugState(String state) {
         if (state == null) {
             state = "";
@@ -6,8 +6,10 @@ import java.util.List;
 public abstract class TaskChain {
 
     private final List<Task> cachedTaskChain = new ArrayList<>();
+    private final TaskRunner runner;
 
     public TaskChain(TaskRunner runner) {
+        this.runner = runner;
         runner.addTaskChain(this);
     }
 
@@ -41,6 +43,10 @@ public abstract class TaskChain {
         cachedTaskChain.add(task);
     }
 
+    TaskRunner getRunner() {
+        return runner;
+    }
+
     public String toString() {
         return getName();
     }
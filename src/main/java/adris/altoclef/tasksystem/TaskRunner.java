@@ -2,19 +2,17 @@ package adris.altoclef.tasksystem;
 
 import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
+import adris.altoclef.telemetry.TickProfiler;
 import adris.altoclef.util.helpers.WorldHelper;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 public class TaskRunner {
@@ -27,12 +25,22 @@ public class TaskRunner {
     private float cachedCurrentPriority = Float.NEGATIVE_INFINITY;
 
     private final Deque<TaskTimelineEntry> taskTransitions = new ArrayDeque<>();
-    private final Deque<Map<String, Object>> completedTaskHistory = new ArrayDeque<>();
-    private final Map<Task, TaskLifetime> activeTaskLifetimes = new IdentityHashMap<>();
+
+    private static final String PRIORITY_SCOPE = "getPriority";
+    private static final String TICK_SCOPE = "tick";
 
     private static final int MAX_TRANSITION_HISTORY = 64;
     private static final int MAX_COMPLETED_HISTORY = 128;
 
+    // Ring of finished task runs. Only what they looked like when they ended is kept, not the tasks themselves.
+    private final String[] completedDescriptions = new String[MAX_COMPLETED_HISTORY];
+    private final Class<?>[] completedClasses = new Class<?>[MAX_COMPLETED_HISTORY];
+    private final String[] completedChains = new String[MAX_COMPLETED_HISTORY];
+    private final long[] completedStartTicks = new long[MAX_COMPLETED_HISTORY];
+    private final long[] completedEndTicks = new long[MAX_COMPLETED_HISTORY];
+    private int completedHead = 0;
+    private int completedCount = 0;
+
     public String statusReport = " (no chain running) ";
 
     public TaskRunner(AltoClef mod) {
@@ -41,6 +49,15 @@ public class TaskRunner {
     }
 
     public void tick() {
+        int scope = TickProfiler.push(TaskRunner.class);
+        try {
+            tickInternal();
+        } finally {
+            TickProfiler.pop(scope);
+        }
+    }
+
+    private void tickInternal() {
         if (!active || !AltoClef.inGame()) {
             statusReport = " (no chain running) ";
             return;
@@ -51,7 +68,7 @@ public class TaskRunner {
         float maxPriority = Float.NEGATIVE_INFINITY;
         for (TaskChain chain : chains) {
             if (!chain.isActive()) continue;
-            float priority = chain.getPriority();
+            float priority = getPriorityProfiled(chain);
             if (priority > maxPriority) {
                 maxPriority = priority;
                 maxChain = chain;
@@ -85,11 +102,9 @@ public class TaskRunner {
 
         if (maxChain != null) {
             statusReport = "Chain: "+maxChain.getName() + ", priority: "+maxPriority;
-            maxChain.tick();
-            updateTaskLifetimes(maxChain);
+            tickProfiled(maxChain);
         } else {
             statusReport = " (no chain running) ";
-            updateTaskLifetimes(null);
         }
     }
 
@@ -186,7 +201,19 @@ public class TaskRunner {
     }
 
     public List<Map<String, Object>> getRecentCompletedTasks() {
-        return new ArrayList<>(completedTaskHistory);
+        List<Map<String, Object>> result = new ArrayList<>(completedCount);
+        for (int i = 0; i < completedCount; i++) {
+            int slot = (completedHead + i) % MAX_COMPLETED_HISTORY;
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("task", completedDescriptions[slot]);
+            summary.put("class", completedClasses[slot].getName());
+            summary.put("chain", completedChains[slot]);
+            summary.put("started_tick", completedStartTicks[slot]);
+            summary.put("ended_tick", completedEndTicks[slot]);
+            summary.put("duration_ticks", Math.max(0, completedEndTicks[slot] - completedStartTicks[slot]));
+            result.add(summary);
+        }
+        return result;
     }
 
     public void reset() {
@@ -197,8 +224,33 @@ public class TaskRunner {
         cachedCurrentPriority = Float.NEGATIVE_INFINITY;
         statusReport = " (no chain running) ";
         taskTransitions.clear();
-        completedTaskHistory.clear();
-        activeTaskLifetimes.clear();
+        Arrays.fill(completedDescriptions, null);
+        Arrays.fill(completedClasses, null);
+        Arrays.fill(completedChains, null);
+        completedHead = 0;
+        completedCount = 0;
+    }
+
+    private static float getPriorityProfiled(TaskChain chain) {
+        int chainScope = TickProfiler.push(chain.getClass());
+        int scope = TickProfiler.push(PRIORITY_SCOPE);
+        try {
+            return chain.getPriority();
+        } finally {
+            TickProfiler.pop(scope);
+            TickProfiler.pop(chainScope);
+        }
+    }
+
+    private static void tickProfiled(TaskChain chain) {
+        int chainScope = TickProfiler.push(chain.getClass());
+        int scope = TickProfiler.push(TICK_SCOPE);
+        try {
+            chain.tick();
+        } finally {
+            TickProfiler.pop(scope);
+            TickProfiler.pop(chainScope);
+        }
     }
 
     private void recordTransition(String fromChain, float fromPriority, String fromContext,
@@ -210,63 +262,26 @@ public class TaskRunner {
         }
     }
 
-    private void updateTaskLifetimes(TaskChain activeChain) {
-        long currentTick = WorldHelper.getTicks();
-        Set<Task> currentTasks = new HashSet<>();
-        if (activeChain != null) {
-            String chainName = activeChain.getName();
-            for (Task task : activeChain.getTasks()) {
-                currentTasks.add(task);
-                activeTaskLifetimes.computeIfAbsent(task, key -> new TaskLifetime(currentTick, chainName, task.getClass().getName()))
-                        .updateLastKnownContext(task.toString(), chainName);
-            }
-        }
-
-        Iterator<Map.Entry<Task, TaskLifetime>> iterator = activeTaskLifetimes.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Task, TaskLifetime> entry = iterator.next();
-            Task task = entry.getKey();
-            TaskLifetime lifetime = entry.getValue();
-            if (!currentTasks.contains(task)) {
-                Map<String, Object> summary = new LinkedHashMap<>();
-                summary.put("task", lifetime.lastContext != null ? lifetime.lastContext : task.toString());
-                summary.put("class", lifetime.className);
-                summary.put("chain", lifetime.lastKnownChain != null ? lifetime.lastKnownChain : lifetime.declaredChain);
-                summary.put("started_tick", lifetime.startTick);
-                summary.put("ended_tick", currentTick);
-                summary.put("duration_ticks", Math.max(0, currentTick - lifetime.startTick));
-                completedTaskHistory.addLast(summary);
-                while (completedTaskHistory.size() > MAX_COMPLETED_HISTORY) {
-                    completedTaskHistory.removeFirst();
-                }
-                iterator.remove();
-            }
+    /**
+     * Called by a task whenever one of its runs ends, whether it was stopped or interrupted.
+     */
+    void recordCompletedTask(Task task, TaskChain chain, long startTick) {
+        int slot;
+        if (completedCount < MAX_COMPLETED_HISTORY) {
+            slot = (completedHead + completedCount++) % MAX_COMPLETED_HISTORY;
+        } else {
+            // Full, overwrite the oldest
+            slot = completedHead;
+            completedHead = (completedHead + 1) % MAX_COMPLETED_HISTORY;
         }
+        completedDescriptions[slot] = task.toString();
+        completedClasses[slot] = task.getClass();
+        completedChains[slot] = chain.getName();
+        completedStartTicks[slot] = startTick;
+        completedEndTicks[slot] = WorldHelper.getTicks();
     }
 
     private record TaskTimelineEntry(long tick, String fromChain, float fromPriority, String fromContext,
                                      String toChain, float toPriority, String toContext) {
     }
-
-    private static final class TaskLifetime {
-        private final long startTick;
-        private final String declaredChain;
-        private final String className;
-        private String lastContext;
-        private String lastKnownChain;
-
-        private TaskLifetime(long startTick, String chainName, String className) {
-            this.startTick = startTick;
-            this.declaredChain = chainName;
-            this.className = className;
-            this.lastKnownChain = chainName;
-        }
-
-        private void updateLastKnownContext(String context, String chain) {
-            this.lastContext = context;
-            if (chain != null) {
-                this.lastKnownChain = chain;
-            }
-        }
-    }
 }
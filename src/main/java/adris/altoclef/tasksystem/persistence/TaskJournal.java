@@ -0,0 +1,244 @@
+package adris.altoclef.tasksystem.persistence;
+
+import adris.altoclef.Debug;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only journal of command changes next to a snapshot of the whole state, written by a background thread.
+ * <p>
+ * Callers hand over finished lines and snapshots and return right away. The writer appends lines to the journal
+ * and syncs it according to the sync interval. A snapshot is written to a temporary file and moved over the old
+ * one, after which the journal is emptied, since everything in it is part of the snapshot now.
+ */
+final class TaskJournal {
+
+    private static final long CLOSE_TIMEOUT_MS = 2_000L;
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final LongSupplier syncIntervalMs;
+    private final Object lock = new Object();
+    private final Thread writer;
+
+    // Lines (as bytes) and snapshots in the order they were submitted. Guarded by lock.
+    private ArrayDeque<Object> pending = new ArrayDeque<>();
+    private boolean closing = false;
+
+    // Only touched by the writer thread
+    private ArrayDeque<Object> writing = new ArrayDeque<>();
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private boolean unsynced = false;
+    private long lastSyncMs = 0;
+
+    /**
+     * @param syncIntervalMs How long appended lines may stay unsynced, 0 to sync after every write and a negative
+     *                       value to never sync. Read on every write, so a settings reload applies right away.
+     */
+    TaskJournal(Path journalFile, Path snapshotFile, LongSupplier syncIntervalMs) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+        this.syncIntervalMs = syncIntervalMs;
+        writer = new Thread(this::runWriter, "TaskJournal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads every complete line of a journal. A half written last line from a crash is left out.
+     */
+    static List<String> readLines(Path journalFile) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return List.of();
+        }
+        byte[] bytes = Files.readAllBytes(journalFile);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                if (i > start) {
+                    lines.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                }
+                start = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    void append(String line) {
+        submit((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replaces the snapshot and empties the journal. The snapshot has to include every line appended before it.
+     */
+    void writeSnapshot(byte[] snapshot) {
+        submit(new Snapshot(snapshot));
+    }
+
+    private void submit(Object entry) {
+        synchronized (lock) {
+            if (closing) return;
+            pending.addLast(entry);
+            lock.notifyAll();
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            boolean done;
+            synchronized (lock) {
+                while (!closing && pending.isEmpty()) {
+                    // Wake up in time to sync lines that are still waiting for it
+                    long interval = syncIntervalMs.getAsLong();
+                    boolean syncDue = unsynced && interval >= 0;
+                    long waitMs = syncDue ? lastSyncMs + interval - System.currentTimeMillis() : 0;
+                    if (syncDue && waitMs <= 0) break;
+                    try {
+                        lock.wait(waitMs);
+                    } catch (InterruptedException e) {
+                        // Nothing should interrupt the writer, close() goes through closing
+                    }
+                }
+                ArrayDeque<Object> filled = pending;
+                pending = writing;
+                writing = filled;
+                done = closing;
+            }
+
+            for (Object entry : writing) {
+                if (entry instanceof Snapshot snapshot) {
+                    flushLines();
+                    replaceSnapshot(snapshot.bytes);
+                } else {
+                    lineBuffer.write((byte[]) entry, 0, ((byte[]) entry).length);
+                }
+            }
+            writing.clear();
+            flushLines();
+
+            long interval = syncIntervalMs.getAsLong();
+            if (unsynced && (done || (interval >= 0 && System.currentTimeMillis() - lastSyncMs >= interval))) {
+                sync();
+            }
+            if (done) {
+                closeChannel();
+                return;
+            }
+        }
+    }
+
+    private void flushLines() {
+        if (lineBuffer.size() == 0) return;
+        try {
+            if (channel == null) {
+                Files.createDirectories(journalFile.getParent());
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lineBuffer.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            unsynced = true;
+        } catch (IOException ex) {
+            // The next snapshot still has these changes, as long as one gets written
+            Debug.logWarning("Failed to append to task journal " + journalFile + ": " + ex.getMessage());
+            closeChannel();
+        } finally {
+            lineBuffer.reset();
+        }
+    }
+
+    private void sync() {
+        unsynced = false;
+        lastSyncMs = System.currentTimeMillis();
+        if (channel == null) return;
+        try {
+            channel.force(false);
+        } catch (IOException ex) {
+            Debug.logWarning("Failed to sync task journal " + journalFile + ": " + ex.getMessage());
+            closeChannel();
+        }
+    }
+
+    private void replaceSnapshot(byte[] bytes) {
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            }
+            try {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            // Keep the journal, it's still needed on top of the old snapshot
+            Debug.logWarning("Failed to write task persistence file " + snapshotFile + ": " + ex.getMessage());
+            return;
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            channel.truncate(0);
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException ex) {
+            // Replaying the old lines on top of the new snapshot would apply them twice
+            Debug.logWarning("Failed to empty task journal " + journalFile + ", removing it: " + ex.getMessage());
+            closeChannel();
+            try {
+                Files.deleteIfExists(journalFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    /**
+     * Writes and syncs everything still pending.
+     */
+    void close() {
+        synchronized (lock) {
+            if (closing) return;
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Snapshot(byte[] bytes) {
+    }
+}
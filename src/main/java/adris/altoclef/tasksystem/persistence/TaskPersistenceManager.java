@@ -32,15 +32,25 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * The saved file records the currently running command, upcoming commands, and a rolling history of
  * recently completed commands. When the client is reloaded, any unfinished commands are re-played so the
  * bot continues where it left off.
+ * <p>
+ * Every change is appended to a journal as one small JSON line by a background writer, and every so often the
+ * whole state is compacted into the saved file and the journal starts over. Loading replays the journal on top
+ * of the saved file.
  */
 public class TaskPersistenceManager {
 
     private static final int MAX_COMPLETED_HISTORY = 64;
+    // Compact the journal into the state file after this many changes
+    private static final int COMPACT_AFTER_ENTRIES = 128;
     private static final DateTimeFormatter ISO_FORMAT = DateTimeFormatter.ISO_INSTANT;
 
     private final AltoClef mod;
     private final ObjectMapper mapper;
+    private final ObjectMapper journalMapper;
     private final Path stateFile;
+    private final Path journalFile;
+    private final TaskJournal journal;
+    private int journalEntries = 0;
 
     private final List<CommandRecord> queue = new CopyOnWriteArrayList<>();
     private final Deque<CommandRecord> completed = new ArrayDeque<>();
@@ -51,18 +61,37 @@ public class TaskPersistenceManager {
     public TaskPersistenceManager(AltoClef mod) {
         this.mod = mod;
         mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        journalMapper = new ObjectMapper();
         Path runDirectory = MinecraftClient.getInstance().runDirectory.toPath();
         stateFile = runDirectory.resolve(Paths.get("altoclef", "state", "task-state.json"));
+        journalFile = runDirectory.resolve(Paths.get("altoclef", "state", "task-state.journal"));
         loadState();
+        journal = new TaskJournal(journalFile, stateFile, this::getSyncIntervalMs);
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "TaskJournal-shutdown"));
+        // Start this session from a fresh snapshot, which also records which commands are waiting to be resumed
+        writeState();
     }
 
     public synchronized void enqueueCommands(List<String> commands) {
         if (commands == null || commands.isEmpty()) return;
         long now = System.currentTimeMillis();
+        List<String> sanitized = new ArrayList<>(commands.size());
         for (String raw : commands) {
             String command = sanitize(raw);
-            if (command.isEmpty()) continue;
+            if (!command.isEmpty()) {
+                sanitized.add(command);
+            }
+        }
+        if (sanitized.isEmpty()) return;
+        applyEnqueue(sanitized, now);
+
+        Map<String, Object> entry = journalEntry("enqueue", now);
+        entry.put("commands", sanitized);
+        appendJournal(entry);
+    }
 
+    private void applyEnqueue(List<String> commands, long now) {
+        for (String command : commands) {
             CommandRecord resumeRecord = findResumeRecord(command);
             if (resumeRecord != null) {
                 resumeRecord.resumePending = false;
@@ -77,14 +106,20 @@ public class TaskPersistenceManager {
 
             queue.add(new CommandRecord(command, CommandStatus.QUEUED, now));
         }
-        writeState();
     }
 
     public synchronized void notifyCommandStart(String command) {
         String sanitized = sanitize(command);
         if (sanitized.isEmpty()) return;
         long now = System.currentTimeMillis();
+        applyStart(sanitized, now);
+
+        Map<String, Object> entry = journalEntry("start", now);
+        entry.put("command", sanitized);
+        appendJournal(entry);
+    }
 
+    private void applyStart(String sanitized, long now) {
         CommandRecord record = findActiveCandidate(sanitized);
         if (record == null) {
             record = new CommandRecord(sanitized, CommandStatus.RUNNING, now);
@@ -94,14 +129,24 @@ public class TaskPersistenceManager {
             record.status = CommandStatus.RUNNING;
             record.startedAtMs = now;
         }
-        writeState();
     }
 
     public synchronized void notifyCommandComplete(String command, boolean success, String error) {
         String sanitized = sanitize(command);
         if (sanitized.isEmpty()) return;
         long now = System.currentTimeMillis();
+        applyComplete(sanitized, success, error, now);
+
+        Map<String, Object> entry = journalEntry("complete", now);
+        entry.put("command", sanitized);
+        entry.put("success", success);
+        if (!success && error != null) {
+            entry.put("error", error);
+        }
+        appendJournal(entry);
+    }
 
+    private void applyComplete(String sanitized, boolean success, String error, long now) {
         CommandRecord record = findRunningRecord(sanitized);
         if (record == null) {
             record = new CommandRecord(sanitized, success ? CommandStatus.COMPLETED : CommandStatus.FAILED, now);
@@ -117,7 +162,29 @@ public class TaskPersistenceManager {
         while (completed.size() > MAX_COMPLETED_HISTORY) {
             completed.removeLast();
         }
-        writeState();
+    }
+
+    private Map<String, Object> journalEntry(String op, long now) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("op", op);
+        entry.put("at_ms", now);
+        return entry;
+    }
+
+    private void appendJournal(Map<String, Object> entry) {
+        try {
+            journal.append(journalMapper.writeValueAsString(entry));
+        } catch (IOException ex) {
+            Debug.logWarning("Failed to serialize task journal entry: " + ex.getMessage());
+            return;
+        }
+        if (++journalEntries >= COMPACT_AFTER_ENTRIES) {
+            writeState();
+        }
+    }
+
+    private long getSyncIntervalMs() {
+        return mod.getModSettings() != null ? mod.getModSettings().getTaskJournalSyncIntervalMs() : 0;
     }
 
     public synchronized List<String> getCommandsToResume() {
@@ -161,6 +228,21 @@ public class TaskPersistenceManager {
     }
 
     private void loadState() {
+        loadSnapshot();
+        replayJournal();
+
+        resumeCommands.clear();
+        for (CommandRecord record : queue) {
+            if (record.status == CommandStatus.RUNNING || record.status == CommandStatus.QUEUED) {
+                record.resumePending = true;
+                resumeCommands.addLast(record.command);
+            } else {
+                record.resumePending = false;
+            }
+        }
+    }
+
+    private void loadSnapshot() {
         if (!Files.exists(stateFile)) {
             return;
         }
@@ -184,6 +266,8 @@ public class TaskPersistenceManager {
                     if (entry.has("last_error")) {
                         record.lastError = entry.get("last_error").asText(null);
                     }
+                    // Whether the command was still waiting to be resumed when this was written, so the journal replays the same way
+                    record.resumePending = entry.path("resume_pending").asBoolean(false);
                     queue.add(record);
                 }
             }
@@ -215,19 +299,56 @@ public class TaskPersistenceManager {
                     stateFile,
                     ex.getMessage()));
         }
+    }
 
-        resumeCommands.clear();
-        for (CommandRecord record : queue) {
-            if (record.status == CommandStatus.RUNNING || record.status == CommandStatus.QUEUED) {
-                record.resumePending = true;
-                resumeCommands.addLast(record.command);
+    private void replayJournal() {
+        List<String> lines;
+        try {
+            lines = TaskJournal.readLines(journalFile);
+        } catch (IOException ex) {
+            Debug.logWarning(String.format(Locale.ROOT,
+                    "Failed to read task journal %s: %s",
+                    journalFile,
+                    ex.getMessage()));
+            return;
+        }
+        for (String line : lines) {
+            try {
+                JsonNode entry = journalMapper.readTree(line);
+                long at = entry.path("at_ms").asLong(System.currentTimeMillis());
+                switch (entry.path("op").asText("")) {
+                    case "enqueue" -> {
+                        List<String> commands = new ArrayList<>();
+                        for (JsonNode command : entry.path("commands")) {
+                            commands.add(command.asText());
+                        }
+                        applyEnqueue(commands, at);
+                    }
+                    case "start" -> applyStart(entry.path("command").asText(), at);
+                    case "complete" -> applyComplete(entry.path("command").asText(),
+                            entry.path("success").asBoolean(false),
+                            entry.path("error").asText(null),
+                            at);
+                    default -> {
+                    }
+                }
+            } catch (IOException ex) {
+                // Only a crash mid write leaves a broken line, and nothing after it can be trusted
+                Debug.logWarning(String.format(Locale.ROOT,
+                        "Stopped replaying task journal %s at a broken entry: %s",
+                        journalFile,
+                        ex.getMessage()));
+                return;
             }
         }
     }
 
+    /**
+     * Hands a snapshot of everything to the journal writer, which replaces the state file with it and starts a new journal.
+     */
     private synchronized void writeState() {
+        journalEntries = 0;
         try {
-            Files.createDirectories(stateFile.getParent());
             Map<String, Object> root = new LinkedHashMap<>();
             root.put("version", 1);
             root.put("updated_at", ISO_FORMAT.format(Instant.now().atOffset(ZoneOffset.UTC)));
@@ -243,10 +364,10 @@ public class TaskPersistenceManager {
                 runnerInfo.put("current_chain", current != null ? current.getName() : null);
                 root.put("task_runner", runnerInfo);
             }
-            mapper.writeValue(stateFile.toFile(), root);
+            journal.writeSnapshot(mapper.writeValueAsBytes(root));
         } catch (IOException ex) {
             Debug.logWarning(String.format(Locale.ROOT,
-                    "Failed to write task persistence file %s: %s",
+                    "Failed to serialize task persistence state for %s: %s",
                     stateFile,
                     ex.getMessage()));
         }
@@ -272,6 +393,9 @@ public class TaskPersistenceManager {
             if (record.lastError != null) {
                 entry.put("last_error", record.lastError);
             }
+            if (record.resumePending) {
+                entry.put("resume_pending", true);
+            }
             serialized.add(entry);
         }
         return serialized;
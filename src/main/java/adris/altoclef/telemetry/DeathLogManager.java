@@ -8,9 +8,8 @@ import adris.altoclef.tasksystem.TaskRunner;
 import adris.altoclef.trackers.EntityTracker;
 import adris.altoclef.util.helpers.StorageHelper;
 import adris.altoclef.util.helpers.WorldHelper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.EquipmentSlot;
@@ -32,10 +31,7 @@ import net.minecraft.world.LightType;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.text.Text;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -55,17 +51,20 @@ public final class DeathLogManager {
     private static final int MAX_DROPS = 16;
     private static final int MAX_STATUS_EFFECTS = 24;
     private static final int MAX_TASKS_PER_CHAIN = 16;
+    private static final int LATEST_LOG_TAIL_LINES = 500;
 
     private final AltoClef mod;
-    private final ObjectMapper mapper = new ObjectMapper();
     private final AtomicInteger sessionSequence = new AtomicInteger(0);
     private final String sessionId;
     private final Path sessionDir;
+    private final Path latestLogPath;
 
     public DeathLogManager(AltoClef mod) {
         this.mod = mod;
         this.sessionId = mod.getTelemetrySessionId();
         this.sessionDir = mod.getTelemetrySessionDir();
+        MinecraftClient client = MinecraftClient.getInstance();
+        this.latestLogPath = client != null ? client.runDirectory.toPath().resolve("logs/latest.log") : null;
     }
 
     public void recordDeath(int deathNumber, String deathMessage) {
@@ -104,13 +103,10 @@ public final class DeathLogManager {
         root.put("tasks", collectTaskContext());
         root.put("threats", collectThreatContext(player));
         root.put("drops_nearby", collectNearbyDrops(player));
+        // Only reads latest.log, so that waits for the writer thread
+        root.put("latest_log_tail", (TelemetryWriter.Deferred) () -> LogTail.describe(latestLogPath, LATEST_LOG_TAIL_LINES));
 
-        try {
-            Path target = resolveDeathFile(activeSessionDir, deathIndex, deathMessage);
-            writeSnapshot(root, activeSessionDir, target, deathIndex);
-        } catch (IOException ex) {
-            Debug.logWarning("Failed to write death log entry: " + ex.getMessage());
-        }
+        writeSnapshot(root, damageCategory(player), deathIndex);
     }
 
     private Map<String, Object> collectPlayerContext(ClientPlayerEntity player, ClientWorld world) {
@@ -395,34 +391,28 @@ public final class DeathLogManager {
         return drops;
     }
 
-    private void writeSnapshot(Map<String, Object> snapshot, Path sessionDirectory, Path targetFile, int index) throws IOException {
-        Files.createDirectories(sessionDirectory);
-        Path parent = targetFile.getParent();
-        if (parent != null) {
-            Files.createDirectories(parent);
-        }
-        String json;
-        try {
-            json = mapper.writeValueAsString(snapshot);
-        } catch (JsonProcessingException ex) {
-            Debug.logWarning("Failed to serialize death log snapshot: " + ex.getMessage());
+    private void writeSnapshot(Map<String, Object> snapshot, String category, int index) {
+        TelemetryWriter writer = mod.getTelemetryWriter();
+        if (writer == null || !writer.append("death", category, WorldHelper.getTicks(), snapshot)) {
+            Debug.logWarning("Dropped death log entry #" + index + ", the telemetry writer is unavailable or behind.");
             return;
         }
-        Files.writeString(targetFile, json + System.lineSeparator(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         Debug.logMessage(String.format(Locale.ROOT,
-                "[DeathLog] Captured detailed death entry #%d -> %s",
+                "[DeathLog] Captured detailed death entry #%d (%s) -> %s",
                 index,
-                targetFile.toString()), false);
+                category,
+                writer.getArchiveDirectory()), false);
     }
 
-    private Path resolveDeathFile(Path sessionDirectory, int index, String deathMessage) {
-        String slug = deathMessage == null ? "unknown" : deathMessage.replaceAll("[^a-zA-Z0-9-_]+", "_").replaceAll("_+", "_").trim();
-        slug = slug.replaceAll("^_+|_+$", "");
-        if (slug.isEmpty()) {
-            slug = "death";
+    /**
+     * @return the damage type that killed the player, what death entries are archived under
+     */
+    private static String damageCategory(ClientPlayerEntity player) {
+        DamageSource source = player != null ? player.getRecentDamageSource() : null;
+        if (source == null) {
+            return "unknown";
         }
-        String fileName = String.format(Locale.ROOT, "death-%04d-%s.json", index, slug);
-        return sessionDirectory.resolve(fileName);
+        return source.getTypeRegistryEntry().getKey().map(key -> key.getValue().toString()).orElse("unknown");
     }
 
     private boolean isDeathLoggingEnabled() {
@@ -0,0 +1,132 @@
+package adris.altoclef.telemetry;
+
+import adris.altoclef.Debug;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds and reads the last lines of a log by reading backwards from the end of the file in blocks, so only the
+ * tail is ever read no matter how big the log is.
+ */
+final class LogTail {
+
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    private LogTail() {
+    }
+
+    /**
+     * @param size how much of the file to search, lines written after it aren't part of the tail
+     * @return the offset the last {@code maxLines} lines start at, 0 if the file doesn't have more than that
+     */
+    static long findStart(FileChannel channel, long size, int maxLines) throws IOException {
+        if (maxLines <= 0) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BLOCK_BYTES, Math.max(size, 1)));
+        int newlines = 0;
+        long blockEnd = size;
+        while (blockEnd > 0) {
+            long blockStart = Math.max(0, blockEnd - buffer.capacity());
+            buffer.clear().limit((int) (blockEnd - blockStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                    throw new IOException("File shrank while reading it");
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) != '\n') continue;
+                // The newline ending the file doesn't start another line
+                if (blockStart + i == size - 1) continue;
+                if (++newlines == maxLines) {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return 0;
+    }
+
+    static List<String> readLastLines(Path path, int maxLines) throws IOException {
+        if (maxLines <= 0) {
+            return List.of();
+        }
+        byte[] bytes;
+        int length;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Lines written after this aren't part of the tail
+            long size = channel.size();
+            long start = findStart(channel, size, maxLines);
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;
+            }
+            bytes = buffer.array();
+            length = buffer.position();
+        }
+
+        List<String> lines = new ArrayList<>(maxLines);
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != '\n') continue;
+            int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+            lines.add(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            lineStart = i + 1;
+        }
+        if (lineStart < length) {
+            // Last line without a newline yet
+            lines.add(new String(bytes, lineStart, length - lineStart, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    /**
+     * The last lines of a log as a telemetry snapshot field, with what went wrong instead if it can't be read.
+     */
+    static Map<String, Object> describe(Path path, int maxLines) {
+        Map<String, Object> log = new LinkedHashMap<>();
+        log.put("path", path != null ? path.toString() : "<unavailable>");
+        log.put("requested_lines", maxLines);
+
+        if (path == null) {
+            log.put("present", false);
+            log.put("line_count", 0);
+            log.put("error", "log path not resolved");
+            return log;
+        }
+
+        if (!Files.exists(path) || Files.isDirectory(path)) {
+            log.put("present", false);
+            log.put("line_count", 0);
+            return log;
+        }
+
+        try {
+            List<String> lines = readLastLines(path, maxLines);
+            log.put("present", true);
+            log.put("line_count", lines.size());
+            log.put("lines", lines);
+        } catch (IOException | ArithmeticException ex) {
+            log.put("present", false);
+            log.put("line_count", 0);
+            log.put("error", ex.getMessage());
+            Debug.logInternal(String.format(Locale.ROOT,
+                    "[Telemetry] Failed to read %s tail: %s",
+                    path.getFileName(),
+                    ex.getMessage()));
+        }
+
+        return log;
+    }
+}
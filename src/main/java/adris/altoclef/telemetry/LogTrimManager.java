@@ -3,41 +3,60 @@ package adris.altoclef.telemetry;
 import adris.altoclef.Debug;
 import adris.altoclef.util.time.TimerReal;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.lang.reflect.Method;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.appender.AbstractOutputStreamAppender;
+import org.apache.logging.log4j.core.appender.FileAppender;
 import org.apache.logging.log4j.core.appender.OutputStreamManager;
+import org.apache.logging.log4j.core.appender.RollingFileAppender;
+import org.apache.logging.log4j.core.appender.RollingRandomAccessFileAppender;
+import org.apache.logging.log4j.core.config.AppenderRef;
 import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
 
 /**
  * Periodically truncates large log files so they only keep a small trailing window.
+ * <p>
+ * Trimming runs on its own thread. The cut point is found with {@link LogTail}, and the kept tail is copied into a temporary file that replaces the log, so the work depends on how much is kept, not on
+ * how big the log got.
+ * <p>
+ * The log4j appenders writing the file keep running while most of the tail is copied. They're only stopped, which
+ * closes their handles, to copy what was logged meanwhile and swap the file, then new appenders for the same file
+ * take their place. Lines logged during that short swap are dropped. Where the log can't be replaced (Windows
+ * refuses while anything else has it open) the tail is copied back into the original file instead.
  */
 public final class LogTrimManager {
     private static final int MAX_LINES = 3000;
     private static final double TRIM_INTERVAL_SECONDS = 600.0;
     private final TimerReal trimTimer = new TimerReal(TRIM_INTERVAL_SECONDS);
     private final List<Path> trackedFiles = new ArrayList<>();
+    // Only touched by the trim thread
     private final Set<Path> failedPaths = new HashSet<>();
 
+    private final Object lock = new Object();
+    private Thread trimmer;
+    // Guarded by lock
+    private boolean trimRequested = false;
+
     public LogTrimManager(Path runDirectory) {
         if (runDirectory != null) {
             trackedFiles.add(runDirectory.resolve("logs/latest.log"));
@@ -54,8 +73,33 @@ public final class LogTrimManager {
             return;
         }
         trimTimer.reset();
-        for (Path path : trackedFiles) {
-            trimFile(path);
+        synchronized (lock) {
+            // A trim that's still running covers this one
+            trimRequested = true;
+            if (trimmer == null) {
+                trimmer = new Thread(this::runTrimmer, "LogTrim");
+                trimmer.setDaemon(true);
+                trimmer.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void runTrimmer() {
+        while (true) {
+            synchronized (lock) {
+                while (!trimRequested) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Nothing should interrupt the trimmer
+                    }
+                }
+                trimRequested = false;
+            }
+            for (Path path : trackedFiles) {
+                trimFile(path);
+            }
         }
     }
 
@@ -67,33 +111,44 @@ public final class LogTrimManager {
             return;
         }
 
-        List<Appender> pausedAppenders = pauseAppenders(path);
-        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            ArrayDeque<String> tail = new ArrayDeque<>(MAX_LINES + 1);
-            int lineCount = 0;
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String sanitized = sanitize(line);
-                tail.addLast(sanitized);
-                if (tail.size() > MAX_LINES) {
-                    tail.removeFirst();
+        Path temp = path.resolveSibling(path.getFileName() + ".trim");
+        try {
+            // Most of the tail is copied while logging carries on
+            long copied;
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = in.size();
+                long cut = LogTail.findStart(in, size, MAX_LINES);
+                if (cut <= 0) {
+                    return;
+                }
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    copied = transfer(in, cut, size, out);
                 }
-                lineCount++;
             }
 
-            if (lineCount <= MAX_LINES) {
-                return;
+            List<AbstractOutputStreamAppender<?>> appenders = findAppenders(path);
+            if (appenders == null) {
+                throw new IOException("written by an appender that can't be reopened");
             }
-
-            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING)) {
-                Iterator<String> iterator = tail.iterator();
-                while (iterator.hasNext()) {
-                    writer.write(iterator.next());
-                    if (iterator.hasNext()) {
-                        writer.newLine();
+            // The appenders are only stopped for the lines logged during the copy and the swap
+            stopAppenders(appenders);
+            try {
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    transfer(in, copied, in.size(), out);
+                    out.force(false);
+                }
+                try {
+                    try {
+                        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
                     }
+                } catch (IOException ex) {
+                    copyBack(temp, path);
                 }
+            } finally {
+                replaceAppenders(appenders);
             }
             failedPaths.remove(path);
             Debug.logInternal(String.format(Locale.ROOT,
@@ -101,96 +156,193 @@ public final class LogTrimManager {
                     path.getFileName(),
                     MAX_LINES));
         } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
             if (failedPaths.add(path)) {
                 Debug.logInternal(String.format(Locale.ROOT,
                         "[LogTrim] Failed to trim %s: %s",
                         path,
                         ex.getMessage()));
             }
-        } finally {
-            resumeAppenders(pausedAppenders);
         }
     }
 
-    private String sanitize(String line) {
-        StringBuilder builder = null;
-        int length = line.length();
-        for (int i = 0; i < length; i++) {
-            char c = line.charAt(i);
-            if (c == '\u0000' || (Character.isISOControl(c) && c != '\t')) {
-                if (builder == null) {
-                    builder = new StringBuilder(length);
-                    builder.append(line, 0, i);
-                }
-                continue;
-            }
-            if (builder != null) {
-                builder.append(c);
-            }
+    /**
+     * @return the position in {@code in} the copy got to
+     */
+    private static long transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        long position = from;
+        while (position < to) {
+            long moved = in.transferTo(position, to - position, out);
+            if (moved <= 0) break;
+            position += moved;
         }
-        return builder == null ? line : builder.toString();
+        return position;
     }
 
-    private List<Appender> pauseAppenders(Path target) {
-        List<Appender> paused = new ArrayList<>();
-        if (target == null) {
-            return paused;
+    // Overwrites the start of the log with the kept tail and cuts off the rest
+    private static void copyBack(Path temp, Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(temp, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            transfer(in, 0, size, out);
+            out.truncate(size);
+            out.force(false);
         }
+        Files.deleteIfExists(temp);
+    }
 
-        LoggerContext context;
+    private static LoggerContext loggerContext() {
         try {
-            context = (LoggerContext) LogManager.getContext(false);
+            return (LoggerContext) LogManager.getContext(false);
         } catch (Exception ignored) {
-            return paused;
-        }
-        if (context == null) {
-            return paused;
+            return null;
         }
+    }
 
+    /**
+     * @return the appenders writing to the file, null if one of them is a kind {@link #rebuild} can't reopen
+     */
+    private List<AbstractOutputStreamAppender<?>> findAppenders(Path target) {
+        List<AbstractOutputStreamAppender<?>> found = new ArrayList<>();
+        LoggerContext context = loggerContext();
+        if (context == null || context.getConfiguration() == null) {
+            return found;
+        }
         Path normalizedTarget = normalizePath(target);
         if (normalizedTarget == null) {
-            return paused;
+            return found;
         }
 
-        Configuration configuration = context.getConfiguration();
-        if (configuration == null) {
-            return paused;
-        }
-
-        for (Appender appender : configuration.getAppenders().values()) {
+        for (Appender appender : context.getConfiguration().getAppenders().values()) {
             Path appenderPath = resolveAppenderPath(appender);
             if (appenderPath == null) {
                 continue;
             }
             Path normalizedAppender = normalizePath(appenderPath);
-            if (normalizedAppender == null) {
+            if (normalizedAppender == null || !normalizedAppender.equals(normalizedTarget)) {
                 continue;
             }
-            if (normalizedAppender.equals(normalizedTarget)) {
-                try {
-                    appender.stop();
-                    paused.add(appender);
-                } catch (Exception ignored) {
-                    // Failing to stop isn't fatal; continue without pausing.
-                }
+            if (!(appender instanceof FileAppender
+                    || appender instanceof RollingFileAppender
+                    || appender instanceof RollingRandomAccessFileAppender)) {
+                return null;
             }
+            found.add((AbstractOutputStreamAppender<?>) appender);
         }
-        return paused;
+        return found;
     }
 
-    private void resumeAppenders(List<Appender> appenders) {
-        if (appenders == null || appenders.isEmpty()) {
-            return;
-        }
+    private static void stopAppenders(List<AbstractOutputStreamAppender<?>> appenders) {
         for (Appender appender : appenders) {
             try {
-                appender.start();
+                appender.stop();
             } catch (Exception ignored) {
-                // If we fail to restart, Log4j will recreate on demand; avoid spamming errors here.
+                // Failing to stop isn't fatal; continue without pausing.
             }
         }
     }
 
+    /**
+     * Stopping an appender closed its file and starting it again wouldn't reopen it, so each one is replaced by a
+     * new appender with the same name, layout and file, in the loggers that used the old one. Only these appenders
+     * change, the rest of the logging configuration is left alone.
+     */
+    private static void replaceAppenders(List<AbstractOutputStreamAppender<?>> appenders) {
+        if (appenders.isEmpty()) {
+            return;
+        }
+        LoggerContext context = loggerContext();
+        if (context == null) {
+            return;
+        }
+        Configuration configuration = context.getConfiguration();
+        List<LoggerConfig> loggerConfigs = new ArrayList<>(configuration.getLoggers().values());
+        if (!loggerConfigs.contains(configuration.getRootLogger())) {
+            loggerConfigs.add(configuration.getRootLogger());
+        }
+
+        for (AbstractOutputStreamAppender<?> old : appenders) {
+            Appender replacement;
+            try {
+                replacement = rebuild(old, configuration);
+                replacement.start();
+            } catch (Exception ex) {
+                Debug.logInternal(String.format(Locale.ROOT,
+                        "[LogTrim] Failed to reopen appender %s: %s",
+                        old.getName(),
+                        ex.getMessage()));
+                continue;
+            }
+            configuration.getAppenders().remove(old.getName());
+            configuration.addAppender(replacement);
+            for (LoggerConfig loggerConfig : loggerConfigs) {
+                if (!loggerConfig.getAppenders().containsKey(old.getName())) {
+                    continue;
+                }
+                // Keep the level and filter the reference had
+                Level level = null;
+                Filter filter = null;
+                for (AppenderRef ref : loggerConfig.getAppenderRefs()) {
+                    if (old.getName().equals(ref.getRef())) {
+                        level = ref.getLevel();
+                        filter = ref.getFilter();
+                    }
+                }
+                loggerConfig.removeAppender(old.getName());
+                loggerConfig.addAppender(replacement, level, filter);
+            }
+        }
+        context.updateLoggers();
+    }
+
+    private static Appender rebuild(AbstractOutputStreamAppender<?> old, Configuration configuration) {
+        // The triggering policy is handed over as is, the new manager initializes it again
+        if (old instanceof RollingRandomAccessFileAppender rolling) {
+            return RollingRandomAccessFileAppender.newBuilder()
+                    .withFileName(rolling.getFileName())
+                    .withFilePattern(rolling.getFilePattern())
+                    .withAppend(true)
+                    .withPolicy(rolling.getTriggeringPolicy())
+                    .withStrategy(rolling.getManager().getRolloverStrategy())
+                    .withImmediateFlush(rolling.getImmediateFlush())
+                    .setName(rolling.getName())
+                    .setLayout(rolling.getLayout())
+                    .setFilter(rolling.getFilter())
+                    .setIgnoreExceptions(rolling.ignoreExceptions())
+                    .setConfiguration(configuration)
+                    .build();
+        }
+        if (old instanceof RollingFileAppender rolling) {
+            return RollingFileAppender.newBuilder()
+                    .withFileName(rolling.getFileName())
+                    .withFilePattern(rolling.getFilePattern())
+                    .withAppend(true)
+                    .withPolicy(rolling.getTriggeringPolicy())
+                    .withStrategy(rolling.getManager().getRolloverStrategy())
+                    .withImmediateFlush(rolling.getImmediateFlush())
+                    .setName(rolling.getName())
+                    .setLayout(rolling.getLayout())
+                    .setFilter(rolling.getFilter())
+                    .setIgnoreExceptions(rolling.ignoreExceptions())
+                    .setConfiguration(configuration)
+                    .build();
+        }
+        FileAppender file = (FileAppender) old;
+        return FileAppender.newBuilder()
+                .withFileName(file.getFileName())
+                .withAppend(true)
+                .withImmediateFlush(file.getImmediateFlush())
+                .setName(file.getName())
+                .setLayout(file.getLayout())
+                .setFilter(file.getFilter())
+                .setIgnoreExceptions(file.ignoreExceptions())
+                .setConfiguration(configuration)
+                .build();
+    }
+
     private Path resolveAppenderPath(Appender appender) {
         if (!(appender instanceof AbstractOutputStreamAppender)) {
             return null;
@@ -0,0 +1,204 @@
+package adris.altoclef.telemetry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the session archive: {@code segment-NNNNN.ndjson.gz} files of gzip compressed JSON lines, one event per line,
+ * and an {@code index.ndjson} with one line per compressed block saying where it is and which event types,
+ * categories and ticks it holds.
+ * <p>
+ * Every event line looks like {@code {"type": "stuck", "category": "...", "tick": 123, "data": {...}}}. Queries
+ * only decompress the blocks whose index entry can match.
+ */
+public final class SessionArchiveReader {
+
+    public static final String DIRECTORY = "archive";
+    static final String INDEX_FILE = "index.ndjson";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+
+    static final String FIELD_TYPE = "type";
+    static final String FIELD_CATEGORY = "category";
+    static final String FIELD_TICK = "tick";
+    static final String FIELD_DATA = "data";
+
+    static final String INDEX_SEGMENT = "segment";
+    static final String INDEX_OFFSET = "offset";
+    static final String INDEX_LENGTH = "length";
+    static final String INDEX_EVENTS = "events";
+    static final String INDEX_MIN_TICK = "min_tick";
+    static final String INDEX_MAX_TICK = "max_tick";
+    static final String INDEX_TYPES = "types";
+    static final String INDEX_CATEGORIES = "categories";
+
+    private final Path directory;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public SessionArchiveReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the archive folder inside a telemetry session folder
+     */
+    public static Path inSession(Path sessionDir) {
+        return sessionDir.resolve(DIRECTORY);
+    }
+
+    static String segmentName(int number) {
+        return String.format(Locale.ROOT, "%s%05d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return the segment number of a file name, 0 if it isn't a segment
+     */
+    static int parseSegmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) return 0;
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return every block in the archive in the order they were written. Entries cut off by a crash are skipped.
+     */
+    public List<Block> readIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return List.of();
+        }
+        List<Block> blocks = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonNode entry;
+                try {
+                    entry = mapper.readTree(line);
+                } catch (IOException e) {
+                    continue;
+                }
+                Map<String, Integer> types = new HashMap<>();
+                entry.path(INDEX_TYPES).fields().forEachRemaining(field -> types.put(field.getKey(), field.getValue().asInt()));
+                List<String> categories = new ArrayList<>();
+                entry.path(INDEX_CATEGORIES).forEach(category -> categories.add(category.asText()));
+                blocks.add(new Block(
+                        entry.path(INDEX_SEGMENT).asText(),
+                        entry.path(INDEX_OFFSET).asLong(),
+                        entry.path(INDEX_LENGTH).asLong(),
+                        entry.path(INDEX_EVENTS).asInt(),
+                        entry.path(INDEX_MIN_TICK).asLong(),
+                        entry.path(INDEX_MAX_TICK).asLong(),
+                        types,
+                        categories
+                ));
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Calls {@code consumer} with every matching event, in the order they were written.
+     *
+     * @param type     Event type ("stuck", "death"), null for any
+     * @param category Event category, null for any
+     * @param fromTick Only events at or after this tick
+     * @param toTick   Only events at or before this tick
+     * @return how many blocks had to be decompressed
+     */
+    public int forEach(String type, String category, long fromTick, long toTick, Consumer<Event> consumer) throws IOException {
+        int decompressed = 0;
+        for (Block block : readIndex()) {
+            if (!block.mayContain(type, category, fromTick, toTick)) continue;
+            decompressed++;
+            for (Event event : readBlock(block)) {
+                if (type != null && !type.equals(event.type())) continue;
+                if (category != null && !category.equals(event.category())) continue;
+                if (event.tick() < fromTick || event.tick() > toTick) continue;
+                consumer.accept(event);
+            }
+        }
+        return decompressed;
+    }
+
+    public List<Event> read(String type, String category) throws IOException {
+        List<Event> events = new ArrayList<>();
+        forEach(type, category, Long.MIN_VALUE, Long.MAX_VALUE, events::add);
+        return events;
+    }
+
+    /**
+     * Decompresses a single block.
+     */
+    public List<Event> readBlock(Block block) throws IOException {
+        byte[] bytes = new byte[Math.toIntExact(block.length())];
+        try (FileChannel channel = FileChannel.open(directory.resolve(block.segment()), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long position = block.offset();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Block at " + block.offset() + " runs past the end of " + block.segment());
+                }
+                position += read;
+            }
+        }
+
+        List<Event> events = new ArrayList<>(block.events());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonNode node = mapper.readTree(line);
+                events.add(new Event(
+                        node.path(FIELD_TYPE).asText(null),
+                        node.path(FIELD_CATEGORY).asText(null),
+                        node.path(FIELD_TICK).asLong(),
+                        node.path(FIELD_DATA)
+                ));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Where one compressed block is and what's in it.
+     */
+    public record Block(String segment, long offset, long length, int events, long minTick, long maxTick,
+                        Map<String, Integer> types, List<String> categories) {
+
+        public boolean mayContain(String type, String category, long fromTick, long toTick) {
+            if (type != null && !types.containsKey(type)) return false;
+            if (category != null && !categories.contains(category)) return false;
+            return maxTick >= fromTick && minTick <= toTick;
+        }
+    }
+
+    public record Event(String type, String category, long tick, JsonNode data) {
+    }
+}
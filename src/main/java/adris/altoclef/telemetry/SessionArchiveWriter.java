@@ -0,0 +1,178 @@
+package adris.altoclef.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends events to the session archive read by {@link SessionArchiveReader}.
+ * <p>
+ * Events are collected into a block, and {@link #commit()} compresses the block as its own gzip member at the end
+ * of the current segment and adds a line describing it to the index. Segments are plain concatenated gzip, so
+ * {@code zcat} reads them whole, while the reader can jump straight to the blocks it needs. A segment that grew
+ * past {@link #MAX_SEGMENT_BYTES} is left alone and the next block starts a new one.
+ * <p>
+ * Not thread safe, only the telemetry writer thread uses it.
+ */
+final class SessionArchiveWriter {
+
+    private static final long MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    private final Path directory;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // The block being collected
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    private int blockEvents = 0;
+    private long blockMinTick = Long.MAX_VALUE;
+    private long blockMaxTick = Long.MIN_VALUE;
+    private final TreeMap<String, Integer> blockTypes = new TreeMap<>();
+    private final TreeSet<String> blockCategories = new TreeSet<>();
+
+    private FileChannel segment;
+    private String segmentName;
+    private int segmentNumber;
+    private long segmentBytes;
+    private FileChannel index;
+
+    SessionArchiveWriter(Path directory) {
+        this.directory = directory;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    void append(String type, String category, long tick, Map<String, Object> data) throws IOException {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put(SessionArchiveReader.FIELD_TYPE, type);
+        event.put(SessionArchiveReader.FIELD_CATEGORY, category);
+        event.put(SessionArchiveReader.FIELD_TICK, tick);
+        event.put(SessionArchiveReader.FIELD_DATA, data);
+        // Serialize before touching the block, so a failure doesn't leave half a line in it
+        byte[] line = mapper.writeValueAsBytes(event);
+        block.write(line);
+        block.write('\n');
+
+        blockEvents++;
+        blockMinTick = Math.min(blockMinTick, tick);
+        blockMaxTick = Math.max(blockMaxTick, tick);
+        blockTypes.merge(type, 1, Integer::sum);
+        if (category != null) {
+            blockCategories.add(category);
+        }
+    }
+
+    /**
+     * Writes the collected events as one block. Does nothing if there are none.
+     */
+    void commit() throws IOException {
+        if (blockEvents == 0) return;
+        try {
+            compressed.reset();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                block.writeTo(gzip);
+            }
+            openSegment();
+            long offset = segmentBytes;
+            ByteBuffer bytes = ByteBuffer.wrap(compressed.toByteArray());
+            while (bytes.hasRemaining()) {
+                segmentBytes += segment.write(bytes);
+            }
+            segment.force(false);
+
+            // Only indexed once the data is on disk, so the index never points past the end of a segment
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(SessionArchiveReader.INDEX_SEGMENT, segmentName);
+            entry.put(SessionArchiveReader.INDEX_OFFSET, offset);
+            entry.put(SessionArchiveReader.INDEX_LENGTH, segmentBytes - offset);
+            entry.put(SessionArchiveReader.INDEX_EVENTS, blockEvents);
+            entry.put(SessionArchiveReader.INDEX_MIN_TICK, blockMinTick);
+            entry.put(SessionArchiveReader.INDEX_MAX_TICK, blockMaxTick);
+            entry.put(SessionArchiveReader.INDEX_TYPES, blockTypes);
+            entry.put(SessionArchiveReader.INDEX_CATEGORIES, blockCategories);
+            byte[] line = (mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (index == null) {
+                index = FileChannel.open(directory.resolve(SessionArchiveReader.INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer indexBytes = ByteBuffer.wrap(line);
+            while (indexBytes.hasRemaining()) {
+                index.write(indexBytes);
+            }
+            index.force(false);
+        } catch (IOException ex) {
+            // Start over with fresh files, the block is lost either way
+            close();
+            throw ex;
+        } finally {
+            resetBlock();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        if (segment != null && segmentBytes < MAX_SEGMENT_BYTES) return;
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        Files.createDirectories(directory);
+        if (segmentNumber == 0) {
+            segmentNumber = findLastSegmentNumber();
+        }
+        segmentNumber++;
+        segmentName = SessionArchiveReader.segmentName(segmentNumber);
+        segment = FileChannel.open(directory.resolve(segmentName), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+    }
+
+    // Never append to a segment from an earlier run, its last block might be cut off
+    private int findLastSegmentNumber() throws IOException {
+        int last = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                last = Math.max(last, SessionArchiveReader.parseSegmentNumber(file.getFileName().toString()));
+            }
+        }
+        return last;
+    }
+
+    private void resetBlock() {
+        block.reset();
+        blockEvents = 0;
+        blockMinTick = Long.MAX_VALUE;
+        blockMaxTick = Long.MIN_VALUE;
+        blockTypes.clear();
+        blockCategories.clear();
+    }
+
+    void close() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+            }
+            segment = null;
+        }
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException ignored) {
+            }
+            index = null;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package adris.altoclef.telemetry;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.Subscription;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import adris.altoclef.eventbus.events.ChunkLoadEvent;
+import adris.altoclef.eventbus.events.ChunkUnloadEvent;
+import adris.altoclef.eventbus.events.ClientTickEvent;
+import adris.altoclef.eventbus.events.SendChatEvent;
+import net.minecraft.block.Block;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records what the client sees (chunks, block changes, entity positions, the inventory and typed commands) into a
+ * {@link SessionRecording}, so a session can be replayed without the game to measure the trackers.
+ * <p>
+ * Everything runs on the client thread. Copying a chunk reads every block in it, which is fine for a debugging
+ * tool but not something to leave running.
+ */
+public final class SessionRecorder {
+
+    private static SessionRecorder active;
+
+    private final AltoClef mod;
+    private final Path file;
+    private final DataOutputStream out;
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+
+    private ClientWorld recordedWorld;
+    private int[] lastItems = new int[0];
+    private int[] lastCounts = new int[0];
+    private final ArrayList<Entity> entities = new ArrayList<>();
+    private int ticks = 0;
+
+    private SessionRecorder(AltoClef mod, Path file) throws IOException {
+        this.mod = mod;
+        this.file = file;
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 1 << 16), 1 << 16));
+        out.writeInt(SessionRecording.MAGIC);
+        out.writeInt(SessionRecording.VERSION);
+    }
+
+    public static boolean isRecording() {
+        return active != null;
+    }
+
+    /**
+     * Starts recording into a new file in the telemetry session folder.
+     *
+     * @return the file being written
+     */
+    public static Path start(AltoClef mod) throws IOException {
+        if (active != null) return active.file;
+        Path file = mod.getTelemetrySessionDir().resolve("replay").resolve("session-" + System.currentTimeMillis() + ".acrp");
+        SessionRecorder recorder = new SessionRecorder(mod, file);
+        recorder.subscribe();
+        active = recorder;
+        return file;
+    }
+
+    /**
+     * @return how many ticks were recorded, or -1 if nothing was being recorded
+     */
+    public static int stop() throws IOException {
+        SessionRecorder recorder = active;
+        if (recorder == null) return -1;
+        active = null;
+        recorder.close();
+        return recorder.ticks;
+    }
+
+    private void subscribe() {
+        subscriptions.add(EventBus.subscribe(ChunkLoadEvent.class, evt -> record(() -> onChunkLoad(evt.chunk))));
+        subscriptions.add(EventBus.subscribe(ChunkUnloadEvent.class, evt -> record(() -> onChunkUnload(evt.chunkPos))));
+        subscriptions.add(EventBus.subscribe(BlockUpdateEvent.class, evt -> record(() -> onBlockUpdate(evt))));
+        subscriptions.add(EventBus.subscribe(SendChatEvent.class, evt -> record(() -> onSendChat(evt.message))));
+        subscriptions.add(EventBus.subscribe(ClientTickEvent.class, evt -> record(this::onTick)));
+    }
+
+    private void close() throws IOException {
+        for (Subscription<?> subscription : subscriptions) {
+            unsubscribe(subscription);
+        }
+        subscriptions.clear();
+        out.close();
+    }
+
+    private static <T> void unsubscribe(Subscription<T> subscription) {
+        EventBus.unsubscribe(subscription);
+    }
+
+    private void record(RecordAction action) {
+        if (active != this) return;
+        try {
+            action.run();
+        } catch (IOException e) {
+            mod.logWarning("Session recording failed, stopping: " + e.getMessage());
+            active = null;
+            try {
+                close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void onChunkLoad(WorldChunk chunk) throws IOException {
+        if (chunk == null) return;
+        // A new world was just snapshotted, which already includes this chunk
+        if (checkWorld()) return;
+        writeChunk(chunk);
+    }
+
+    private void onChunkUnload(ChunkPos pos) throws IOException {
+        if (checkWorld()) return;
+        out.writeByte(SessionRecording.CHUNK_UNLOAD);
+        out.writeInt(pos.x);
+        out.writeInt(pos.z);
+    }
+
+    private void onBlockUpdate(BlockUpdateEvent evt) throws IOException {
+        if (evt.blockState == null || checkWorld()) return;
+        out.writeByte(SessionRecording.BLOCK_UPDATE);
+        out.writeLong(evt.blockPos.asLong());
+        writeVarInt(Block.getRawIdFromState(evt.blockState));
+    }
+
+    private void onSendChat(String message) throws IOException {
+        if (message == null || !AltoClef.getCommandExecutor().isClientCommand(message)) return;
+        out.writeByte(SessionRecording.COMMAND);
+        out.writeUTF(message);
+    }
+
+    private void onTick() throws IOException {
+        ClientWorld world = mod.getWorld();
+        ClientPlayerEntity player = mod.getPlayer();
+        if (world == null || player == null) return;
+        checkWorld();
+
+        out.writeByte(SessionRecording.TICK);
+        out.writeDouble(player.getX());
+        out.writeDouble(player.getY());
+        out.writeDouble(player.getZ());
+
+        entities.clear();
+        for (Entity entity : world.getEntities()) {
+            if (entity != null && entity != player) entities.add(entity);
+        }
+        writeVarInt(entities.size());
+        for (Entity entity : entities) {
+            out.writeInt(entity.getId());
+            writeVarInt(Registries.ENTITY_TYPE.getRawId(entity.getType()));
+            out.writeDouble(entity.getX());
+            out.writeDouble(entity.getY());
+            out.writeDouble(entity.getZ());
+        }
+        entities.clear();
+
+        writeInventoryIfChanged(player.getInventory());
+        ticks++;
+    }
+
+    private void writeInventoryIfChanged(PlayerInventory inventory) throws IOException {
+        int size = inventory.size();
+        boolean changed = size != lastItems.length;
+        if (changed) {
+            lastItems = new int[size];
+            lastCounts = new int[size];
+        }
+        for (int slot = 0; slot < size; slot++) {
+            ItemStack stack = inventory.getStack(slot);
+            int item = stack.isEmpty() ? 0 : Item.getRawId(stack.getItem());
+            int count = stack.isEmpty() ? 0 : stack.getCount();
+            if (lastItems[slot] != item || lastCounts[slot] != count) {
+                lastItems[slot] = item;
+                lastCounts[slot] = count;
+                changed = true;
+            }
+        }
+
+        out.writeBoolean(changed);
+        if (!changed) return;
+        writeVarInt(size);
+        for (int slot = 0; slot < size; slot++) {
+            writeVarInt(lastItems[slot]);
+            writeVarInt(lastCounts[slot]);
+        }
+    }
+
+    /**
+     * Starts over with a snapshot of every loaded chunk if we're in a different world than before.
+     *
+     * @return whether a snapshot was just taken
+     */
+    private boolean checkWorld() throws IOException {
+        ClientWorld world = mod.getWorld();
+        if (world == null || world == recordedWorld) return false;
+        recordedWorld = world;
+
+        out.writeByte(SessionRecording.WORLD);
+        out.writeInt(world.getBottomSectionCoord());
+        out.writeInt(world.countVerticalSections());
+
+        // While joining there is no player yet, the chunks will come in as load events
+        ClientPlayerEntity player = mod.getPlayer();
+        if (player != null) {
+            ChunkPos center = player.getChunkPos();
+            int radius = MinecraftClient.getInstance().options.getClampedViewDistance() + 2;
+            for (int x = center.x - radius; x <= center.x + radius; x++) {
+                for (int z = center.z - radius; z <= center.z + radius; z++) {
+                    if (world.getChunkManager().isChunkLoaded(x, z)) {
+                        writeChunk(world.getChunk(x, z));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void writeChunk(WorldChunk chunk) throws IOException {
+        ChunkSection[] sections = chunk.getSectionArray();
+        out.writeByte(SessionRecording.CHUNK_LOAD);
+        out.writeInt(chunk.getPos().x);
+        out.writeInt(chunk.getPos().z);
+        out.writeInt(chunk.getBottomSectionCoord());
+        out.writeShort(sections.length);
+        for (ChunkSection section : sections) {
+            if (section == null || section.isEmpty()) {
+                out.writeByte(SessionRecording.SECTION_EMPTY);
+                continue;
+            }
+            out.writeByte(SessionRecording.SECTION_STATES);
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        writeVarInt(Block.getRawIdFromState(section.getBlockState(x, y, z)));
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    @FunctionalInterface
+    private interface RecordAction {
+        void run() throws IOException;
+    }
+}
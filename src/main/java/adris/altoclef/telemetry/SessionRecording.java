@@ -0,0 +1,193 @@
+package adris.altoclef.telemetry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The file format written by {@link SessionRecorder}, and a reader for it.
+ * <p>
+ * A recording is a gzipped stream of records. Everything that happened between two client ticks (chunks loading,
+ * blocks changing, commands) comes first, followed by a tick record with the player and entity positions and,
+ * if it changed, the player's inventory. Block states, items and entity types are stored as raw registry ids,
+ * so a recording can only be read back with the same game version.
+ */
+public final class SessionRecording {
+
+    static final int MAGIC = 0x41435250; // "ACRP"
+    static final int VERSION = 1;
+
+    static final byte WORLD = 1;
+    static final byte CHUNK_LOAD = 2;
+    static final byte CHUNK_UNLOAD = 3;
+    static final byte BLOCK_UPDATE = 4;
+    static final byte COMMAND = 5;
+    static final byte TICK = 6;
+
+    static final byte SECTION_EMPTY = 0;
+    static final byte SECTION_STATES = 1;
+
+    static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private SessionRecording() {
+    }
+
+    /**
+     * Reads a whole recording into memory, so replaying it doesn't pay for decoding.
+     */
+    public static List<Tick> read(Path file) throws IOException {
+        List<Tick> ticks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a session recording: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported recording version " + version + ", expected " + VERSION);
+            }
+
+            List<Event> events = new ArrayList<>();
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    // Recordings cut short (crash, game closed) are still readable up to the last full record
+                    break;
+                }
+                switch (type) {
+                    case WORLD -> events.add(new WorldChange(in.readInt(), in.readInt()));
+                    case CHUNK_LOAD -> events.add(readChunk(in));
+                    case CHUNK_UNLOAD -> events.add(new ChunkUnload(in.readInt(), in.readInt()));
+                    case BLOCK_UPDATE -> events.add(new BlockUpdate(in.readLong(), readVarInt(in)));
+                    case COMMAND -> events.add(new Command(in.readUTF()));
+                    case TICK -> {
+                        ticks.add(readTick(in, ticks.size(), events));
+                        events = new ArrayList<>();
+                    }
+                    default -> throw new IOException("Corrupt recording, unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // Truncated in the middle of a record, keep the ticks we got
+        }
+        return ticks;
+    }
+
+    private static ChunkLoad readChunk(DataInputStream in) throws IOException {
+        int x = in.readInt();
+        int z = in.readInt();
+        int bottomSectionCoord = in.readInt();
+        int[][] sections = new int[in.readUnsignedShort()][];
+        for (int i = 0; i < sections.length; i++) {
+            byte kind = in.readByte();
+            if (kind == SECTION_EMPTY) continue;
+            int[] states = new int[SECTION_VOLUME];
+            for (int j = 0; j < SECTION_VOLUME; j++) {
+                states[j] = readVarInt(in);
+            }
+            sections[i] = states;
+        }
+        return new ChunkLoad(x, z, bottomSectionCoord, sections);
+    }
+
+    private static Tick readTick(DataInputStream in, int index, List<Event> events) throws IOException {
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+
+        int entityCount = readVarInt(in);
+        int[] entityIds = new int[entityCount];
+        int[] entityTypes = new int[entityCount];
+        double[] entityPositions = new double[entityCount * 3];
+        for (int i = 0; i < entityCount; i++) {
+            entityIds[i] = in.readInt();
+            entityTypes[i] = readVarInt(in);
+            entityPositions[i * 3] = in.readDouble();
+            entityPositions[i * 3 + 1] = in.readDouble();
+            entityPositions[i * 3 + 2] = in.readDouble();
+        }
+
+        Inventory inventory = null;
+        if (in.readBoolean()) {
+            int slots = readVarInt(in);
+            int[] items = new int[slots];
+            int[] counts = new int[slots];
+            for (int i = 0; i < slots; i++) {
+                items[i] = readVarInt(in);
+                counts[i] = readVarInt(in);
+            }
+            inventory = new Inventory(items, counts);
+        }
+        return new Tick(index, x, y, z, events, new Entities(entityIds, entityTypes, entityPositions), inventory);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt recording, varint too long");
+    }
+
+    /**
+     * Something that happened between two ticks.
+     */
+    public interface Event {
+    }
+
+    /**
+     * The player joined a world or changed dimension, everything loaded before is gone.
+     */
+    public record WorldChange(int bottomSectionCoord, int sectionCount) implements Event {
+    }
+
+    /**
+     * @param sections Raw block state ids per section in y, z, x order. {@code null} for empty sections.
+     */
+    public record ChunkLoad(int x, int z, int bottomSectionCoord, int[][] sections) implements Event {
+    }
+
+    public record ChunkUnload(int x, int z) implements Event {
+    }
+
+    public record BlockUpdate(long pos, int state) implements Event {
+    }
+
+    /**
+     * A command the player typed, with its prefix.
+     */
+    public record Command(String line) implements Event {
+    }
+
+    /**
+     * @param positions x, y, z per entity
+     */
+    public record Entities(int[] ids, int[] types, double[] positions) {
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Raw item id and count per inventory slot.
+     */
+    public record Inventory(int[] items, int[] counts) {
+    }
+
+    /**
+     * @param events    What happened since the previous tick, in order
+     * @param inventory {@code null} if it didn't change since the previous tick
+     */
+    public record Tick(int index, double playerX, double playerY, double playerZ, List<Event> events,
+                       Entities entities, Inventory inventory) {
+    }
+}
@@ -9,9 +9,6 @@ import adris.altoclef.tasksystem.TaskRunner;
 import adris.altoclef.trackers.EntityTracker;
 import adris.altoclef.util.helpers.StorageHelper;
 import adris.altoclef.util.helpers.WorldHelper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
@@ -30,17 +27,10 @@ import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.LightType;
 import net.minecraft.world.biome.Biome;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.time.Instant;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -60,18 +50,13 @@ public final class StuckLogManager {
     private static final int LATEST_LOG_TAIL_LINES = 500;
 
     private final AltoClef mod;
-    private final ObjectMapper mapper = new ObjectMapper();
-    private final ObjectWriter prettyWriter;
     private final AtomicLong sequence = new AtomicLong(0L);
     private final String sessionId;
-    private final Path sessionDir;
     private final Path latestLogPath;
 
     public StuckLogManager(AltoClef mod) {
         this.mod = mod;
         this.sessionId = mod.getTelemetrySessionId();
-        this.sessionDir = mod.getTelemetrySessionDir();
-        this.prettyWriter = mapper.writerWithDefaultPrettyPrinter();
         MinecraftClient client = MinecraftClient.getInstance();
         this.latestLogPath = client != null ? client.runDirectory.toPath().resolve("logs/latest.log") : null;
     }
@@ -100,15 +85,12 @@ public final class StuckLogManager {
         root.put("world", collectWorldContext(player, world));
         root.put("inventory", collectInventoryContext(player));
         root.put("tasks", collectTaskContext());
-        root.put("payload", details == null ? Map.of() : details);
-        root.put("latest_log_tail", collectLatestLogTail());
-
-        try {
-            Path target = resolveStuckFile(entryIndex, category);
-            writeSnapshot(root, category, target, entryIndex);
-        } catch (IOException ex) {
-            Debug.logWarning("Failed to write stuck log entry: " + ex.getMessage());
-        }
+        // Callers may keep using their map after this
+        root.put("payload", details == null ? Map.of() : new LinkedHashMap<>(details));
+        // Only reads latest.log, so that waits for the writer thread
+        root.put("latest_log_tail", (TelemetryWriter.Deferred) () -> LogTail.describe(latestLogPath, LATEST_LOG_TAIL_LINES));
+
+        writeSnapshot(root, category, entryIndex);
     }
 
     private Map<String, Object> collectPlayerContext(ClientPlayerEntity player, ClientWorld world) {
@@ -357,32 +339,20 @@ public final class StuckLogManager {
         return tasks;
     }
 
-    private void writeSnapshot(Map<String, Object> snapshot, String category, Path targetFile, long index) throws IOException {
-        Files.createDirectories(sessionDir);
-        String json;
-        try {
-            json = prettyWriter.writeValueAsString(snapshot);
-        } catch (JsonProcessingException ex) {
-            Debug.logWarning("Failed to serialize stuck log snapshot: " + ex.getMessage());
+    private void writeSnapshot(Map<String, Object> snapshot, String category, long index) {
+        TelemetryWriter writer = mod.getTelemetryWriter();
+        if (writer == null || !writer.append("stuck", category, WorldHelper.getTicks(), snapshot)) {
+            Debug.logInternal(String.format(Locale.ROOT,
+                    "[StuckLog] Dropped %s snapshot #%d, the telemetry writer is unavailable or behind",
+                    category,
+                    index));
             return;
         }
-        Files.writeString(targetFile, json + System.lineSeparator(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         Debug.logMessage(String.format(Locale.ROOT,
                 "[StuckLog] Captured %s snapshot #%d -> %s",
                 category,
                 index,
-                targetFile.toString()), false);
-    }
-
-    private Path resolveStuckFile(long index, String category) {
-        String base = category == null ? "stuck" : category;
-        String slug = base.replaceAll("[^a-zA-Z0-9-_]+", "_").replaceAll("_+", "_").trim();
-        slug = slug.replaceAll("^_+|_+$", "");
-        if (slug.isEmpty()) {
-            slug = "stuck";
-        }
-        String fileName = String.format(Locale.ROOT, "stuck-%04d-%s.json", index, slug);
-        return sessionDir.resolve(fileName);
+                writer.getArchiveDirectory()), false);
     }
 
     private static Map<String, Object> vectorMap(Vec3d vec) {
@@ -465,58 +435,4 @@ public final class StuckLogManager {
         double scale = Math.pow(10, decimals);
         return Math.round(value * scale) / scale;
     }
-
-    private Map<String, Object> collectLatestLogTail() {
-        Map<String, Object> latestLog = new LinkedHashMap<>();
-        latestLog.put("path", latestLogPath != null ? latestLogPath.toString() : "<unavailable>");
-        latestLog.put("requested_lines", LATEST_LOG_TAIL_LINES);
-
-        if (latestLogPath == null) {
-            latestLog.put("present", false);
-            latestLog.put("line_count", 0);
-            latestLog.put("error", "latest.log path not resolved");
-            return latestLog;
-        }
-
-        if (!Files.exists(latestLogPath) || Files.isDirectory(latestLogPath)) {
-            latestLog.put("present", false);
-            latestLog.put("line_count", 0);
-            return latestLog;
-        }
-
-        try {
-            List<String> lines = readLastLines(latestLogPath, LATEST_LOG_TAIL_LINES);
-            latestLog.put("present", true);
-            latestLog.put("line_count", lines.size());
-            latestLog.put("lines", lines);
-        } catch (IOException ex) {
-            latestLog.put("present", false);
-            latestLog.put("line_count", 0);
-            latestLog.put("error", ex.getMessage());
-            Debug.logInternal(String.format(Locale.ROOT,
-                    "[StuckLog] Failed to read latest.log tail: %s",
-                    ex.getMessage()));
-        }
-
-        return latestLog;
-    }
-
-    private static List<String> readLastLines(Path path, int maxLines) throws IOException {
-        if (maxLines <= 0) {
-            return List.of();
-        }
-
-        Deque<String> deque = new ArrayDeque<>(maxLines);
-        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (deque.size() == maxLines) {
-                    deque.removeFirst();
-                }
-                deque.addLast(line);
-            }
-        }
-
-        return new ArrayList<>(deque);
-    }
 }
@@ -0,0 +1,258 @@
+package adris.altoclef.telemetry;
+
+import adris.altoclef.Debug;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Appends telemetry snapshots to the session archive (see {@link SessionArchiveReader}) on a background thread.
+ * <p>
+ * The client thread only collects the snapshot (plain maps, lists, strings and numbers that nothing else holds on
+ * to) and hands it over. Serializing, compressing and file IO happen on the writer, which commits everything it
+ * picked up in one go as a single archive block. The queue is bounded: when the writer is behind, new snapshots are
+ * dropped and counted instead of piling up. {@link #close()} writes whatever is still queued before returning.
+ */
+public final class TelemetryWriter {
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long CLOSE_TIMEOUT_MS = 5_000L;
+
+    /**
+     * A snapshot value that's expensive but safe to compute off the client thread (reading a log file, for example).
+     * It's resolved on the writer right before the snapshot is serialized.
+     */
+    @FunctionalInterface
+    public interface Deferred {
+        Object resolve();
+    }
+
+    private final SessionArchiveWriter archive;
+    private final Object lock = new Object();
+    private final Thread writer;
+
+    // Guarded by lock
+    private ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private boolean closing = false;
+    private long submitted = 0;
+    private long finished = 0;
+    private long written = 0;
+    private long dropped = 0;
+    private long failed = 0;
+
+    // Only touched by the writer thread
+    private ArrayDeque<Entry> writing = new ArrayDeque<>();
+
+    /**
+     * @param archiveDirectory Where the archive goes, null to drop every snapshot (no session folder)
+     */
+    public TelemetryWriter(Path archiveDirectory) {
+        archive = archiveDirectory != null ? new SessionArchiveWriter(archiveDirectory) : null;
+        writer = new Thread(this::runWriter, "Telemetry-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "Telemetry-shutdown"));
+    }
+
+    /**
+     * Queues a snapshot to be appended to the archive.
+     *
+     * @param type     Event type, what archive queries filter on first ("stuck", "death")
+     * @param category Narrower kind of event within the type, may be null
+     * @param tick     Game tick the snapshot was taken on
+     * @param snapshot Not modified or read by the caller afterwards
+     * @return false if the snapshot was dropped because the queue is full or the writer is closed
+     */
+    public boolean append(String type, String category, long tick, Map<String, Object> snapshot) {
+        synchronized (lock) {
+            if (closing || archive == null || queue.size() >= QUEUE_CAPACITY) {
+                dropped++;
+                if (dropped == 1 || dropped % 100 == 0) {
+                    Debug.logInternal("[Telemetry] Writer is behind, dropped " + dropped + " snapshots so far");
+                }
+                return false;
+            }
+            queue.addLast(new Entry(type, category, tick, Collections.unmodifiableMap(snapshot), null));
+            submitted++;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Runs a task on the writer once everything queued before it is in the archive, so it can read the archive
+     * without racing the writes (archive queries, for example). Only for short file work: snapshots queue up behind
+     * it.
+     *
+     * @return false if the task was dropped because the queue is full or the writer is closed
+     */
+    public boolean runAfterQueued(Runnable task) {
+        synchronized (lock) {
+            if (closing || archive == null || queue.size() >= QUEUE_CAPACITY) {
+                return false;
+            }
+            queue.addLast(new Entry(null, null, 0, null, task));
+            submitted++;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * @return the folder snapshots are archived in, null if there is none
+     */
+    public Path getArchiveDirectory() {
+        return archive != null ? archive.getDirectory() : null;
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (lock) {
+                while (queue.isEmpty() && !closing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Nothing should interrupt the writer, close() goes through closing
+                    }
+                }
+                if (queue.isEmpty()) {
+                    // Closing and everything's written
+                    if (archive != null) {
+                        archive.close();
+                    }
+                    lock.notifyAll();
+                    return;
+                }
+                ArrayDeque<Entry> filled = queue;
+                queue = writing;
+                writing = filled;
+            }
+
+            int ok = 0;
+            int tasks = 0;
+            for (Entry entry : writing) {
+                if (entry.task != null) {
+                    tasks++;
+                    continue;
+                }
+                try {
+                    archive.append(entry.type, entry.category, entry.tick, resolveDeferred(entry.snapshot));
+                    ok++;
+                } catch (IOException | RuntimeException ex) {
+                    Debug.logWarning("Failed to serialize " + entry.type + " telemetry snapshot: " + ex.getMessage());
+                }
+            }
+            if (ok > 0) {
+                try {
+                    archive.commit();
+                } catch (IOException | RuntimeException ex) {
+                    Debug.logWarning("Failed to write telemetry archive " + archive.getDirectory() + ": " + ex.getMessage());
+                    ok = 0;
+                }
+            }
+            // After the commit, so they see every snapshot queued before them
+            if (tasks > 0) {
+                for (Entry entry : writing) {
+                    if (entry.task == null) continue;
+                    try {
+                        entry.task.run();
+                    } catch (RuntimeException ex) {
+                        Debug.logWarning("Telemetry writer task failed: " + ex.getMessage());
+                    }
+                }
+            }
+
+            synchronized (lock) {
+                finished += writing.size();
+                written += ok;
+                failed += writing.size() - tasks - ok;
+                lock.notifyAll();
+            }
+            writing.clear();
+        }
+    }
+
+    private static Map<String, Object> resolveDeferred(Map<String, Object> snapshot) {
+        Map<String, Object> resolved = null;
+        for (Map.Entry<String, Object> field : snapshot.entrySet()) {
+            if (field.getValue() instanceof Deferred deferred) {
+                if (resolved == null) {
+                    resolved = new LinkedHashMap<>(snapshot);
+                }
+                resolved.put(field.getKey(), deferred.resolve());
+            }
+        }
+        return resolved != null ? resolved : snapshot;
+    }
+
+    /**
+     * Blocks until everything submitted before this call was written (or failed).
+     *
+     * @return false if the timeout ran out first
+     */
+    public boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            long target = submitted;
+            while (finished < target) {
+                long waitMs = deadline - System.currentTimeMillis();
+                if (waitMs <= 0 || !writer.isAlive()) return false;
+                try {
+                    lock.wait(waitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops taking snapshots and writes the ones still queued.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closing) return;
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public long getFailedCount() {
+        synchronized (lock) {
+            return failed;
+        }
+    }
+
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    // Either a snapshot or a task to run on the writer
+    private record Entry(String type, String category, long tick, Map<String, Object> snapshot, Runnable task) {
+    }
+}
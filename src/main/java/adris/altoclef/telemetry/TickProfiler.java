@@ -0,0 +1,239 @@
+package adris.altoclef.telemetry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Low overhead hierarchical profiler for the client tick.
+ * <p>
+ * Call sites wrap work in {@link #push}/{@link #pop} scopes. Scopes are identified by a key object (usually a class),
+ * nested scopes form a call tree, and every finished scope is written to a preallocated ring. While the profiler
+ * is disabled a scope costs one boolean check, while it's enabled it doesn't allocate anything after a call path
+ * was seen once.
+ * <p>
+ * Only the client thread is profiled, scopes opened from other threads are ignored.
+ */
+public final class TickProfiler {
+
+    private static final int RING_SIZE = 1 << 16;
+    private static final int MAX_DEPTH = 128;
+    private static final int ROOT = 0;
+
+    private static volatile boolean enabled = false;
+    private static Thread owner;
+
+    // Call tree, node 0 is the root. Node ids are indices into these arrays.
+    private static Object[] nodeKeys = new Object[256];
+    private static int[] nodeParents = new int[256];
+    private static int[] nodeFirstChild = new int[256];
+    private static int[] nodeNextSibling = new int[256];
+    private static int nodeCount = 1;
+
+    static {
+        nodeFirstChild[ROOT] = -1;
+    }
+
+    // Open scopes
+    private static final int[] stackNodes = new int[MAX_DEPTH];
+    private static final long[] stackStarts = new long[MAX_DEPTH];
+    private static final long[] stackChildNanos = new long[MAX_DEPTH];
+    private static int depth = 0;
+    // Scopes deeper than MAX_DEPTH aren't recorded, but still have to be popped
+    private static int overflow = 0;
+
+    // Finished scopes, oldest get overwritten
+    private static final int[] ringNodes = new int[RING_SIZE];
+    private static final long[] ringTotal = new long[RING_SIZE];
+    private static final long[] ringSelf = new long[RING_SIZE];
+    private static long ringWritten = 0;
+
+    private TickProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts profiling on the calling thread, which should be the client thread. Clears earlier results.
+     */
+    public static void enable() {
+        clear();
+        owner = Thread.currentThread();
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static void clear() {
+        depth = 0;
+        overflow = 0;
+        ringWritten = 0;
+        nodeCount = 1;
+        nodeFirstChild[ROOT] = -1;
+    }
+
+    /**
+     * Opens a scope.
+     *
+     * @param key Identifies the scope, compared by identity. Use a class or a constant string.
+     * @return a token to hand to {@link #pop}
+     */
+    public static int push(Object key) {
+        if (!enabled || Thread.currentThread() != owner) return -1;
+        if (depth >= MAX_DEPTH) {
+            overflow++;
+            return -1;
+        }
+        int parent = depth == 0 ? ROOT : stackNodes[depth - 1];
+        stackNodes[depth] = getOrCreateChild(parent, key);
+        stackChildNanos[depth] = 0;
+        stackStarts[depth] = System.nanoTime();
+        return depth++;
+    }
+
+    /**
+     * Closes the scope that returned this token, and any scope inside of it that wasn't closed.
+     */
+    public static void pop(int token) {
+        if (token < 0) {
+            if (overflow > 0 && Thread.currentThread() == owner) overflow--;
+            return;
+        }
+        // Disabled or cleared while this scope was open
+        if (token >= depth) return;
+        long now = System.nanoTime();
+        while (depth > token) {
+            depth--;
+            long total = now - stackStarts[depth];
+            long self = total - stackChildNanos[depth];
+            if (depth > 0) {
+                stackChildNanos[depth - 1] += total;
+            }
+            int slot = (int) (ringWritten & (RING_SIZE - 1));
+            ringNodes[slot] = stackNodes[depth];
+            ringTotal[slot] = total;
+            ringSelf[slot] = Math.max(0, self);
+            ringWritten++;
+        }
+    }
+
+    /**
+     * Adds up everything left in the ring, per call tree node.
+     */
+    public static Summary summarize() {
+        int nodes = nodeCount;
+        long[] total = new long[nodes];
+        long[] self = new long[nodes];
+        int[] calls = new int[nodes];
+
+        long count = Math.min(ringWritten, RING_SIZE);
+        for (long i = ringWritten - count; i < ringWritten; i++) {
+            int slot = (int) (i & (RING_SIZE - 1));
+            int node = ringNodes[slot];
+            if (node >= nodes) continue;
+            total[node] += ringTotal[slot];
+            self[node] += ringSelf[slot];
+            calls[node]++;
+        }
+
+        List<NodeStats> stats = new ArrayList<>();
+        for (int node = 1; node < nodes; node++) {
+            if (calls[node] == 0) continue;
+            stats.add(new NodeStats(getPath(node), calls[node], total[node], self[node]));
+        }
+        return new Summary(stats, count, ringWritten > RING_SIZE);
+    }
+
+    /**
+     * Writes the current summary in the collapsed stack format ("a;b;c selfMicros" per line) most flame graph tools read.
+     */
+    public static void writeCollapsedStacks(Summary summary, Path file) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (NodeStats stats : summary.nodes()) {
+            long micros = stats.selfNanos() / 1000;
+            if (micros <= 0) continue;
+            builder.append(stats.path().replace(' ', '_')).append(' ').append(micros).append('\n');
+        }
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static int getOrCreateChild(int parent, Object key) {
+        for (int child = nodeFirstChild[parent]; child != -1; child = nodeNextSibling[child]) {
+            if (nodeKeys[child] == key) return child;
+        }
+        if (nodeCount == nodeKeys.length) {
+            int size = nodeKeys.length * 2;
+            nodeKeys = Arrays.copyOf(nodeKeys, size);
+            nodeParents = Arrays.copyOf(nodeParents, size);
+            nodeFirstChild = Arrays.copyOf(nodeFirstChild, size);
+            nodeNextSibling = Arrays.copyOf(nodeNextSibling, size);
+        }
+        int node = nodeCount++;
+        nodeKeys[node] = key;
+        nodeParents[node] = parent;
+        nodeFirstChild[node] = -1;
+        nodeNextSibling[node] = nodeFirstChild[parent];
+        nodeFirstChild[parent] = node;
+        return node;
+    }
+
+    private static String getPath(int node) {
+        ArrayList<String> names = new ArrayList<>();
+        while (node != ROOT) {
+            names.add(getName(nodeKeys[node]));
+            node = nodeParents[node];
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = names.size() - 1; i >= 0; i--) {
+            builder.append(names.get(i));
+            if (i != 0) builder.append(';');
+        }
+        return builder.toString();
+    }
+
+    private static String getName(Object key) {
+        if (key instanceof Class<?> type) {
+            String name = type.getSimpleName();
+            return name.isEmpty() ? type.getName() : name;
+        }
+        return String.valueOf(key);
+    }
+
+    public record NodeStats(String path, int calls, long totalNanos, long selfNanos) {
+        public String leafName() {
+            int split = path.lastIndexOf(';');
+            return split == -1 ? path : path.substring(split + 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: self %.2fms, total %.2fms, %d calls",
+                    path, selfNanos / 1_000_000.0, totalNanos / 1_000_000.0, calls);
+        }
+    }
+
+    /**
+     * @param scopeCount How many finished scopes the summary covers
+     * @param wrapped    Whether older scopes were already overwritten
+     */
+    public record Summary(List<NodeStats> nodes, long scopeCount, boolean wrapped) {
+        public List<NodeStats> topBySelfTime(int count) {
+            ArrayList<NodeStats> sorted = new ArrayList<>(nodes);
+            sorted.sort((a, b) -> Long.compare(b.selfNanos(), a.selfNanos()));
+            return sorted.subList(0, Math.min(count, sorted.size()));
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.collections.LongArrayList;
+import adris.altoclef.util.collections.LongHashSet;
+import adris.altoclef.util.helpers.BaritoneHelper;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Spatial index for the positions of a single block type.
+ * <p>
+ * Positions are bucketed per 16x16x16 chunk section, and the sections are grouped per chunk column. Nearest
+ * queries walk square rings of chunk columns outwards from the query and stop at the first ring that can't
+ * hold anything closer than the best result so far. Inside a column, sections are visited from the query's
+ * height outwards, also only while they could still beat the best result. Columns and sections further out
+ * are never looked at.
+ * <p>
+ * Distances for nearest queries use baritone's generic heuristic (see {@link BaritoneHelper#calculateGenericHeuristic}),
+ * radius queries use plain euclidean distance. Not thread safe.
+ */
+public class BlockPositionGrid {
+
+    /**
+     * Returned by {@link #nearest} if nothing passed the filter. Not a position inside the world border.
+     */
+    public static final long NONE = Long.MAX_VALUE;
+
+    private final HashMap<Long, Bucket> buckets = new HashMap<>();
+    // Same buckets as above in a flat list, so queries don't have to go through the map
+    private final ArrayList<Bucket> bucketList = new ArrayList<>();
+    // chunk -> buckets in that chunk column
+    private final HashMap<Long, Column> columns = new HashMap<>();
+    private int size;
+
+    // Chunk coordinates every column lies within, so rings stop once they've passed all of them
+    private int minColumnX, maxColumnX, minColumnZ, maxColumnZ;
+    private boolean columnBoundsDirty;
+
+    // Scratch space reused by every query, filters that query the same grid again get their own
+    private boolean querying;
+    private long[] kPositions = new long[8];
+    private double[] kDistances = new double[8];
+
+    public boolean add(long packedPos) {
+        long sectionKey = ChunkSectionPos.fromBlockPos(packedPos);
+        Bucket bucket = buckets.get(sectionKey);
+        if (bucket == null) {
+            bucket = new Bucket(sectionKey);
+            buckets.put(sectionKey, bucket);
+            bucket.index = bucketList.size();
+            bucketList.add(bucket);
+            long columnKey = ChunkPos.toLong(bucket.sectionX, bucket.sectionZ);
+            Column column = columns.get(columnKey);
+            if (column == null) {
+                column = new Column(bucket.sectionX, bucket.sectionZ);
+                columns.put(columnKey, column);
+                includeInColumnBounds(column);
+            }
+            column.add(bucket);
+        }
+        if (!bucket.positions.add(packedPos)) return false;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long packedPos) {
+        Bucket bucket = buckets.get(ChunkSectionPos.fromBlockPos(packedPos));
+        if (bucket == null || !bucket.positions.remove(packedPos)) return false;
+        size--;
+        if (bucket.positions.isEmpty()) {
+            removeBucket(bucket);
+            long columnKey = ChunkPos.toLong(bucket.sectionX, bucket.sectionZ);
+            Column column = columns.get(columnKey);
+            if (column != null) {
+                column.buckets.remove(bucket);
+                if (column.buckets.isEmpty()) {
+                    columns.remove(columnKey);
+                    columnBoundsDirty = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(long packedPos) {
+        Bucket bucket = buckets.get(ChunkSectionPos.fromBlockPos(packedPos));
+        return bucket != null && bucket.positions.contains(packedPos);
+    }
+
+    /**
+     * @return how many positions were in the chunk and are now gone
+     */
+    public int removeChunk(long chunkKey) {
+        Column column = columns.remove(chunkKey);
+        if (column == null) return 0;
+        columnBoundsDirty = true;
+        int removed = 0;
+        for (Bucket bucket : column.buckets) {
+            removed += bucket.positions.size();
+            removeBucket(bucket);
+        }
+        size -= removed;
+        return removed;
+    }
+
+    public int countInChunk(long chunkKey) {
+        Column column = columns.get(chunkKey);
+        if (column == null) return 0;
+        int count = 0;
+        for (Bucket bucket : column.buckets) {
+            count += bucket.positions.size();
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (Bucket bucket : bucketList) {
+            bucket.positions.forEach(consumer);
+        }
+    }
+
+    /**
+     * @return true as soon as one position passes the test
+     */
+    public boolean anyMatch(LongPredicate test) {
+        for (Bucket bucket : bucketList) {
+            if (bucket.positions.anyMatch(test)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the position closest to (x, y, z) that passes the filter.
+     *
+     * @param maxHeuristic Only positions strictly closer than this are considered
+     * @param filter       Only called for positions that would be an improvement
+     * @return the packed position, or {@link #NONE}
+     */
+    public long nearest(double x, double y, double z, double maxHeuristic, LongPredicate filter) {
+        NearestSearch search = new NearestSearch(x, y, z, maxHeuristic, filter);
+        search(x, y, z, search);
+        return search.bestPos;
+    }
+
+    /**
+     * Finds up to k positions closest to (x, y, z) that pass the filter, closest first.
+     *
+     * @param result Cleared, then filled with the packed positions
+     */
+    public void nearest(double x, double y, double z, int k, LongPredicate filter, LongArrayList result) {
+        result.clear();
+        if (k <= 0) return;
+
+        boolean nested = querying;
+        querying = true;
+        try {
+            if (nested || kPositions.length < k) {
+                kPositions = new long[Math.max(k, kPositions.length)];
+                kDistances = new double[kPositions.length];
+            }
+            KNearestSearch search = new KNearestSearch(x, y, z, k, filter, kPositions, kDistances);
+            search(x, y, z, search);
+
+            for (int i = 0; i < search.found; i++) {
+                result.add(kPositions[i]);
+            }
+        } finally {
+            querying = nested;
+        }
+    }
+
+    /**
+     * Collects every position within a euclidean radius of (x, y, z) (measured to block centers) that passes the filter.
+     *
+     * @param result Positions are appended to this
+     */
+    public void withinRadius(double x, double y, double z, double radius, LongPredicate filter, LongArrayList result) {
+        double radiusSq = radius * radius;
+        for (Bucket bucket : bucketList) {
+            double dx = axisDistance(x, bucket.sectionX);
+            double dy = axisDistance(y, bucket.sectionY);
+            double dz = axisDistance(z, bucket.sectionZ);
+            if (dx * dx + dy * dy + dz * dz > radiusSq) continue;
+
+            for (PrimitiveIterator.OfLong it = bucket.positions.iterator(); it.hasNext(); ) {
+                long pos = it.nextLong();
+                double px = BlockPos.unpackLongX(pos) + 0.5 - x;
+                double py = BlockPos.unpackLongY(pos) + 0.5 - y;
+                double pz = BlockPos.unpackLongZ(pos) + 0.5 - z;
+                if (px * px + py * py + pz * pz <= radiusSq && filter.test(pos)) {
+                    result.add(pos);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+        bucketList.clear();
+        columns.clear();
+        columnBoundsDirty = false;
+        size = 0;
+    }
+
+    /**
+     * Same value as {@link BaritoneHelper#calculateGenericHeuristic} from (x, y, z) to the center of the block.
+     */
+    public static double heuristic(double x, double y, double z, long packedPos) {
+        return BaritoneHelper.calculateGenericHeuristic(x, y, z,
+                BlockPos.unpackLongX(packedPos) + 0.5,
+                BlockPos.unpackLongY(packedPos) + 0.5,
+                BlockPos.unpackLongZ(packedPos) + 0.5);
+    }
+
+    /**
+     * Hands every bucket that could hold a position closer than {@link Search#threshold()} to the search, roughly
+     * closest first.
+     */
+    private void search(double x, double y, double z, Search search) {
+        if (columns.isEmpty()) return;
+        updateColumnBounds();
+
+        int centerX = MathHelper.floor(x) >> 4;
+        int centerZ = MathHelper.floor(z) >> 4;
+        int centerY = MathHelper.floor(y) >> 4;
+        int maxRing = Math.max(Math.max(centerX - minColumnX, maxColumnX - centerX), Math.max(centerZ - minColumnZ, maxColumnZ - centerZ));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ringLowerBound(x, y, z, centerX, centerZ, ring) >= search.threshold()) break;
+            if (ring == 0) {
+                searchColumn(centerX, centerZ, centerY, x, y, z, search);
+                continue;
+            }
+            for (int i = -ring; i <= ring; i++) {
+                searchColumn(centerX + i, centerZ - ring, centerY, x, y, z, search);
+                searchColumn(centerX + i, centerZ + ring, centerY, x, y, z, search);
+            }
+            for (int i = -ring + 1; i < ring; i++) {
+                searchColumn(centerX - ring, centerZ + i, centerY, x, y, z, search);
+                searchColumn(centerX + ring, centerZ + i, centerY, x, y, z, search);
+            }
+        }
+    }
+
+    private void searchColumn(int chunkX, int chunkZ, int centerY, double x, double y, double z, Search search) {
+        if (chunkX < minColumnX || chunkX > maxColumnX || chunkZ < minColumnZ || chunkZ > maxColumnZ) return;
+        Column column = columns.get(ChunkPos.toLong(chunkX, chunkZ));
+        if (column == null) return;
+
+        double closestX = x + axisDistance(x, chunkX);
+        double closestZ = z + axisDistance(z, chunkZ);
+        if (BaritoneHelper.calculateGenericHeuristic(x, y, z, closestX, y, closestZ) >= search.threshold()) return;
+
+        // Sections are sorted by height and only get further away going up or down from the query's height
+        ArrayList<Bucket> sections = column.buckets;
+        int above = 0;
+        while (above < sections.size() && sections.get(above).sectionY < centerY) {
+            above++;
+        }
+        int below = above - 1;
+        while (below >= 0 || above < sections.size()) {
+            double belowBound = below >= 0 ? sectionLowerBound(sections.get(below), x, y, z, closestX, closestZ) : Double.POSITIVE_INFINITY;
+            double aboveBound = above < sections.size() ? sectionLowerBound(sections.get(above), x, y, z, closestX, closestZ) : Double.POSITIVE_INFINITY;
+            Bucket next;
+            if (belowBound <= aboveBound) {
+                if (belowBound >= search.threshold()) break;
+                next = sections.get(below--);
+            } else {
+                if (aboveBound >= search.threshold()) break;
+                next = sections.get(above++);
+            }
+            search.scan(next.positions);
+        }
+    }
+
+    // The heuristic only grows the further away a block is along each axis, so the closest point of a region's
+    // block centers bounds every position inside of it.
+    private static double sectionLowerBound(Bucket bucket, double x, double y, double z, double closestX, double closestZ) {
+        int minY = ChunkSectionPos.getBlockCoord(bucket.sectionY);
+        double closestY = Math.min(Math.max(y, minY + 0.5), minY + 15.5);
+        return BaritoneHelper.calculateGenericHeuristic(x, y, z, closestX, closestY, closestZ);
+    }
+
+    // Every column in the ring is at least this far away along x or z
+    private static double ringLowerBound(double x, double y, double z, int centerX, int centerZ, int ring) {
+        if (ring == 0) return 0;
+        double distance = Math.min(
+                Math.min(ChunkSectionPos.getBlockCoord(centerX + ring) + 0.5 - x, x - (ChunkSectionPos.getBlockCoord(centerX - ring) + 15.5)),
+                Math.min(ChunkSectionPos.getBlockCoord(centerZ + ring) + 0.5 - z, z - (ChunkSectionPos.getBlockCoord(centerZ - ring) + 15.5)));
+        return BaritoneHelper.calculateGenericHeuristic(x, y, z, x + Math.max(distance, 0), y, z);
+    }
+
+    private void includeInColumnBounds(Column column) {
+        // Recomputed from scratch on the next query anyway
+        if (columnBoundsDirty) return;
+        if (columns.size() == 1) {
+            minColumnX = maxColumnX = column.chunkX;
+            minColumnZ = maxColumnZ = column.chunkZ;
+            return;
+        }
+        minColumnX = Math.min(minColumnX, column.chunkX);
+        maxColumnX = Math.max(maxColumnX, column.chunkX);
+        minColumnZ = Math.min(minColumnZ, column.chunkZ);
+        maxColumnZ = Math.max(maxColumnZ, column.chunkZ);
+    }
+
+    // Columns only shrink the bounds when they go away, recomputed on the next query
+    private void updateColumnBounds() {
+        if (!columnBoundsDirty) return;
+        columnBoundsDirty = false;
+        minColumnX = minColumnZ = Integer.MAX_VALUE;
+        maxColumnX = maxColumnZ = Integer.MIN_VALUE;
+        for (Column column : columns.values()) {
+            minColumnX = Math.min(minColumnX, column.chunkX);
+            maxColumnX = Math.max(maxColumnX, column.chunkX);
+            minColumnZ = Math.min(minColumnZ, column.chunkZ);
+            maxColumnZ = Math.max(maxColumnZ, column.chunkZ);
+        }
+    }
+
+    // Distance from a coordinate to the nearest block center of a section along one axis
+    private static double axisDistance(double coord, int sectionCoord) {
+        int min = ChunkSectionPos.getBlockCoord(sectionCoord);
+        if (coord < min + 0.5) return min + 0.5 - coord;
+        if (coord > min + 15.5) return coord - (min + 15.5);
+        return 0;
+    }
+
+    private void removeBucket(Bucket bucket) {
+        buckets.remove(bucket.key);
+        // Swap remove to keep the flat list dense
+        Bucket last = bucketList.remove(bucketList.size() - 1);
+        if (last != bucket) {
+            bucketList.set(bucket.index, last);
+            last.index = bucket.index;
+        }
+    }
+
+    private static class Column {
+        private final int chunkX;
+        private final int chunkZ;
+        // Sorted by sectionY
+        private final ArrayList<Bucket> buckets = new ArrayList<>(4);
+
+        private Column(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(Bucket bucket) {
+            int i = buckets.size();
+            while (i > 0 && buckets.get(i - 1).sectionY > bucket.sectionY) {
+                i--;
+            }
+            buckets.add(i, bucket);
+        }
+    }
+
+    /**
+     * One query walking the buckets. {@link #threshold()} may only go down while it runs.
+     */
+    private abstract static class Search {
+        abstract double threshold();
+
+        abstract void scan(LongHashSet positions);
+    }
+
+    private static final class NearestSearch extends Search {
+        private final double x, y, z;
+        private final LongPredicate filter;
+        private double best;
+        private long bestPos = NONE;
+
+        private NearestSearch(double x, double y, double z, double maxHeuristic, LongPredicate filter) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.best = maxHeuristic;
+            this.filter = filter;
+        }
+
+        @Override
+        double threshold() {
+            return best;
+        }
+
+        @Override
+        void scan(LongHashSet positions) {
+            for (PrimitiveIterator.OfLong it = positions.iterator(); it.hasNext(); ) {
+                long pos = it.nextLong();
+                double dist = heuristic(x, y, z, pos);
+                if (dist < best && filter.test(pos)) {
+                    best = dist;
+                    bestPos = pos;
+                }
+            }
+        }
+    }
+
+    private static final class KNearestSearch extends Search {
+        private final double x, y, z;
+        private final int k;
+        private final LongPredicate filter;
+        private final long[] positions;
+        private final double[] distances;
+        private int found;
+
+        private KNearestSearch(double x, double y, double z, int k, LongPredicate filter, long[] positions, double[] distances) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.k = k;
+            this.filter = filter;
+            this.positions = positions;
+            this.distances = distances;
+        }
+
+        @Override
+        double threshold() {
+            return found < k ? Double.POSITIVE_INFINITY : distances[k - 1];
+        }
+
+        @Override
+        void scan(LongHashSet candidates) {
+            for (PrimitiveIterator.OfLong it = candidates.iterator(); it.hasNext(); ) {
+                long pos = it.nextLong();
+                double dist = heuristic(x, y, z, pos);
+                if (found == k && dist >= distances[k - 1]) continue;
+                if (!filter.test(pos)) continue;
+
+                // Insertion sort, k is small
+                int i = found < k ? found++ : k - 1;
+                while (i > 0 && distances[i - 1] > dist) {
+                    distances[i] = distances[i - 1];
+                    positions[i] = positions[i - 1];
+                    i--;
+                }
+                distances[i] = dist;
+                positions[i] = pos;
+            }
+        }
+    }
+
+    private static class Bucket {
+        private final long key;
+        private final int sectionX;
+        private final int sectionY;
+        private final int sectionZ;
+        private final LongHashSet positions = new LongHashSet();
+        private int index;
+
+        private Bucket(long key) {
+            this.key = key;
+            this.sectionX = ChunkSectionPos.unpackX(key);
+            this.sectionY = ChunkSectionPos.unpackY(key);
+            this.sectionZ = ChunkSectionPos.unpackZ(key);
+        }
+    }
+}
@@ -3,53 +3,87 @@ package adris.altoclef.trackers;
 import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
 import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.BlockBrokenEvent;
 import adris.altoclef.eventbus.events.BlockPlaceEvent;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import adris.altoclef.eventbus.events.ChunkLoadEvent;
+import adris.altoclef.eventbus.events.ChunkUnloadEvent;
 import adris.altoclef.multiversion.blockpos.BlockPosVer;
 import adris.altoclef.trackers.blacklisting.WorldLocateBlacklist;
 import adris.altoclef.util.Dimension;
-import adris.altoclef.util.helpers.BaritoneHelper;
+import adris.altoclef.util.collections.BlockPositionMap;
+import adris.altoclef.util.collections.LongHashSet;
 import adris.altoclef.util.helpers.WorldHelper;
-import adris.altoclef.util.time.TimerGame;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.World;
-import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
 
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
+/**
+ * Keeps track of where blocks are in the loaded world.
+ * <p>
+ * Chunks are scanned once when they load and are then kept up to date from block events,
+ * so we never have to rescan the whole world to notice a change.
+ */
 public class BlockScanner {
 
     private static final boolean LOG = false;
-    private static final int RESCAN_TICK_DELAY = 4 * 20;
-    private static final int CACHED_POSITIONS_PER_BLOCK = 40;
+    // Common blocks only keep this many sampled positions per chunk
+    private static final int MAX_POSITIONS_PER_CHUNK = 64;
+    private static final int CLOSE_SCAN_RADIUS = 8;
+    // A scan can fail when the client thread changes a section while a worker reads it, try again a few times
+    private static final int MAX_SCAN_RETRIES = 3;
 
 
     private final AltoClef mod;
-    private final TimerGame rescanTimer = new TimerGame(1);
+    private final ClientView view;
 
-    private final HashMap<Block, HashSet<BlockPos>> trackedBlocks = new HashMap<>();
-    private final HashMap<Block, HashSet<BlockPos>> scannedBlocks = new HashMap<>();
-    private final HashMap<ChunkPos, Long> scannedChunks = new HashMap<>();
+    private final ChunkBlockIndex index = new ChunkBlockIndex(MAX_POSITIONS_PER_CHUNK);
+    // Blocks right around the player the index doesn't know the exact positions of, refreshed each tick
+    private final BlockPositionMap closeBlocks = new BlockPositionMap();
     private final WorldLocateBlacklist blacklist = new WorldLocateBlacklist();
-    // used while scanning
-    private HashMap<Block, HashSet<BlockPos>> cachedScannedBlocks = new HashMap<>();
-    private Dimension scanDimension = Dimension.OVERWORLD;
-    private World scanWorld = null;
+    private final ChunkScanEngine scanEngine;
+    // chunk -> scan that's currently in flight for it
+    private final HashMap<Long, PendingScan> pendingScans = new HashMap<>();
+    private final Queue<FinishedScan> finishedScans = new ConcurrentLinkedQueue<>();
+    // Swapped as a whole on reset, so workers see the world, dimension and generation change together
+    private final AtomicReference<ScanState> state = new AtomicReference<>(new ScanState(0, null, Dimension.OVERWORLD));
 
-    private boolean scanning = false;
-    private boolean forceStop = false;
+    private long nextTicket = 0;
+    private boolean rebuildRequested = true;
+
+    // Reused by queries, they only run on the client thread
+    private final BlockPos.Mutable candidatePos = new BlockPos.Mutable();
 
 
     public BlockScanner(AltoClef mod) {
+        this(mod, ClientView.LIVE, new ChunkScanEngine());
+    }
+
+    public BlockScanner(AltoClef mod, ClientView view, ChunkScanEngine scanEngine) {
         this.mod = mod;
+        this.view = view;
+        this.scanEngine = scanEngine;
 
+        EventBus.subscribe(ChunkLoadEvent.class, evt -> {
+            if (evt.chunk != null) {
+                onChunkLoad(evt.chunk.getPos());
+            }
+        });
+        EventBus.subscribe(ChunkUnloadEvent.class, evt -> onChunkUnload(evt.chunkPos));
         EventBus.subscribe(BlockPlaceEvent.class, evt -> addBlock(evt.blockState.getBlock(), evt.blockPos));
+        EventBus.subscribe(BlockBrokenEvent.class, evt -> onBlockChanged(evt.blockPos, evt.blockState, null));
+        EventBus.subscribe(BlockUpdateEvent.class, evt -> onBlockChanged(evt.blockPos, evt.previousState, evt.blockState));
     }
 
 
@@ -59,14 +93,7 @@ public class BlockScanner {
             return;
         }
 
-        if (trackedBlocks.containsKey(block)) {
-            trackedBlocks.get(block).add(pos);
-        } else {
-            HashSet<BlockPos> set = new HashSet<>();
-            set.add(pos);
-
-            trackedBlocks.put(block, set);
-        }
+        index.add(block, pos);
     }
 
 
@@ -93,16 +120,26 @@ public class BlockScanner {
     }
 
     public List<BlockPos> getKnownLocations(Block... blocks) {
-        List<BlockPos> locations = new LinkedList<>();
+        LongHashSet locations = new LongHashSet();
 
         for (Block block : blocks) {
-            if (!trackedBlocks.containsKey(block)) continue;
-
-            locations.addAll(trackedBlocks.get(block));
+            BlockPositionGrid grid = index.getGrid(block);
+            if (grid != null) {
+                grid.forEach(locations::add);
+            }
+            LongHashSet close = closeBlocks.get(block);
+            if (close != null) {
+                close.forEach(locations::add);
+            }
         }
-        locations.removeIf(this::isUnreachable);
 
-        return locations;
+        List<BlockPos> result = new ArrayList<>(locations.size());
+        locations.forEach(packed -> {
+            if (!blacklist.unreachable(packed)) {
+                result.add(BlockPos.fromLong(packed));
+            }
+        });
+        return result;
     }
 
     /**
@@ -132,12 +169,12 @@ public class BlockScanner {
 
     public boolean anyFound(Predicate<BlockPos> isValidTest, Block... blocks) {
         for (Block block : blocks) {
-            if (!trackedBlocks.containsKey(block)) continue;
+            LongPredicate isCandidate = packed -> isCandidate(block, packed, isValidTest);
 
-            for (BlockPos pos : trackedBlocks.get(block)) {
-                if (isValidTest.test(pos) && mod.getWorld().getBlockState(pos).getBlock().equals(block) && !this.isUnreachable(pos))
-                    return true;
-            }
+            BlockPositionGrid grid = index.getGrid(block);
+            if (grid != null && grid.anyMatch(isCandidate)) return true;
+            LongHashSet close = closeBlocks.get(block);
+            if (close != null && close.anyMatch(isCandidate)) return true;
         }
 
         return false;
@@ -145,7 +182,7 @@ public class BlockScanner {
 
     public Optional<BlockPos> getNearestBlock(Block... blocks) {
         // Add juuust a little, to prevent digging down all the time/bias towards blocks BELOW the player
-        return getNearestBlock(mod.getPlayer().getPos().add(0, 0.6f, 0), blocks);
+        return getNearestBlock(view.getPlayerPos().add(0, 0.6f, 0), blocks);
     }
 
     public Optional<BlockPos> getNearestBlock(Vec3d pos, Block... blocks) {
@@ -153,26 +190,23 @@ public class BlockScanner {
     }
 
     public Optional<BlockPos> getNearestBlock(Predicate<BlockPos> isValidTest, Block... blocks) {
-        return getNearestBlock(mod.getPlayer().getPos().add(0, 0.6f, 0), isValidTest, blocks);
+        return getNearestBlock(view.getPlayerPos().add(0, 0.6f, 0), isValidTest, blocks);
     }
 
     public Optional<BlockPos> getNearestBlock(Vec3d pos, Predicate<BlockPos> isValidTest, Block... blocks) {
-        Optional<BlockPos> closest = Optional.empty();
+        long closest = BlockPositionGrid.NONE;
+        double closestDist = Double.POSITIVE_INFINITY;
 
         for (Block block : blocks) {
-            Optional<BlockPos> p = getNearestBlock(block, isValidTest, pos);
-
-            if (p.isPresent()) {
-                if (closest.isEmpty()) closest = p;
-                else {
-                    if (BaritoneHelper.calculateGenericHeuristic(pos, WorldHelper.toVec3d(closest.get())) > BaritoneHelper.calculateGenericHeuristic(pos, WorldHelper.toVec3d(p.get()))) {
-                        closest = p;
-                    }
-                }
+            // Anything further away than what we already have can be skipped without being looked at
+            long p = findNearest(block, isValidTest, pos, closestDist);
+            if (p != BlockPositionGrid.NONE) {
+                closest = p;
+                closestDist = BlockPositionGrid.heuristic(pos.x, pos.y, pos.z, p);
             }
         }
 
-        return closest;
+        return closest != BlockPositionGrid.NONE ? Optional.of(BlockPos.fromLong(closest)) : Optional.empty();
     }
 
     public Optional<BlockPos> getNearestBlock(Block block, Vec3d fromPos) {
@@ -180,44 +214,25 @@ public class BlockScanner {
     }
 
     public Optional<BlockPos> getNearestBlock(Block block, Predicate<BlockPos> isValidTest, Vec3d fromPos) {
-        BlockPos pos = null;
-        double nearest = Double.POSITIVE_INFINITY;
-
-        if (!trackedBlocks.containsKey(block)) {
-            return Optional.empty();
-        }
-
-        for (BlockPos p : trackedBlocks.get(block)) {
-            //ensure the block is there (can change upon rescan)
-            if (!mod.getWorld().getBlockState(p).getBlock().equals(block)) continue;
-            if (!isValidTest.test(p) || isUnreachable(p)) continue;
-
-            double dist = BaritoneHelper.calculateGenericHeuristic(fromPos, WorldHelper.toVec3d(p));
-
-            if (dist < nearest) {
-                nearest = dist;
-                pos = p;
-            }
-        }
-
-        return pos != null ? Optional.of(pos) : Optional.empty();
+        long pos = findNearest(block, isValidTest, fromPos, Double.POSITIVE_INFINITY);
+        return pos != BlockPositionGrid.NONE ? Optional.of(BlockPos.fromLong(pos)) : Optional.empty();
     }
 
     public boolean anyFoundWithinDistance(double distance, Block... blocks) {
-        return anyFoundWithinDistance(mod.getPlayer().getPos().add(0, 0.6f, 0), distance, blocks);
+        return anyFoundWithinDistance(view.getPlayerPos().add(0, 0.6f, 0), distance, blocks);
     }
 
     public boolean anyFoundWithinDistance(Vec3d pos, double distance, Block... blocks) {
-        Optional<BlockPos> blockPos = getNearestBlock(blocks);
+        Optional<BlockPos> blockPos = getNearestBlock(pos, blocks);
         return blockPos.map(value -> value.isWithinDistance(pos, distance)).orElse(false);
     }
 
     public double distanceToClosest(Block... blocks) {
-        return distanceToClosest(mod.getPlayer().getPos().add(0, 0.6f, 0), blocks);
+        return distanceToClosest(view.getPlayerPos().add(0, 0.6f, 0), blocks);
     }
 
     public double distanceToClosest(Vec3d pos, Block... blocks) {
-        Optional<BlockPos> blockPos = getNearestBlock(blocks);
+        Optional<BlockPos> blockPos = getNearestBlock(pos, blocks);
         return blockPos.map(value ->  Math.sqrt(BlockPosVer.getSquaredDistance(value, pos))).orElse(Double.POSITIVE_INFINITY);
     }
 
@@ -228,17 +243,17 @@ public class BlockScanner {
             return false;
         }
 
-        if (!mod.getChunkTracker().isChunkLoaded(pos)) {
+        if (view.getChunkSections(pos.getX() >> 4, pos.getZ() >> 4) == null) {
             return false;
         }
 
-        ClientWorld world = MinecraftClient.getInstance().world;
+        BlockView world = view.getWorld();
         if (world == null) {
             return false;
         }
         try {
             for (Block block : blocks) {
-                if (world.isAir(pos) && WorldHelper.isAir(block)) {
+                if (world.getBlockState(pos).isAir() && WorldHelper.isAir(block)) {
                     return true;
                 }
                 BlockState state = world.getBlockState(pos);
@@ -254,219 +269,258 @@ public class BlockScanner {
     }
 
     public void reset() {
-        trackedBlocks.clear();
-        scannedBlocks.clear();
-        scannedChunks.clear();
-        rescanTimer.forceElapse();
+        ScanState current = state.get();
+        reset(current.world(), current.dimension());
+    }
+
+    private void reset(BlockView world, Dimension dimension) {
+        // Publish first so workers stop picking up scans for the old state right away
+        state.set(state.get().next(world, dimension));
+        index.clear();
+        closeBlocks.clear();
+        pendingScans.clear();
+        finishedScans.clear();
         blacklist.clear();
-        forceStop = true;
+        rebuildRequested = true;
     }
 
     public void tick() {
-        if (mod.getWorld() == null || mod.getPlayer() == null) return;
-        //be maximally aware of the closest blocks around you
-        scanCloseBlocks();
-        if (!rescanTimer.elapsed() || scanning) return;
+        BlockView world = view.getWorld();
+        if (world == null || view.getPlayerPos() == null) return;
 
-        if (scanDimension != WorldHelper.getCurrentDimension() || mod.getWorld() != scanWorld) {
+        ScanState current = state.get();
+        if (current.dimension() != view.getDimension() || world != current.world()) {
             if (LOG) {
                 mod.log("BlockScanner: new dimension or world detected, resetting data!");
             }
-            reset();
-            scanWorld = mod.getWorld();
-            scanDimension = WorldHelper.getCurrentDimension();
-            return;
+            reset(world, view.getDimension());
         }
 
-        cachedScannedBlocks = new HashMap<>(scannedBlocks.size());
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : scannedBlocks.entrySet()) {
-            cachedScannedBlocks.put(entry.getKey(), (HashSet<BlockPos>) entry.getValue().clone());
+        if (rebuildRequested) {
+            rebuildRequested = false;
+            indexLoadedChunks();
         }
 
-        if (LOG) {
-            mod.log("Updating BlockScanner.. size: " + trackedBlocks.size() + " : " + cachedScannedBlocks.size());
-        }
+        applyFinishedScans();
+        blacklist.publishChanges();
 
-        scanning = true;
-        forceStop = false;
-        new Thread(() -> {
-            try {
-                rescan(Integer.MAX_VALUE, Integer.MAX_VALUE);
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                rescanTimer.reset();
-                scanning = false;
-            }
-        }).start();
+        //be maximally aware of the closest blocks around you
+        scanCloseBlocks();
     }
 
-    private void scanCloseBlocks() {
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : cachedScannedBlocks.entrySet()) {
-            if (!trackedBlocks.containsKey(entry.getKey())) {
-                trackedBlocks.put(entry.getKey(), new HashSet<>());
+    /**
+     * @param maxHeuristic Only blocks closer than this are returned
+     * @return the packed position of the closest valid block, or {@link BlockPositionGrid#NONE}
+     */
+    private long findNearest(Block block, Predicate<BlockPos> isValidTest, Vec3d fromPos, double maxHeuristic) {
+        LongPredicate isCandidate = packed -> isCandidate(block, packed, isValidTest);
+        double x = fromPos.x, y = fromPos.y, z = fromPos.z;
+
+        long nearest = BlockPositionGrid.NONE;
+        double nearestDist = maxHeuristic;
+
+        BlockPositionGrid grid = index.getGrid(block);
+        if (grid != null) {
+            nearest = grid.nearest(x, y, z, nearestDist, isCandidate);
+            if (nearest != BlockPositionGrid.NONE) {
+                nearestDist = BlockPositionGrid.heuristic(x, y, z, nearest);
             }
-            trackedBlocks.get(entry.getKey()).clear();
+        }
 
-            trackedBlocks.get(entry.getKey()).addAll(entry.getValue());
+        // Only a few hundred positions right around the player, not worth indexing spatially
+        LongHashSet close = closeBlocks.get(block);
+        if (close != null) {
+            for (PrimitiveIterator.OfLong it = close.iterator(); it.hasNext(); ) {
+                long packed = it.nextLong();
+                double dist = BlockPositionGrid.heuristic(x, y, z, packed);
+                if (dist < nearestDist && isCandidate.test(packed)) {
+                    nearest = packed;
+                    nearestDist = dist;
+                }
+            }
         }
 
-        HashMap<Block, HashSet<BlockPos>> map = new HashMap<>();
+        return nearest;
+    }
 
-        BlockPos pos = mod.getPlayer().getBlockPos();
-        World world = mod.getPlayer().getWorld();
+    private boolean isCandidate(Block block, long packed, Predicate<BlockPos> isValidTest) {
+        BlockPos.Mutable pos = candidatePos.set(packed);
+        //ensure the block is there (the index might not have caught up yet)
+        if (!view.getWorld().getBlockState(pos).getBlock().equals(block)) return false;
+        if (blacklist.unreachable(packed)) return false;
+        return isValidTest.test(pos.toImmutable());
+    }
 
-        for (int x = pos.getX() - 8; x <= pos.getX() + 8; x++) {
-            for (int y = pos.getY() - 8; y < pos.getY() + 8; y++) {
-                for (int z = pos.getZ() - 8; z <= pos.getZ() + 8; z++) {
-                    BlockPos p = new BlockPos(x, y, z);
-                    BlockState state = world.getBlockState(p);
-                    if (world.getBlockState(p).isAir()) continue;
+    private void scanCloseBlocks() {
+        closeBlocks.clearPositions();
 
-                    Block block = state.getBlock();
+        BlockPos pos = BlockPos.ofFloored(view.getPlayerPos());
+        BlockView world = view.getWorld();
+        BlockPos.Mutable p = new BlockPos.Mutable();
 
-                    if (map.containsKey(block)) {
-                        map.get(block).add(p);
-                    } else {
-                        HashSet<BlockPos> set = new HashSet<>();
-                        set.add(p);
-                        map.put(block, set);
+        for (int x = pos.getX() - CLOSE_SCAN_RADIUS; x <= pos.getX() + CLOSE_SCAN_RADIUS; x++) {
+            for (int y = pos.getY() - CLOSE_SCAN_RADIUS; y < pos.getY() + CLOSE_SCAN_RADIUS; y++) {
+                for (int z = pos.getZ() - CLOSE_SCAN_RADIUS; z <= pos.getZ() + CLOSE_SCAN_RADIUS; z++) {
+                    p.set(x, y, z);
+                    BlockState state = world.getBlockState(p);
+                    if (!isScannable(state)) continue;
+
+                    // Everything else is already in the index with its exact position
+                    long chunkKey = ChunkPos.toLong(x >> 4, z >> 4);
+                    if (index.isTruncated(chunkKey, state.getBlock()) || pendingScans.containsKey(chunkKey)) {
+                        closeBlocks.add(state.getBlock(), p);
                     }
                 }
             }
         }
-
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : map.entrySet()) {
-            getFirstFewPositions(entry.getValue(),mod.getPlayer().getPos());
-
-            if (!trackedBlocks.containsKey(entry.getKey())) {
-                trackedBlocks.put(entry.getKey(), new HashSet<>());
-            }
-
-            trackedBlocks.get(entry.getKey()).addAll(entry.getValue());
-        }
     }
 
-    private void rescan(int maxCount, int cutOffRadius) {
-        long ms = System.currentTimeMillis();
-
-        ChunkPos playerChunkPos = mod.getPlayer().getChunkPos();
-        Vec3d playerPos = mod.getPlayer().getPos();
+    /**
+     * Queues every loaded chunk (closest first) for scanning, used whenever the index was thrown away.
+     */
+    private void indexLoadedChunks() {
+        ChunkPos playerChunkPos = new ChunkPos(BlockPos.ofFloored(view.getPlayerPos()));
 
         HashSet<ChunkPos> visited = new HashSet<>();
-        Queue<Node> queue = new ArrayDeque<>();
-        queue.add(new Node(playerChunkPos, 0));
+        Queue<ChunkPos> queue = new ArrayDeque<>();
+        queue.add(playerChunkPos);
 
-        while (!queue.isEmpty() && visited.size() < maxCount && !forceStop) {
-            Node node = queue.poll();
+        while (!queue.isEmpty()) {
+            ChunkPos pos = queue.poll();
 
-            if (node.distance > cutOffRadius || visited.contains(node.pos) || !mod.getWorld().getChunkManager().isChunkLoaded(node.pos.x, node.pos.z))
+            if (visited.contains(pos))
                 continue;
-
-            boolean isPriorityChunk = getChunkDist(node.pos, playerChunkPos) <= 2;
-            if (!isPriorityChunk && scannedChunks.containsKey(node.pos) && mod.getWorld().getTime() - scannedChunks.get(node.pos) < RESCAN_TICK_DELAY)
+            ChunkSection[] sections = view.getChunkSections(pos.x, pos.z);
+            if (sections == null)
                 continue;
 
-            visited.add(node.pos);
-            scanChunk(node.pos, playerChunkPos);
+            visited.add(pos);
+            queueChunkScan(pos, sections, 0);
 
-            queue.add(new Node(new ChunkPos(node.pos.x + 1, node.pos.z + 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x - 1, node.pos.z + 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x - 1, node.pos.z - 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x + 1, node.pos.z - 1), node.distance + 1));
-        }
-        if (forceStop) {
-            // reset again, might have changed some values from the time forceStop was called
-            reset();
-            forceStop = false;
-            return;
+            queue.add(new ChunkPos(pos.x + 1, pos.z));
+            queue.add(new ChunkPos(pos.x - 1, pos.z));
+            queue.add(new ChunkPos(pos.x, pos.z + 1));
+            queue.add(new ChunkPos(pos.x, pos.z - 1));
         }
 
-        for (Iterator<ChunkPos> iterator = scannedChunks.keySet().iterator(); iterator.hasNext(); ) {
-            ChunkPos pos = iterator.next();
-            int distance = getChunkDist(pos, playerChunkPos);
+        if (LOG) {
+            mod.log("BlockScanner: queued " + visited.size() + " chunks for indexing");
+        }
+    }
 
-            if (distance > cutOffRadius) {
-                iterator.remove();
-            }
+    /**
+     * Indexes a chunk that just loaded, called for every {@link ChunkLoadEvent}.
+     */
+    public void onChunkLoad(ChunkPos pos) {
+        ChunkSection[] sections = view.getChunkSections(pos.x, pos.z);
+        if (sections != null) {
+            queueChunkScan(pos, sections, 0);
         }
+    }
+
+    private void queueChunkScan(ChunkPos pos, ChunkSection[] sections, int attempt) {
+        long key = pos.toLong();
+        long ticket = nextTicket++;
+        ScanState scanState = state.get();
+        // A newer scan replaces whatever was in flight for this chunk
+        pendingScans.put(key, new PendingScan(ticket, attempt, new ArrayList<>()));
 
-        for (HashSet<BlockPos> set : scannedBlocks.values()) {
-            if (set.size() < CACHED_POSITIONS_PER_BLOCK) {
+        // Failures are handed to the client thread too, pendingScans is only touched there
+        scanEngine.submit(pos, sections, view.getBottomSectionCoord(), BlockScanner::isScannable, () -> state.get() != scanState)
+                .whenComplete((result, error) -> finishedScans.add(new FinishedScan(scanState, ticket, key, result, error)));
+    }
+
+    private void applyFinishedScans() {
+        FinishedScan finished;
+        while ((finished = finishedScans.poll()) != null) {
+            // Scanned for a world we've reset since
+            if (finished.state() != state.get()) continue;
+            long key = finished.chunkKey();
+            PendingScan pending = pendingScans.get(key);
+            // Unloaded, reset or rescanned since
+            if (pending == null || pending.ticket() != finished.ticket()) continue;
+            pendingScans.remove(key);
+
+            if (finished.error() != null) {
+                onScanFailed(key, pending.attempt(), finished.error());
                 continue;
             }
 
-            getFirstFewPositions(set, playerPos);
-        }
+            index.putChunk(finished.result().pos(), finished.result().blocks());
 
-        if (LOG) {
-            mod.log("Rescanned in: " + (System.currentTimeMillis() - ms) + " ms; visited: " + visited.size() + " chunks");
+            // The scan may have read these before or after they changed, so look at them again
+            for (BlockChange change : pending.changes()) {
+                if (change.previous() != null) {
+                    index.remove(change.previous().getBlock(), change.pos());
+                }
+                BlockState current = view.getWorld().getBlockState(change.pos());
+                if (isScannable(current)) {
+                    index.add(current.getBlock(), change.pos());
+                }
+            }
         }
     }
 
-    private int getChunkDist(ChunkPos pos1, ChunkPos pos2) {
-        return Math.abs(pos1.x - pos2.x) + Math.abs(pos1.z - pos2.z);
+    private void onScanFailed(long chunkKey, int attempt, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        ChunkPos chunkPos = new ChunkPos(chunkKey);
+        int chunkX = chunkPos.x;
+        int chunkZ = chunkPos.z;
+        ChunkSection[] sections = attempt < MAX_SCAN_RETRIES ? view.getChunkSections(chunkX, chunkZ) : null;
+        boolean retry = sections != null;
+        Debug.logWarning("BlockScanner: scanning chunk [" + chunkX + ", " + chunkZ + "] failed (" + cause + ")"
+                + (retry ? ", retrying" : ", giving up until it loads again"));
+        if (retry) {
+            queueChunkScan(chunkPos, sections, attempt + 1);
+        }
     }
 
+    private void onChunkUnload(ChunkPos pos) {
+        index.removeChunk(pos);
+        pendingScans.remove(pos.toLong());
+    }
 
-    //TODO rename
-    private void getFirstFewPositions(HashSet<BlockPos> set, Vec3d playerPos) {
-        Queue<BlockPos> queue = new PriorityQueue<>(Comparator.comparingDouble((pos) -> -BaritoneHelper.calculateGenericHeuristic(playerPos, WorldHelper.toVec3d(pos))));
-
-        for (BlockPos pos : set) {
-            queue.add(pos);
+    private void onBlockChanged(BlockPos pos, BlockState previous, BlockState current) {
+        PendingScan pending = pendingScans.get(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+        if (pending != null) {
+            pending.changes().add(new BlockChange(pos.toImmutable(), previous));
+        }
 
-            if (queue.size() > CACHED_POSITIONS_PER_BLOCK) {
-                queue.poll();
+        if (previous != null && index.remove(previous.getBlock(), pos)) {
+            // We took most of the sampled positions of a common block, find some more.
+            ChunkSection[] sections = pending == null ? view.getChunkSections(pos.getX() >> 4, pos.getZ() >> 4) : null;
+            if (sections != null) {
+                queueChunkScan(new ChunkPos(pos.getX() >> 4, pos.getZ() >> 4), sections, 0);
             }
         }
+        if (current != null && isScannable(current)) {
+            index.add(current.getBlock(), pos);
+        }
+    }
 
-        set.clear();
+    private static boolean isScannable(BlockState state) {
+        return !state.isAir();
+    }
 
-        for (int i = 0; i < CACHED_POSITIONS_PER_BLOCK && !queue.isEmpty(); i++) {
-            set.add(queue.poll());
-        }
+    private record PendingScan(long ticket, int attempt, List<BlockChange> changes) {
     }
 
     /**
-     * scans a chunk and adds block positions corresponding to a specific block in a list
-     *
-     * @param chunkPos position of the scanned chunk
+     * Either {@code result} or {@code error} is set.
      */
-    private void scanChunk(ChunkPos chunkPos, ChunkPos playerChunkPos) {
-        World world = mod.getWorld();
-        WorldChunk chunk = mod.getWorld().getChunk(chunkPos.x, chunkPos.z);
-        scannedChunks.put(chunkPos, world.getTime());
-
-        boolean isPriorityChunk = getChunkDist(chunkPos, playerChunkPos) <= 2;
-
-        for (int x = chunkPos.getStartX(); x <= chunkPos.getEndX(); x++) {
-            for (int y = world.getBottomY(); y < world.getTopY(); y++) {
-                for (int z = chunkPos.getStartZ(); z <= chunkPos.getEndZ(); z++) {
-                    BlockPos p = new BlockPos(x, y, z);
-                    if (this.isUnreachable(p) || world.isOutOfHeightLimit(p)) continue;
-
-                    BlockState state = chunk.getBlockState(p);
-                    if (state.isAir()) continue;
-
-                    Block block = state.getBlock();
-                    if (scannedBlocks.containsKey(block)) {
-                        HashSet<BlockPos> set = scannedBlocks.get(block);
-
-                        if ((set.size() > CACHED_POSITIONS_PER_BLOCK * 750 && !isPriorityChunk)) continue;
+    private record FinishedScan(ScanState state, long ticket, long chunkKey, ChunkScanEngine.ChunkScanResult result, Throwable error) {
+    }
 
-                        set.add(p);
-                    } else {
-                        HashSet<BlockPos> set = new HashSet<>();
-                        set.add(p);
-                        scannedBlocks.put(block, set);
-                    }
-                }
-            }
+    /**
+     * What the scanner is currently indexing. Immutable, a reset publishes a new one.
+     */
+    private record ScanState(int generation, BlockView world, Dimension dimension) {
+        private ScanState next(BlockView world, Dimension dimension) {
+            return new ScanState(generation + 1, world, dimension);
         }
     }
 
-    private record Node(ChunkPos pos, int distance) {
+    private record BlockChange(BlockPos pos, BlockState previous) {
     }
 
 
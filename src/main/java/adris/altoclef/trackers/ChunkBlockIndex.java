@@ -0,0 +1,141 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.collections.LongArrayList;
+import net.minecraft.block.Block;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Persistent index of block positions, kept per chunk so single chunks can be added, dropped and patched
+ * without touching the rest of the world.
+ * <p>
+ * Each block gets its own {@link BlockPositionGrid}, so nearest queries only look at the part of the world
+ * that could hold a closer block.
+ * <p>
+ * Blocks that are very common in a chunk (stone, deepslate, netherrack...) only keep an evenly spread sample
+ * of their positions. Those are marked as truncated, and once enough of the sample is gone the chunk
+ * should be scanned again.
+ * <p>
+ * Not thread safe, only use it from the client thread.
+ */
+public class ChunkBlockIndex {
+
+    private final int maxPositionsPerChunk;
+
+    // block -> every known position of that block
+    private final HashMap<Block, BlockPositionGrid> grids = new HashMap<>();
+    // chunk -> which blocks it holds
+    private final HashMap<Long, ChunkEntry> chunks = new HashMap<>();
+
+    public ChunkBlockIndex(int maxPositionsPerChunk) {
+        this.maxPositionsPerChunk = maxPositionsPerChunk;
+    }
+
+    /**
+     * Replaces everything we know about a chunk with the result of a fresh scan.
+     */
+    public void putChunk(ChunkPos pos, Map<Block, LongArrayList> found) {
+        removeChunk(pos);
+
+        ChunkEntry entry = new ChunkEntry();
+        for (Map.Entry<Block, LongArrayList> blockEntry : found.entrySet()) {
+            Block block = blockEntry.getKey();
+            LongArrayList list = blockEntry.getValue();
+            if (list.isEmpty()) continue;
+
+            BlockPositionGrid grid = grids.computeIfAbsent(block, ignored -> new BlockPositionGrid());
+            if (list.size() > maxPositionsPerChunk) {
+                // Spread the sample over the whole list (and with that the whole height of the chunk)
+                for (int i = 0; i < maxPositionsPerChunk; i++) {
+                    grid.add(list.get((int) ((long) i * list.size() / maxPositionsPerChunk)));
+                }
+                entry.truncated.add(block);
+            } else {
+                for (int i = 0; i < list.size(); i++) {
+                    grid.add(list.get(i));
+                }
+            }
+            entry.blocks.add(block);
+        }
+        chunks.put(pos.toLong(), entry);
+    }
+
+    public void removeChunk(ChunkPos pos) {
+        long key = pos.toLong();
+        ChunkEntry entry = chunks.remove(key);
+        if (entry == null) return;
+
+        for (Block block : entry.blocks) {
+            BlockPositionGrid grid = grids.get(block);
+            if (grid == null) continue;
+            grid.removeChunk(key);
+            if (grid.isEmpty()) {
+                grids.remove(block);
+            }
+        }
+    }
+
+    public boolean containsChunk(ChunkPos pos) {
+        return chunks.containsKey(pos.toLong());
+    }
+
+    public void add(Block block, BlockPos pos) {
+        long key = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        chunks.computeIfAbsent(key, ignored -> new ChunkEntry()).blocks.add(block);
+        grids.computeIfAbsent(block, ignored -> new BlockPositionGrid()).add(pos.asLong());
+    }
+
+    /**
+     * @return true if the chunk's sample of this block ran low and the chunk should be scanned again
+     */
+    public boolean remove(Block block, BlockPos pos) {
+        BlockPositionGrid grid = grids.get(block);
+        if (grid == null || !grid.remove(pos.asLong())) return false;
+
+        long key = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        int left = grid.countInChunk(key);
+        ChunkEntry entry = chunks.get(key);
+        if (left == 0) {
+            if (grid.isEmpty()) {
+                grids.remove(block);
+            }
+            if (entry != null) {
+                entry.blocks.remove(block);
+            }
+        }
+        return entry != null && entry.truncated.contains(block) && left < maxPositionsPerChunk / 2;
+    }
+
+    /**
+     * @return every known position of a block, or null if we don't know of any
+     */
+    public BlockPositionGrid getGrid(Block block) {
+        return grids.get(block);
+    }
+
+    /**
+     * @return whether we only keep a sample of this block's positions in the chunk
+     */
+    public boolean isTruncated(long chunkKey, Block block) {
+        ChunkEntry entry = chunks.get(chunkKey);
+        return entry != null && entry.truncated.contains(block);
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public void clear() {
+        grids.clear();
+        chunks.clear();
+    }
+
+    private static class ChunkEntry {
+        private final HashSet<Block> blocks = new HashSet<>();
+        private final HashSet<Block> truncated = new HashSet<>();
+    }
+}
@@ -0,0 +1,130 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.collections.LongArrayList;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Scans chunks for block positions on a small, bounded pool of worker threads.
+ * <p>
+ * Every {@link ChunkSection} palette is checked before its blocks are read, so sections that
+ * can't contain a block we're interested in (all-air sections for example) are skipped entirely.
+ */
+public class ChunkScanEngine {
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final Executor workers;
+
+    public ChunkScanEngine() {
+        this(Executors.newFixedThreadPool(WORKER_COUNT, new ScanThreadFactory()));
+    }
+
+    /**
+     * @param workers Where scans run, the replay benchmark runs them itself to time them
+     */
+    public ChunkScanEngine(Executor workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Queues a chunk to be scanned on the worker pool.
+     *
+     * @param chunkPos           The chunk to scan
+     * @param sections           Its sections, read on the worker
+     * @param bottomSectionCoord Section y coordinate of the first section in the array
+     * @param filter             Only block states that pass this filter are collected
+     * @param cancelled          Checked right before the scan starts, an empty result is returned if it's true
+     */
+    public CompletableFuture<ChunkScanResult> submit(ChunkPos chunkPos, ChunkSection[] sections, int bottomSectionCoord, Predicate<BlockState> filter, BooleanSupplier cancelled) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (cancelled.getAsBoolean()) {
+                return ChunkScanResult.empty(chunkPos);
+            }
+            return scan(chunkPos, sections, bottomSectionCoord, filter);
+        }, workers);
+    }
+
+    /**
+     * Scans a single chunk on the calling thread.
+     *
+     * @param chunk  The chunk to scan
+     * @param filter Only block states that pass this filter are collected
+     */
+    public static ChunkScanResult scan(WorldChunk chunk, Predicate<BlockState> filter) {
+        return scan(chunk.getPos(), chunk.getSectionArray(), chunk.getBottomSectionCoord(), filter);
+    }
+
+    /**
+     * Scans a chunk's sections on the calling thread, without needing the chunk (or a world) itself.
+     *
+     * @param bottomSectionCoord Section y coordinate of the first section in the array
+     */
+    public static ChunkScanResult scan(ChunkPos chunkPos, ChunkSection[] sections, int bottomSectionCoord, Predicate<BlockState> filter) {
+        HashMap<Block, LongArrayList> found = new HashMap<>();
+
+        int startX = chunkPos.getStartX();
+        int startZ = chunkPos.getStartZ();
+
+        for (int i = 0; i < sections.length; i++) {
+            ChunkSection section = sections[i];
+            // The palette tells us whether this section can have anything we care about without reading any blocks.
+            if (section == null || section.isEmpty() || !section.hasAny(filter)) continue;
+
+            int startY = ChunkSectionPos.getBlockCoord(bottomSectionCoord + i);
+
+            // y -> z -> x matches the layout of the section's storage
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        BlockState state = section.getBlockState(x, y, z);
+                        if (!filter.test(state)) continue;
+
+                        found.computeIfAbsent(state.getBlock(), block -> new LongArrayList())
+                                .add(BlockPos.asLong(startX + x, startY + y, startZ + z));
+                    }
+                }
+            }
+        }
+
+        return new ChunkScanResult(chunkPos, Collections.unmodifiableMap(found));
+    }
+
+    /**
+     * Positions found in a chunk, grouped by block and packed with `BlockPos.asLong`.
+     * Handed from the worker to the client thread and never changed after that.
+     */
+    public record ChunkScanResult(ChunkPos pos, Map<Block, LongArrayList> blocks) {
+        public static ChunkScanResult empty(ChunkPos pos) {
+            return new ChunkScanResult(pos, Collections.emptyMap());
+        }
+    }
+
+    private static final class ScanThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BlockScanner-worker-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.Dimension;
+import adris.altoclef.util.slots.Slot;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
+
+/**
+ * What the trackers read from the game.
+ * <p>
+ * In game this is always {@link #LIVE}. Keeping it behind an interface lets the tracker code run against something
+ * else, like the recorded world the replay benchmark builds (see {@code TickReplay} in the jmh sources).
+ * Only called from the client thread.
+ */
+public interface ClientView {
+
+    ClientView LIVE = new LiveClientView();
+
+    boolean isInGame();
+
+    /**
+     * @return the world we're in, {@code null} if there is none. A different instance means a different world.
+     */
+    BlockView getWorld();
+
+    Dimension getDimension();
+
+    /**
+     * @return the sections of a loaded chunk from the bottom up, {@code null} if it isn't loaded
+     */
+    ChunkSection[] getChunkSections(int chunkX, int chunkZ);
+
+    /**
+     * @return section y coordinate of the first section {@link #getChunkSections} returns
+     */
+    int getBottomSectionCoord();
+
+    /**
+     * @return {@code null} if there is no player
+     */
+    Vec3d getPlayerPos();
+
+    /**
+     * The player entities are checked against (line of sight, hostility), {@code null} if there is none.
+     */
+    PlayerEntity getPlayer();
+
+    double getEntityReachRange();
+
+    Iterable<Entity> getEntities();
+
+    long getTime();
+
+    /**
+     * @return the screen the player has open, {@code null} if there is no player
+     */
+    ScreenHandler getScreenHandler();
+
+    /**
+     * @return the slot wrapper for a slot of {@link #getScreenHandler()}
+     */
+    Slot getScreenSlot(int windowSlot);
+
+    ItemStack getCursorStack();
+}
@@ -1,7 +1,10 @@
 package adris.altoclef.trackers;
 
+import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
 import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.EntityLoadEvent;
+import adris.altoclef.eventbus.events.EntityUnloadEvent;
 import adris.altoclef.eventbus.events.PlayerCollidedWithEntityEvent;
 import adris.altoclef.mixins.PersistentProjectileEntityAccessor;
 import adris.altoclef.trackers.blacklisting.EntityLocateBlacklist;
@@ -10,11 +13,11 @@ import adris.altoclef.util.baritone.CachedProjectile;
 import adris.altoclef.util.helpers.BaritoneHelper;
 import adris.altoclef.util.helpers.EntityHelper;
 import adris.altoclef.util.helpers.ProjectileHelper;
-import adris.altoclef.util.helpers.WorldHelper;
-import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.mob.EndermanEntity;
 import net.minecraft.entity.mob.MobEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.projectile.FishingBobberEntity;
@@ -23,7 +26,9 @@ import net.minecraft.entity.projectile.ProjectileEntity;
 import net.minecraft.entity.projectile.thrown.EnderPearlEntity;
 import net.minecraft.entity.projectile.thrown.ExperienceBottleEntity;
 import net.minecraft.item.Item;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockView;
 
 import java.util.*;
 import java.util.function.Predicate;
@@ -50,11 +55,17 @@ public class EntityTracker extends Tracker {
     private final HashMap<PlayerEntity, List<Entity>> entitiesCollidingWithPlayerAccumulator = new HashMap<>();
     private final HashMap<PlayerEntity, HashSet<Entity>> entitiesCollidingWithPlayer = new HashMap<>();
 
+    // Every entity in the world we know of, kept up to date from load/unload events instead of rescanning the world
+    private final IdentityHashMap<Entity, TrackedEntity> trackedEntities = new IdentityHashMap<>();
+    private BlockView trackedWorld = null;
+
     public EntityTracker(TrackerManager manager) {
         super(manager);
 
         // Listen for player collisions
         EventBus.subscribe(PlayerCollidedWithEntityEvent.class, evt -> registerPlayerCollision(evt.player, evt.other));
+        EventBus.subscribe(EntityLoadEvent.class, evt -> onEntityLoad(evt.entity));
+        EventBus.subscribe(EntityUnloadEvent.class, evt -> onEntityUnload(evt.entity));
     }
 
     /**
@@ -321,13 +332,19 @@ public class EntityTracker extends Tracker {
     @Override
     protected synchronized void updateState() {
         synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            itemDropLocations.clear();
-            entityMap.clear();
             closeEntities.clear();
             projectiles.clear();
             hostiles.clear();
             playerMap.clear();
-            if (MinecraftClient.getInstance().world == null) return;
+            // Keep the lists around, the same items tend to show up again
+            for (List<ItemEntity> drops : itemDropLocations.values()) {
+                drops.clear();
+            }
+            BlockView world = view.getWorld();
+            if (world == null) {
+                clearTracked();
+                return;
+            }
 
             // Store/Register All accumulated player collisions for this frame.
             entitiesCollidingWithPlayer.clear();
@@ -337,53 +354,51 @@ public class EntityTracker extends Tracker {
             }
             entitiesCollidingWithPlayerAccumulator.clear();
 
-            // Loop through all entities and track 'em
-            for (Entity entity : MinecraftClient.getInstance().world.getEntities()) {
-
-                // Catalogue based on type. Some types may get "squashed" or combined into one.
-                Class type = entity.getClass();
-                type = squashType(type);
+            // New world (or we were reset), load/unload events only cover changes so catch up once
+            if (world != trackedWorld) {
+                clearTracked();
+                trackedWorld = world;
+                for (Entity entity : view.getEntities()) {
+                    startTracking(entity);
+                }
+            }
 
-                //noinspection ConstantConditions
-                if (entity == null || !entity.isAlive()) continue;
+            PlayerEntity player = view.getPlayer();
+            Vec3d playerPos = view.getPlayerPos();
+            double reach = view.getEntityReachRange();
+            long tick = view.getTime();
 
-                // Don't catalogue our own player.
-                if (type == PlayerEntity.class && entity.equals(mod.getPlayer())) continue;
+            for (TrackedEntity tracked : trackedEntities.values()) {
+                Entity entity = tracked.entity;
 
-                if (!entityMap.containsKey(type)) {
-                    entityMap.put(type, new ArrayList<>());
+                if (!entity.isAlive()) {
+                    // Dying, but it hasn't been unloaded yet
+                    if (tracked.listed) {
+                        removeFromBucket(tracked);
+                    }
+                    continue;
                 }
-                entityMap.get(type).add(entity);
 
-                if (mod.getControllerExtras().inRange(entity)) {
+                if (playerPos != null && entity.squaredDistanceTo(playerPos) < reach * reach) {
                     closeEntities.add(entity);
                 }
 
                 if (entity instanceof ItemEntity ientity) {
-                    Item droppedItem = ientity.getStack().getItem();
-
                     // Only cared about GROUNDED item entities
-                    if (ientity.isOnGround() || ientity.isTouchingWater() || WorldHelper.isSolidBlock(ientity.getBlockPos().down(2)) || WorldHelper.isSolidBlock(ientity.getBlockPos().down(3))) {
-                        if (!itemDropLocations.containsKey(droppedItem)) {
-                            itemDropLocations.put(droppedItem, new ArrayList<>());
-                        }
-                        itemDropLocations.get(droppedItem).add(ientity);
+                    if (tracked.isGrounded(world, ientity)) {
+                        itemDropLocations.computeIfAbsent(ientity.getStack().getItem(), item -> new ArrayList<>()).add(ientity);
                     }
                 }
                 if (entity instanceof MobEntity) {
-                    if (EntityHelper.isAngryAtPlayer(mod, entity)) {
-
-                        // Check if the mob is facing us or is close enough
-                        boolean closeEnough = entity.isInRange(mod.getPlayer(), 26);
-
-                        //Debug.logInternal("TARGET: " + hostile.is);
-                        if (closeEnough) {
-                            hostiles.add((LivingEntity) entity);
-                        }
+                    // Check if the mob is close enough before looking at whether it can see us
+                    if (player != null && entity.isInRange(player, 26) && tracked.isAngryAtPlayer(mod, player, tick)) {
+                        hostiles.add((LivingEntity) entity);
                     }
                 } else if (entity instanceof ProjectileEntity projEntity) {
                     if (!mod.getBehaviour().shouldAvoidDodgingProjectile(entity)) {
-                        CachedProjectile proj = new CachedProjectile();
+                        // Ignore some of the harlmess projectiles
+                        if (projEntity instanceof FishingBobberEntity || projEntity instanceof EnderPearlEntity || projEntity instanceof ExperienceBottleEntity)
+                            continue;
 
                         boolean inGround = false;
                         // Get projectile "inGround" variable
@@ -391,30 +406,146 @@ public class EntityTracker extends Tracker {
                             inGround = ((PersistentProjectileEntityAccessor) entity).isInGround();
                         }
 
-                        // Ignore some of the harlmess projectiles
-                        if (projEntity instanceof FishingBobberEntity || projEntity instanceof EnderPearlEntity || projEntity instanceof ExperienceBottleEntity)
-                            continue;
-
                         if (!inGround) {
-                            proj.position = projEntity.getPos();
-                            proj.velocity = projEntity.getVelocity();
-                            proj.gravity = ProjectileHelper.hasGravity(projEntity) ? ProjectileHelper.ARROW_GRAVITY_ACCEL : 0;
-                            proj.projectileType = projEntity.getClass();
-                            projectiles.add(proj);
+                            projectiles.add(tracked.updateProjectile(projEntity));
                         }
                     }
-                } else if (entity instanceof PlayerEntity player) {
-                    String name = player.getName().getString();
-                    playerMap.put(name, player);
-                    playerLastCoordinates.put(name, player.getPos());
+                } else if (entity instanceof PlayerEntity otherPlayer) {
+                    playerMap.put(tracked.playerName, otherPlayer);
+                    playerLastCoordinates.put(tracked.playerName, otherPlayer.getPos());
                 }
             }
         }
     }
 
+    private void onEntityLoad(Entity entity) {
+        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
+            // Entities of a world we haven't caught up with yet are picked up by the next update
+            if (trackedWorld == null || trackedWorld != view.getWorld()) return;
+            startTracking(entity);
+        }
+        setDirty();
+    }
+
+    private void onEntityUnload(Entity entity) {
+        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
+            TrackedEntity tracked = trackedEntities.remove(entity);
+            if (tracked != null && tracked.listed) {
+                removeFromBucket(tracked);
+            }
+        }
+        setDirty();
+    }
+
+    private void startTracking(Entity entity) {
+        // Don't catalogue our own player.
+        if (entity instanceof ClientPlayerEntity) return;
+        if (trackedEntities.containsKey(entity)) return;
+
+        // Catalogue based on type. Some types may get "squashed" or combined into one.
+        TrackedEntity tracked = new TrackedEntity(entity, squashType(entity.getClass()));
+        trackedEntities.put(entity, tracked);
+        entityMap.computeIfAbsent(tracked.type, type -> new ArrayList<>()).add(entity);
+    }
+
+    private void removeFromBucket(TrackedEntity tracked) {
+        List<Entity> bucket = entityMap.get(tracked.type);
+        if (bucket != null) {
+            bucket.remove(tracked.entity);
+            if (bucket.isEmpty()) {
+                entityMap.remove(tracked.type);
+            }
+        }
+        tracked.listed = false;
+    }
+
+    private void clearTracked() {
+        trackedEntities.clear();
+        entityMap.clear();
+        itemDropLocations.clear();
+        trackedWorld = null;
+    }
+
     @Override
     protected void reset() {
         // Dirty clears everything else.
         entityBlacklist.clear();
+        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
+            // Catch up with the world again on the next update
+            trackedWorld = null;
+        }
+    }
+
+    /**
+     * What we remember about an entity between updates, so we only redo the expensive checks when something changed.
+     */
+    private static class TrackedEntity {
+        // Line of sight checks are raycasts. Redo them when either side moved, or after this long anyway.
+        private static final int SIGHT_RECHECK_TICKS = 5;
+
+        private final Entity entity;
+        private final Class type;
+        private final String playerName;
+        private boolean listed = true;
+
+        private long groundCheckPos = Long.MIN_VALUE;
+        private boolean solidBelow;
+
+        private Vec3d sightCheckPos;
+        private Vec3d sightCheckPlayerPos;
+        private long sightCheckTick;
+        private boolean canSeePlayer;
+
+        private CachedProjectile projectile;
+
+        private TrackedEntity(Entity entity, Class type) {
+            this.entity = entity;
+            this.type = type;
+            this.playerName = entity instanceof PlayerEntity player ? player.getName().getString() : null;
+        }
+
+        private boolean isGrounded(BlockView world, ItemEntity item) {
+            if (item.isOnGround() || item.isTouchingWater()) return true;
+            BlockPos pos = item.getBlockPos();
+            if (pos.asLong() != groundCheckPos) {
+                groundCheckPos = pos.asLong();
+                solidBelow = isSolidBlock(world, pos.down(2)) || isSolidBlock(world, pos.down(3));
+            }
+            return solidBelow;
+        }
+
+        // Same as WorldHelper.isSolidBlock, for whichever world we're tracking
+        private static boolean isSolidBlock(BlockView world, BlockPos pos) {
+            return world.getBlockState(pos).isSolidBlock(world, pos);
+        }
+
+        private boolean isAngryAtPlayer(AltoClef mod, PlayerEntity player, long tick) {
+            // Same as EntityHelper.isAngryAtPlayer, but remembers the line of sight check
+            if (entity instanceof EndermanEntity) {
+                return EntityHelper.isAngryAtPlayer(mod, entity);
+            }
+            if (!EntityHelper.isProbablyHostileToPlayer(mod, entity)) return false;
+            if (!(entity instanceof LivingEntity living)) return true;
+
+            if (!entity.getPos().equals(sightCheckPos) || !player.getPos().equals(sightCheckPlayerPos) || tick - sightCheckTick >= SIGHT_RECHECK_TICKS) {
+                sightCheckPos = entity.getPos();
+                sightCheckPlayerPos = player.getPos();
+                sightCheckTick = tick;
+                canSeePlayer = living.canSee(player);
+            }
+            return canSeePlayer;
+        }
+
+        private CachedProjectile updateProjectile(ProjectileEntity projEntity) {
+            // Reused between updates, gravity and type never change
+            if (projectile == null) {
+                projectile = new CachedProjectile();
+                projectile.gravity = ProjectileHelper.hasGravity(projEntity) ? ProjectileHelper.ARROW_GRAVITY_ACCEL : 0;
+                projectile.projectileType = projEntity.getClass();
+            }
+            projectile.position = projEntity.getPos();
+            projectile.velocity = projEntity.getVelocity();
+            return projectile;
+        }
     }
 }
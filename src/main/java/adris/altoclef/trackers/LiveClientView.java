@@ -0,0 +1,100 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.util.Dimension;
+import adris.altoclef.util.helpers.StorageHelper;
+import adris.altoclef.util.helpers.WorldHelper;
+import adris.altoclef.util.slots.Slot;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
+
+import java.util.Collections;
+
+/**
+ * {@link ClientView} of the running client.
+ */
+final class LiveClientView implements ClientView {
+
+    LiveClientView() {
+    }
+
+    @Override
+    public boolean isInGame() {
+        return AltoClef.inGame();
+    }
+
+    @Override
+    public BlockView getWorld() {
+        return MinecraftClient.getInstance().world;
+    }
+
+    @Override
+    public Dimension getDimension() {
+        return WorldHelper.getCurrentDimension();
+    }
+
+    @Override
+    public ChunkSection[] getChunkSections(int chunkX, int chunkZ) {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world == null || !world.getChunkManager().isChunkLoaded(chunkX, chunkZ)) return null;
+        return world.getChunk(chunkX, chunkZ).getSectionArray();
+    }
+
+    @Override
+    public int getBottomSectionCoord() {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        return world != null ? world.getBottomSectionCoord() : 0;
+    }
+
+    @Override
+    public Vec3d getPlayerPos() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        return player != null ? player.getPos() : null;
+    }
+
+    @Override
+    public PlayerEntity getPlayer() {
+        return MinecraftClient.getInstance().player;
+    }
+
+    @Override
+    public double getEntityReachRange() {
+        return AltoClef.getInstance().getModSettings().getEntityReachRange();
+    }
+
+    @Override
+    public Iterable<Entity> getEntities() {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        return world != null ? world.getEntities() : Collections.emptyList();
+    }
+
+    @Override
+    public long getTime() {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        return world != null ? world.getTime() : 0;
+    }
+
+    @Override
+    public ScreenHandler getScreenHandler() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        return player != null ? player.currentScreenHandler : null;
+    }
+
+    @Override
+    public Slot getScreenSlot(int windowSlot) {
+        return Slot.getFromCurrentScreen(windowSlot);
+    }
+
+    @Override
+    public ItemStack getCursorStack() {
+        return StorageHelper.getItemStackInCursorSlot();
+    }
+}
@@ -1,6 +1,9 @@
 package adris.altoclef.trackers;
 
 import adris.altoclef.util.Dimension;
+import adris.altoclef.util.collections.BlockPositionMap;
+import adris.altoclef.util.collections.LongArrayList;
+import adris.altoclef.util.collections.LongHashSet;
 import adris.altoclef.util.helpers.WorldHelper;
 import net.minecraft.block.Block;
 import net.minecraft.util.math.BlockPos;
@@ -8,17 +11,15 @@ import net.minecraft.util.math.BlockPos;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Objects;
 
 /**
  * Tracks container blocks placed by the bot so we can preferentially pick them back up later.
  */
 public class PlacedContainerTracker extends Tracker {
 
-    private final Map<Block, LinkedHashMap<BlockPos, Dimension>> placements = new LinkedHashMap<>();
+    private final EnumMap<Dimension, BlockPositionMap> placements = new EnumMap<>(Dimension.class);
 
     public PlacedContainerTracker(TrackerManager manager) {
         super(manager);
@@ -31,13 +32,14 @@ public class PlacedContainerTracker extends Tracker {
         if (block == null || position == null) {
             return;
         }
-        BlockPos immutable = position.toImmutable();
-        LinkedHashMap<BlockPos, Dimension> entries = placements.computeIfAbsent(block, ignored -> new LinkedHashMap<>());
         Dimension dimension = WorldHelper.getCurrentDimension();
-        Dimension previous = entries.get(immutable);
-        if (!Objects.equals(previous, dimension)) {
-            entries.put(immutable, dimension);
+        // A position only belongs to the dimension it was last placed in
+        for (Map.Entry<Dimension, BlockPositionMap> entry : placements.entrySet()) {
+            if (entry.getKey() != dimension) {
+                entry.getValue().remove(block, position);
+            }
         }
+        placements.computeIfAbsent(dimension, ignored -> new BlockPositionMap()).add(block, position);
     }
 
     /**
@@ -47,13 +49,8 @@ public class PlacedContainerTracker extends Tracker {
         if (block == null || position == null) {
             return;
         }
-        LinkedHashMap<BlockPos, Dimension> entries = placements.get(block);
-        if (entries == null) {
-            return;
-        }
-        entries.remove(position);
-        if (entries.isEmpty()) {
-            placements.remove(block);
+        for (BlockPositionMap positions : placements.values()) {
+            positions.remove(block, position);
         }
     }
 
@@ -62,18 +59,13 @@ public class PlacedContainerTracker extends Tracker {
      */
     public Collection<BlockPos> getPlacements(Block block) {
         ensureUpdated();
-        LinkedHashMap<BlockPos, Dimension> entries = placements.get(block);
-        if (entries == null || entries.isEmpty()) {
+        BlockPositionMap positions = placements.get(WorldHelper.getCurrentDimension());
+        LongHashSet packed = positions == null ? null : positions.get(block);
+        if (packed == null || packed.isEmpty()) {
             return Collections.emptyList();
         }
-        Dimension current = WorldHelper.getCurrentDimension();
-        ArrayList<BlockPos> result = new ArrayList<>(entries.size());
-        for (Map.Entry<BlockPos, Dimension> entry : entries.entrySet()) {
-            Dimension stored = entry.getValue();
-            if (stored == null || stored == current) {
-                result.add(entry.getKey());
-            }
-        }
+        ArrayList<BlockPos> result = new ArrayList<>(packed.size());
+        packed.forEach(pos -> result.add(BlockPos.fromLong(pos)));
         return result;
     }
 
@@ -81,8 +73,12 @@ public class PlacedContainerTracker extends Tracker {
      * Returns true if we are tracking the provided block position as one the bot placed itself.
      */
     public boolean isTracked(Block block, BlockPos position) {
-        LinkedHashMap<BlockPos, Dimension> entries = placements.get(block);
-        return entries != null && entries.containsKey(position);
+        for (BlockPositionMap positions : placements.values()) {
+            if (positions.contains(block, position)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -91,29 +87,26 @@ public class PlacedContainerTracker extends Tracker {
             placements.clear();
             return;
         }
-        Iterator<Map.Entry<Block, LinkedHashMap<BlockPos, Dimension>>> outer = placements.entrySet().iterator();
-        while (outer.hasNext()) {
-            Map.Entry<Block, LinkedHashMap<BlockPos, Dimension>> entry = outer.next();
+        BlockPositionMap positions = placements.get(WorldHelper.getCurrentDimension());
+        if (positions == null) {
+            return;
+        }
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (Map.Entry<Block, LongHashSet> entry : positions.entrySet()) {
             Block block = entry.getKey();
-            LinkedHashMap<BlockPos, Dimension> locations = entry.getValue();
-            Iterator<Map.Entry<BlockPos, Dimension>> inner = locations.entrySet().iterator();
-            while (inner.hasNext()) {
-                Map.Entry<BlockPos, Dimension> placement = inner.next();
-                BlockPos pos = placement.getKey();
-                Dimension dimension = placement.getValue();
-                if (dimension == null || dimension == WorldHelper.getCurrentDimension()) {
-                    if (!mod.getChunkTracker().isChunkLoaded(pos)) {
-                        continue;
-                    }
-                    if (mod.getWorld().getBlockState(pos).getBlock() != block) {
-                        inner.remove();
-                    }
+            // Collect first, the set can't be modified while we walk it
+            LongArrayList gone = new LongArrayList();
+            entry.getValue().forEach(packed -> {
+                pos.set(packed);
+                if (mod.getChunkTracker().isChunkLoaded(pos) && mod.getWorld().getBlockState(pos).getBlock() != block) {
+                    gone.add(packed);
                 }
-            }
-            if (locations.isEmpty()) {
-                outer.remove();
+            });
+            for (int i = 0; i < gone.size(); i++) {
+                entry.getValue().remove(gone.get(i));
             }
         }
+        positions.removeEmpty();
     }
 
     @Override
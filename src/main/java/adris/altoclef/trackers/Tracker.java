@@ -1,10 +1,12 @@
 package adris.altoclef.trackers;
 
 import adris.altoclef.AltoClef;
+import adris.altoclef.telemetry.TickProfiler;
 
 public abstract class Tracker {
 
     protected AltoClef mod;
+    protected ClientView view;
     // Needs to update
     private boolean dirty = true;
 
@@ -16,6 +18,11 @@ public abstract class Tracker {
         dirty = true;
     }
 
+    // Virtual: Trackers that know on their own when they're out of date can skip being dirtied every tick
+    protected boolean isDirtiedEveryTick() {
+        return true;
+    }
+
     // Virtual
     protected boolean isDirty() {
         return dirty;
@@ -23,7 +30,12 @@ public abstract class Tracker {
 
     protected void ensureUpdated() {
         if (isDirty()) {
-            updateState();
+            int scope = TickProfiler.push(getClass());
+            try {
+                updateState();
+            } finally {
+                TickProfiler.pop(scope);
+            }
             dirty = false;
         }
     }
@@ -9,15 +9,21 @@ public class TrackerManager {
     private final ArrayList<Tracker> _trackers = new ArrayList<>();
 
     private final AltoClef _mod;
+    private final ClientView _view;
 
     private boolean _wasInGame = false;
 
     public TrackerManager(AltoClef mod) {
+        this(mod, ClientView.LIVE);
+    }
+
+    public TrackerManager(AltoClef mod, ClientView view) {
         _mod = mod;
+        _view = view;
     }
 
     public void tick() {
-        boolean inGame = AltoClef.inGame();
+        boolean inGame = _view.isInGame();
         if (!inGame && _wasInGame) {
             // Reset when we leave our world
             for (Tracker tracker : _trackers) {
@@ -30,7 +36,9 @@ public class TrackerManager {
         _wasInGame = inGame;
 
         for (Tracker tracker : _trackers) {
-            tracker.setDirty();
+            if (tracker.isDirtiedEveryTick()) {
+                tracker.setDirty();
+            }
         }
     }
 
@@ -49,6 +57,7 @@ public class TrackerManager {
 
     public void addTracker(Tracker tracker) {
         tracker.mod = _mod;
+        tracker.view = _view;
         _trackers.add(tracker);
     }
 }
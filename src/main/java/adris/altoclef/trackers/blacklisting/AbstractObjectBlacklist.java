@@ -6,27 +6,25 @@ import adris.altoclef.util.MiningRequirement;
 import adris.altoclef.util.helpers.StorageHelper;
 import net.minecraft.util.math.Vec3d;
 
-import java.util.HashMap;
-
 /**
  * Sometimes we will try to access something and fail TOO many times.
  * <p>
  * This lets us know that a block is unreachable, and will ignore it from the search intelligently.
+ * <p>
+ * Subclasses decide how entries are stored, so they can key them however is cheapest for their items.
  */
 public abstract class AbstractObjectBlacklist<T> {
 
-    private final HashMap<T, BlacklistEntry> entries = new HashMap<>();
-
     public void blackListItem(AltoClef mod, T item, int numberOfFailuresAllowed) {
-        if (!entries.containsKey(item)) {
-            BlacklistEntry entry = new BlacklistEntry();
+        BlacklistEntry entry = getEntry(item);
+        if (entry == null) {
+            entry = new BlacklistEntry();
             entry.numberOfFailuresAllowed = numberOfFailuresAllowed;
             entry.numberOfFailures = 0;
             entry.bestDistanceSq = Double.POSITIVE_INFINITY;
             entry.bestTool = MiningRequirement.HAND;
-            entries.put(item, entry);
+            putEntry(item, entry);
         }
-        BlacklistEntry entry = entries.get(item);
         double newDistance = getPos(item).squaredDistanceTo(mod.getPlayer().getPos());
         MiningRequirement newTool = StorageHelper.getCurrentMiningRequirement();
         // For distance, add a slight threshold so it doesn't reset EVERY time we move a tiny bit closer.
@@ -38,45 +36,68 @@ public abstract class AbstractObjectBlacklist<T> {
         }
         entry.numberOfFailures++;
         entry.numberOfFailuresAllowed = numberOfFailuresAllowed;
+        onReachabilityChanged(item, entry.isUnreachable());
         Debug.logMessage("Blacklist: " + item.toString() + ": Try " + entry.numberOfFailures + " / " + entry.numberOfFailuresAllowed);
     }
 
     protected abstract Vec3d getPos(T item);
 
+    /**
+     * @return the entry for this item, null if it has none
+     */
+    protected abstract BlacklistEntry getEntry(T item);
+
+    protected abstract void putEntry(T item, BlacklistEntry entry);
+
+    /**
+     * @return the removed entry, null if it had none
+     */
+    protected abstract BlacklistEntry removeEntry(T item);
+
+    protected abstract void clearEntries();
+
+    /**
+     * Called whenever an item may have become (un)reachable.
+     */
+    protected void onReachabilityChanged(T item, boolean unreachable) {
+    }
+
     public void allow(T item) {
-        entries.remove(item);
+        if (removeEntry(item) != null) {
+            onReachabilityChanged(item, false);
+        }
     }
 
     public void forceUnreachable(T item) {
-        BlacklistEntry entry = entries.computeIfAbsent(item, key -> {
-            BlacklistEntry created = new BlacklistEntry();
-            created.bestDistanceSq = Double.POSITIVE_INFINITY;
-            created.bestTool = MiningRequirement.HAND;
-            created.numberOfFailuresAllowed = 0;
-            created.numberOfFailures = 0;
-            return created;
-        });
+        BlacklistEntry entry = getEntry(item);
+        if (entry == null) {
+            entry = new BlacklistEntry();
+            entry.bestDistanceSq = Double.POSITIVE_INFINITY;
+            entry.bestTool = MiningRequirement.HAND;
+            putEntry(item, entry);
+        }
         entry.numberOfFailuresAllowed = 0;
         entry.numberOfFailures = entry.numberOfFailuresAllowed + 1;
+        onReachabilityChanged(item, true);
     }
 
     public boolean unreachable(T item) {
-        if (entries.containsKey(item)) {
-            BlacklistEntry entry = entries.get(item);
-            return entry.numberOfFailures > entry.numberOfFailuresAllowed;
-        }
-        return false;
+        BlacklistEntry entry = getEntry(item);
+        return entry != null && entry.isUnreachable();
     }
 
     public void clear() {
-        entries.clear();
+        clearEntries();
     }
 
-    // Key: BlockPos
-    private static class BlacklistEntry {
+    protected static class BlacklistEntry {
         public int numberOfFailuresAllowed;
         public int numberOfFailures;
         public double bestDistanceSq;
         public MiningRequirement bestTool;
+
+        public boolean isUnreachable() {
+            return numberOfFailures > numberOfFailuresAllowed;
+        }
     }
 }
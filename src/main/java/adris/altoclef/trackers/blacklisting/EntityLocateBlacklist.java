@@ -3,9 +3,34 @@ package adris.altoclef.trackers.blacklisting;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.math.Vec3d;
 
+import java.util.HashMap;
+
 public class EntityLocateBlacklist extends AbstractObjectBlacklist<Entity> {
+
+    private final HashMap<Entity, BlacklistEntry> entries = new HashMap<>();
+
     @Override
     protected Vec3d getPos(Entity item) {
         return item.getPos();
     }
+
+    @Override
+    protected BlacklistEntry getEntry(Entity item) {
+        return entries.get(item);
+    }
+
+    @Override
+    protected void putEntry(Entity item, BlacklistEntry entry) {
+        entries.put(item, entry);
+    }
+
+    @Override
+    protected BlacklistEntry removeEntry(Entity item) {
+        return entries.remove(item);
+    }
+
+    @Override
+    protected void clearEntries() {
+        entries.clear();
+    }
 }
@@ -1,12 +1,82 @@
 package adris.altoclef.trackers.blacklisting;
 
+import adris.altoclef.util.collections.LongHashSet;
+import adris.altoclef.util.collections.LongObjectHashMap;
 import adris.altoclef.util.helpers.WorldHelper;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 
 public class WorldLocateBlacklist extends AbstractObjectBlacklist<BlockPos> {
+
+    // Keyed by packed position, so callers holding a packed position never build a BlockPos to look one up
+    private final LongObjectHashMap<BlacklistEntry> entries = new LongObjectHashMap<>();
+
+    // Entries are only changed and read on the thread that made the blacklist (the client thread). Other threads,
+    // pathing predicates going through WorldHelper for example, read this set instead. It's never modified once
+    // published, and publishChanges() rebuilds it at most once per tick no matter how many entries changed.
+    private final Thread owner = Thread.currentThread();
+    private volatile LongHashSet published = new LongHashSet();
+    private boolean changed = false;
+
     @Override
     protected Vec3d getPos(BlockPos item) {
         return WorldHelper.toVec3d(item);
     }
+
+    @Override
+    protected BlacklistEntry getEntry(BlockPos item) {
+        return entries.get(item.asLong());
+    }
+
+    @Override
+    protected void putEntry(BlockPos item, BlacklistEntry entry) {
+        entries.put(item.asLong(), entry);
+    }
+
+    @Override
+    protected BlacklistEntry removeEntry(BlockPos item) {
+        return entries.remove(item.asLong());
+    }
+
+    @Override
+    protected void clearEntries() {
+        entries.clear();
+        published = new LongHashSet();
+        changed = false;
+    }
+
+    @Override
+    public boolean unreachable(BlockPos item) {
+        return unreachable(item.asLong());
+    }
+
+    public boolean unreachable(long packedPos) {
+        if (Thread.currentThread() == owner) {
+            BlacklistEntry entry = entries.get(packedPos);
+            return entry != null && entry.isUnreachable();
+        }
+        return published.contains(packedPos);
+    }
+
+    @Override
+    protected void onReachabilityChanged(BlockPos item, boolean isUnreachable) {
+        if (published.contains(item.asLong()) != isUnreachable) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Makes the changes since the last call visible to other threads. Call once per tick from the owning thread.
+     */
+    public void publishChanges() {
+        if (!changed) return;
+        changed = false;
+        LongHashSet rebuilt = new LongHashSet(entries.size());
+        entries.forEach((packedPos, entry) -> {
+            if (entry.isUnreachable()) {
+                rebuilt.add(packedPos);
+            }
+        });
+        published = rebuilt;
+    }
 }
@@ -7,7 +7,7 @@ import net.minecraft.screen.FurnaceScreenHandler;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 public class ContainerCache {
@@ -16,7 +16,11 @@ public class ContainerCache {
     private final Dimension dimension;
     private final ContainerType containerType;
 
-    private final HashMap<Item, Integer> itemCounts = new HashMap<>();
+    // Item raw ids in ascending order with their counts. A container holds few kinds of items and a lot of
+    // containers get cached, so this stays small instead of having a slot for every item in the registry.
+    private int[] _itemIds = new int[0];
+    private int[] _itemCounts = new int[0];
+    private int _itemTypes;
     private int _emptySlots;
 
     public ContainerCache(Dimension dimension, BlockPos blockPos, ContainerType containerType) {
@@ -26,7 +30,7 @@ public class ContainerCache {
     }
 
     public void update(ScreenHandler screenHandler, Consumer<ItemStack> onStack) {
-        itemCounts.clear();
+        _itemTypes = 0;
         _emptySlots = 0;
         int start = 0;
         int end = screenHandler.slots.size() - (4 * 9); // subtract by player inventory
@@ -43,25 +47,47 @@ public class ContainerCache {
                     _emptySlots++;
                 }
             } else {
-                Item item = stack.getItem();
-                int count = stack.getCount();
-                itemCounts.put(item, itemCounts.getOrDefault(item, 0) + count);
+                addCount(Item.getRawId(stack.getItem()), stack.getCount());
                 onStack.accept(stack);
             }
         }
     }
 
+    private void addCount(int id, int count) {
+        int index = Arrays.binarySearch(_itemIds, 0, _itemTypes, id);
+        if (index >= 0) {
+            _itemCounts[index] += count;
+            return;
+        }
+        index = -index - 1;
+        if (_itemTypes == _itemIds.length) {
+            int capacity = Math.max(8, _itemIds.length * 2);
+            _itemIds = Arrays.copyOf(_itemIds, capacity);
+            _itemCounts = Arrays.copyOf(_itemCounts, capacity);
+        }
+        System.arraycopy(_itemIds, index, _itemIds, index + 1, _itemTypes - index);
+        System.arraycopy(_itemCounts, index, _itemCounts, index + 1, _itemTypes - index);
+        _itemIds[index] = id;
+        _itemCounts[index] = count;
+        _itemTypes++;
+    }
+
+    private int getCount(Item item) {
+        int index = Arrays.binarySearch(_itemIds, 0, _itemTypes, Item.getRawId(item));
+        return index >= 0 ? _itemCounts[index] : 0;
+    }
+
     public int getItemCount(Item... items) {
         int result = 0;
         for (Item item : items) {
-            result += itemCounts.getOrDefault(item, 0);
+            result += getCount(item);
         }
         return result;
     }
 
     public boolean hasItem(Item... items) {
         for (Item item : items) {
-            if (itemCounts.containsKey(item) && itemCounts.get(item) > 0)
+            if (getCount(item) > 0)
                 return true;
         }
         return false;
@@ -1,5 +1,8 @@
 package adris.altoclef.trackers.storage;
 
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.SlotClickChangedEvent;
+import adris.altoclef.eventbus.events.SlotUpdateEvent;
 import adris.altoclef.trackers.Tracker;
 import adris.altoclef.trackers.TrackerManager;
 import adris.altoclef.util.helpers.ItemHelper;
@@ -10,6 +13,7 @@ import adris.altoclef.util.slots.PlayerSlot;
 import adris.altoclef.util.slots.Slot;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
@@ -18,7 +22,6 @@ import net.minecraft.screen.ScreenHandler;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -26,15 +29,25 @@ import java.util.List;
  */
 public class InventorySubTracker extends Tracker {
 
-    private final HashMap<Item, List<Slot>> itemToSlotPlayer = new HashMap<>();
-    private final HashMap<Item, List<Slot>> itemToSlotContainer = new HashMap<>();
-    private final HashMap<Item, Integer> itemCountsPlayer = new HashMap<>();
-    private final HashMap<Item, Integer> itemCountsContainer = new HashMap<>();
+    private final ItemSlotIndex itemsPlayer = new ItemSlotIndex();
+    private final ItemSlotIndex itemsContainer = new ItemSlotIndex();
 
-    private ScreenHandler _prevScreenHandler;
+    // Bumped whenever slot contents might have changed, the maps above are rebuilt only when it moves
+    private int _revision = 0;
+    private int _builtRevision = -1;
+    private PlayerEntity _revisionPlayer;
+    private ScreenHandler _revisionScreenHandler;
+    private int _revisionHandlerRevision;
+    // Using or dropping held items changes them on our side before the server says so, without a slot packet
+    private ItemStack _revisionMainHand = ItemStack.EMPTY;
+    private int _revisionMainHandCount;
+    private ItemStack _revisionOffHand = ItemStack.EMPTY;
+    private int _revisionOffHandCount;
 
     public InventorySubTracker(TrackerManager manager) {
         super(manager);
+        EventBus.subscribe(SlotUpdateEvent.class, evt -> _revision++);
+        EventBus.subscribe(SlotClickChangedEvent.class, evt -> _revision++);
     }
 
     private static boolean shouldIgnoreSlotForContainer(Slot slot) {
@@ -59,27 +72,27 @@ public class InventorySubTracker extends Tracker {
     public int getItemCount(boolean playerInventory, boolean containerInventory, Item... items) {
         ensureUpdated();
         int result = 0;
-        ItemStack cursorStack = StorageHelper.getItemStackInCursorSlot();
+        ItemStack cursorStack = view.getCursorStack();
         for (Item item : items) {
             if (playerInventory && cursorStack.getItem().equals(item))
                 result += cursorStack.getCount();
             if (playerInventory)
-                result += itemCountsPlayer.getOrDefault(item, 0);
+                result += itemsPlayer.getCount(item);
             if (containerInventory)
-                result += itemCountsContainer.getOrDefault(item, 0);
+                result += itemsContainer.getCount(item);
         }
         return result;
     }
 
     public boolean hasItem(boolean playerInventoryOnly, Item... items) {
         ensureUpdated();
-        ItemStack cursorStack = StorageHelper.getItemStackInCursorSlot();
+        ItemStack cursorStack = view.getCursorStack();
         for (Item item : items) {
             if (cursorStack.getItem().equals(item))
                 return true;
-            if (itemCountsPlayer.containsKey(item))
+            if (itemsPlayer.has(item))
                 return true;
-            if (!playerInventoryOnly && itemCountsContainer.containsKey(item))
+            if (!playerInventoryOnly && itemsContainer.has(item))
                 return true;
         }
         return false;
@@ -88,14 +101,14 @@ public class InventorySubTracker extends Tracker {
     public List<Slot> getSlotsWithItems(boolean playerInventory, boolean containerInventory, Item... items) {
         ensureUpdated();
         List<Slot> result = new ArrayList<>();
-        ItemStack cursorStack = StorageHelper.getItemStackInCursorSlot();
+        ItemStack cursorStack = view.getCursorStack();
         for (Item item : items) {
             if (playerInventory && cursorStack.getItem().equals(item))
                 result.add(CursorSlot.SLOT);
             if (playerInventory)
-                result.addAll(itemToSlotPlayer.getOrDefault(item, Collections.emptyList()));
+                itemsPlayer.addSlots(item, result);
             if (containerInventory)
-                result.addAll(itemToSlotContainer.getOrDefault(item, Collections.emptyList()));
+                itemsContainer.addSlots(item, result);
         }
         return result;
     }
@@ -116,10 +129,12 @@ public class InventorySubTracker extends Tracker {
         return result;
     }
 
-    private List<Slot> getSlotsThatCanFit(HashMap<Item, List<Slot>> list, ItemStack item, boolean acceptPartial) {
+    private List<Slot> getSlotsThatCanFit(ItemSlotIndex items, ItemStack item, boolean acceptPartial) {
         List<Slot> result = new ArrayList<>();
+        List<Slot> candidates = new ArrayList<>();
         // First add fillable slots
-        for (Slot toCheckStackable : list.getOrDefault(item.getItem(), Collections.emptyList())) {
+        items.addSlots(item.getItem(), candidates);
+        for (Slot toCheckStackable : candidates) {
             // Ignore cursor slot.
             if (Slot.isCursor(toCheckStackable))
                 continue;
@@ -135,7 +150,9 @@ public class InventorySubTracker extends Tracker {
         // Then add air slots that can insert our item
         if (MinecraftClient.getInstance().player != null) {
             ScreenHandler handler = MinecraftClient.getInstance().player.currentScreenHandler;
-            for (Slot airSlot : list.getOrDefault(Items.AIR, Collections.emptyList())) {
+            candidates.clear();
+            items.addSlots(Items.AIR, candidates);
+            for (Slot airSlot : candidates) {
                 // Ignore cursor slot
                 if (airSlot.equals(CursorSlot.SLOT))
                     continue;
@@ -153,9 +170,9 @@ public class InventorySubTracker extends Tracker {
         ensureUpdated();
         final List<Slot> result = new ArrayList<>();
         if (includePlayer)
-            result.addAll(getSlotsThatCanFit(itemToSlotPlayer, item, acceptPartial));
+            result.addAll(getSlotsThatCanFit(itemsPlayer, item, acceptPartial));
         if (includeContainer)
-            result.addAll(getSlotsThatCanFit(itemToSlotContainer, item, acceptPartial));
+            result.addAll(getSlotsThatCanFit(itemsContainer, item, acceptPartial));
         return result;
     }
 
@@ -163,7 +180,7 @@ public class InventorySubTracker extends Tracker {
         return hasItem(playerInventoryOnly, Items.AIR);
     }
 
-    private void registerItem(ItemStack stack, Slot slot, boolean isSlotPlayerInventory) {
+    private void registerItem(ItemStack stack, int slotIndex, Slot slot, boolean isSlotPlayerInventory) {
         if (stack == null) {
             stack = ItemStack.EMPTY;
         }
@@ -175,55 +192,80 @@ public class InventorySubTracker extends Tracker {
             count = 0;
         }
 
-        if (isSlotPlayerInventory) {
-            itemCountsPlayer.put(item, itemCountsPlayer.getOrDefault(item, 0) + count);
-        } else {
-            itemCountsContainer.put(item, itemCountsContainer.getOrDefault(item, 0) + count);
+        ItemSlotIndex items = isSlotPlayerInventory ? itemsPlayer : itemsContainer;
+        items.add(item, count, slotIndex, slot);
+    }
+
+    /**
+     * See {@link ItemStorageTracker#getInventoryRevision()}
+     */
+    public int getRevision() {
+        PlayerEntity player = view.getPlayer();
+        ScreenHandler handler = view.getScreenHandler();
+        int handlerRevision = handler != null ? handler.getRevision() : 0;
+        if (player != _revisionPlayer || handler != _revisionScreenHandler || handlerRevision != _revisionHandlerRevision) {
+            _revisionPlayer = player;
+            _revisionScreenHandler = handler;
+            _revisionHandlerRevision = handlerRevision;
+            _revision++;
         }
-        if (slot != null) {
-            HashMap<Item, List<Slot>> toAdd = isSlotPlayerInventory ? itemToSlotPlayer : itemToSlotContainer;
-            List<Slot> slots = toAdd.computeIfAbsent(item, ignored -> new ArrayList<>());
-            slots.add(slot);
+        if (player != null) {
+            ItemStack mainHand = player.getMainHandStack();
+            ItemStack offHand = player.getOffHandStack();
+            if (mainHand != _revisionMainHand || mainHand.getCount() != _revisionMainHandCount
+                    || offHand != _revisionOffHand || offHand.getCount() != _revisionOffHandCount) {
+                _revisionMainHand = mainHand;
+                _revisionMainHandCount = mainHand.getCount();
+                _revisionOffHand = offHand;
+                _revisionOffHandCount = offHand.getCount();
+                _revision++;
+            }
         }
+        return _revision;
+    }
+
+    @Override
+    public void setDirty() {
+        super.setDirty();
+        _revision++;
+    }
+
+    @Override
+    protected boolean isDirtiedEveryTick() {
+        return false;
     }
 
     @Override
     protected void updateState() {
-        _prevScreenHandler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
+        _builtRevision = getRevision();
 
-        itemToSlotPlayer.clear();
-        itemToSlotContainer.clear();
-        itemCountsPlayer.clear();
-        itemCountsContainer.clear();
-        if (MinecraftClient.getInstance().player == null)
-            return;
-        ScreenHandler handler = MinecraftClient.getInstance().player.currentScreenHandler;
+        itemsPlayer.clear();
+        itemsContainer.clear();
+        ScreenHandler handler = view.getScreenHandler();
         if (handler == null)
             return;
-        for (Slot slot : Slot.getCurrentScreenSlots()) {
-            // Ignore cursor slot, that's handled separately.
-            if (slot.equals(CursorSlot.SLOT))
-                continue;
-            ItemStack stack = StorageHelper.getItemStackInSlot(slot);
+        // The cursor slot is handled separately.
+        for (int i = 0; i < handler.slots.size(); i++) {
+            Slot slot = view.getScreenSlot(i);
             // Add separately if we're in a container vs player inventory.
 
             if (!shouldIgnoreSlotForContainer(slot)) {
-                registerItem(stack, slot, slot.isSlotInPlayerInventory());
+                // Armor and offhand are ignored above, for everything else this is what StorageHelper.getItemStackInSlot reads
+                ItemStack stack = handler.getSlot(i).getStack();
+                registerItem(stack, i, slot, slot.isSlotInPlayerInventory(handler));
             }
         }
     }
 
     @Override
     protected void reset() {
-        itemToSlotPlayer.clear();
-        itemToSlotContainer.clear();
-        itemCountsPlayer.clear();
-        itemCountsContainer.clear();
+        _builtRevision = -1;
+        itemsPlayer.clear();
+        itemsContainer.clear();
     }
 
     @Override
     protected boolean isDirty() {
-        ScreenHandler handler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
-        return super.isDirty() || handler != _prevScreenHandler;
+        return getRevision() != _builtRevision;
     }
 }
@@ -0,0 +1,105 @@
+package adris.altoclef.trackers.storage;
+
+import adris.altoclef.util.slots.Slot;
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Item counts and the slots holding each item for one screen, indexed by item raw id so lookups are plain array
+ * reads.
+ * <p>
+ * Slots are kept as a bitset per item over the screen's slot indices. Only the items that were added since the
+ * last {@link #clear()} are touched when clearing, so a rebuild costs the number of slots, not the number of items.
+ */
+final class ItemSlotIndex {
+
+    private int[] counts = new int[0];
+    // How many slots hold each item, an item can be present with a count of 0 (air)
+    private int[] stacks = new int[0];
+    // Allocated the first time an item shows up, all of them are words long
+    private long[][] slotBits = new long[0][];
+    private int words = 1;
+    private Slot[] slots = new Slot[64];
+
+    private int[] touched = new int[16];
+    private int touchedSize = 0;
+
+    void clear() {
+        for (int i = 0; i < touchedSize; i++) {
+            int id = touched[i];
+            counts[id] = 0;
+            stacks[id] = 0;
+            Arrays.fill(slotBits[id], 0L);
+        }
+        touchedSize = 0;
+    }
+
+    /**
+     * @param slotIndex Index of the slot in the current screen
+     */
+    void add(Item item, int count, int slotIndex, Slot slot) {
+        int id = Item.getRawId(item);
+        ensureCapacity(id, slotIndex);
+        if (stacks[id] == 0) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[touchedSize++] = id;
+        }
+        if (slotBits[id] == null) {
+            slotBits[id] = new long[words];
+        }
+        counts[id] += count;
+        stacks[id]++;
+        slotBits[id][slotIndex >> 6] |= 1L << slotIndex;
+        slots[slotIndex] = slot;
+    }
+
+    int getCount(Item item) {
+        int id = Item.getRawId(item);
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    boolean has(Item item) {
+        int id = Item.getRawId(item);
+        return id < stacks.length && stacks[id] != 0;
+    }
+
+    /**
+     * Adds the slots holding this item to {@code result}, in screen order.
+     */
+    void addSlots(Item item, List<Slot> result) {
+        int id = Item.getRawId(item);
+        if (id >= stacks.length || stacks[id] == 0) return;
+        long[] bits = slotBits[id];
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                result.add(slots[(word << 6) + bit]);
+                remaining &= remaining - 1;
+            }
+        }
+    }
+
+    private void ensureCapacity(int id, int slotIndex) {
+        if (id >= counts.length) {
+            int size = Math.max(id + 1, Registries.ITEM.size());
+            counts = Arrays.copyOf(counts, size);
+            stacks = Arrays.copyOf(stacks, size);
+            slotBits = Arrays.copyOf(slotBits, size);
+        }
+        if (slotIndex >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slotIndex + 1, slots.length * 2));
+            words = (slots.length + 63) >> 6;
+            for (int i = 0; i < slotBits.length; i++) {
+                if (slotBits[i] != null) {
+                    slotBits[i] = Arrays.copyOf(slotBits[i], words);
+                }
+            }
+        }
+    }
+}
@@ -231,6 +231,16 @@ public class ItemStorageTracker extends Tracker {
         inventory.setDirty();
     }
 
+    /**
+     * A number that changes whenever the player's inventory or the open screen's slots might have changed:
+     * slot packets from the server, our own clicks, held items used or dropped before the server confirms it, a
+     * different screen or a new player. Anything computed purely from slot contents stays valid for as long as this
+     * stays the same.
+     */
+    public int getInventoryRevision() {
+        return inventory.getRevision();
+    }
+
     /**
      * Returns whether an item is present in a container. You can filter out containers
      * you don't like.
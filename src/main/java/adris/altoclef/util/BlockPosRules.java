@@ -0,0 +1,269 @@
+package adris.altoclef.util;
+
+import adris.altoclef.util.collections.LongArrayList;
+import adris.altoclef.util.collections.LongHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A set of "does this position match" rules, like the ones {@link adris.altoclef.BotBehaviour} hands to baritone.
+ * <p>
+ * Rules are explicit positions, boxes, block types or (as a last resort) arbitrary predicates. {@link #compile()}
+ * turns them into a single predicate baritone can test for every node: positions and small boxes become a bitmap
+ * per chunk section, so most checks cost one hash probe and one bit test instead of a call per rule.
+ * <p>
+ * The rules themselves are only meant to be changed from the client thread, compiled rules never change.
+ */
+public class BlockPosRules {
+
+    // Boxes up to this many blocks are written into the section bitmaps, bigger ones are checked on their own
+    private static final long MAX_RASTERIZED_BOX_VOLUME = 16 * 16 * 16 * 8;
+
+    private final LongHashSet positions = new LongHashSet();
+    private final List<BlockBox> boxes = new ArrayList<>();
+    private final HashSet<Block> blocks = new HashSet<>();
+    private final List<Predicate<BlockPos>> predicates = new ArrayList<>();
+
+    private Compiled compiled = null;
+
+    public BlockPosRules() {
+    }
+
+    public BlockPosRules(BlockPosRules toCopy) {
+        addAll(toCopy);
+    }
+
+    /**
+     * Reads rules back out of a list of predicates, unwrapping anything {@link #compile()} produced.
+     */
+    public static BlockPosRules of(Collection<? extends Predicate<BlockPos>> predicates) {
+        BlockPosRules rules = new BlockPosRules();
+        for (Predicate<BlockPos> predicate : predicates) {
+            rules.add(predicate);
+        }
+        return rules;
+    }
+
+    public void add(BlockPos pos) {
+        positions.add(pos.asLong());
+        compiled = null;
+    }
+
+    /**
+     * @param box Inclusive on both ends
+     */
+    public void add(BlockBox box) {
+        boxes.add(box);
+        compiled = null;
+    }
+
+    /**
+     * Matches any position that currently holds one of these blocks.
+     */
+    public void add(Block... blocks) {
+        for (Block block : blocks) {
+            this.blocks.add(block);
+        }
+        compiled = null;
+    }
+
+    public void add(Predicate<BlockPos> predicate) {
+        if (predicate instanceof Compiled other) {
+            addAll(other.source);
+            return;
+        }
+        predicates.add(predicate);
+        compiled = null;
+    }
+
+    public void addAll(BlockPosRules other) {
+        other.positions.forEach(positions::add);
+        boxes.addAll(other.boxes);
+        blocks.addAll(other.blocks);
+        predicates.addAll(other.predicates);
+        compiled = null;
+    }
+
+    public boolean isEmpty() {
+        return positions.isEmpty() && boxes.isEmpty() && blocks.isEmpty() && predicates.isEmpty();
+    }
+
+    /**
+     * @return an immutable predicate matching every rule added so far. Cached until the rules change.
+     */
+    public Predicate<BlockPos> compile() {
+        if (compiled == null) {
+            compiled = new Compiled(new BlockPosRules(this));
+        }
+        return compiled;
+    }
+
+    private static final class Compiled implements Predicate<BlockPos> {
+
+        // Kept so compiled rules can be read back in and extended
+        private final BlockPosRules source;
+
+        // chunk section -> 4096 bit bitmap (y, z, x order), open addressing
+        private final long[] sectionKeys;
+        private final long[][] sectionBits;
+        private final int sectionMask;
+
+        // Boxes too big for the bitmaps
+        private final int[] boxMin;
+        private final int[] boxMax;
+        private final int boxCount;
+
+        // Indexed by raw block id
+        private final boolean[] blockIds;
+
+        private final Predicate<BlockPos>[] predicates;
+
+        @SuppressWarnings("unchecked")
+        private Compiled(BlockPosRules source) {
+            this.source = source;
+
+            SectionBuilder sections = new SectionBuilder();
+            source.positions.forEach(sections::set);
+
+            ArrayList<BlockBox> largeBoxes = new ArrayList<>();
+            for (BlockBox box : source.boxes) {
+                // In longs, boxes spanning every y level overflow the int counts
+                long volume = ((long) box.getMaxX() - box.getMinX() + 1)
+                        * ((long) box.getMaxY() - box.getMinY() + 1)
+                        * ((long) box.getMaxZ() - box.getMinZ() + 1);
+                if (volume > MAX_RASTERIZED_BOX_VOLUME) {
+                    largeBoxes.add(box);
+                    continue;
+                }
+                for (int y = box.getMinY(); y <= box.getMaxY(); y++) {
+                    for (int z = box.getMinZ(); z <= box.getMaxZ(); z++) {
+                        for (int x = box.getMinX(); x <= box.getMaxX(); x++) {
+                            sections.set(BlockPos.asLong(x, y, z));
+                        }
+                    }
+                }
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(4, sections.size() * 2 - 1)) << 1;
+            sectionKeys = new long[capacity];
+            sectionBits = new long[capacity][];
+            sectionMask = capacity - 1;
+            for (int i = 0; i < sections.size(); i++) {
+                long key = sections.keys.get(i);
+                int slot = hash(key) & sectionMask;
+                while (sectionBits[slot] != null) {
+                    slot = (slot + 1) & sectionMask;
+                }
+                sectionKeys[slot] = key;
+                sectionBits[slot] = sections.bits.get(i);
+            }
+
+            boxCount = largeBoxes.size();
+            boxMin = new int[boxCount * 3];
+            boxMax = new int[boxCount * 3];
+            for (int i = 0; i < boxCount; i++) {
+                BlockBox box = largeBoxes.get(i);
+                boxMin[i * 3] = box.getMinX();
+                boxMin[i * 3 + 1] = box.getMinY();
+                boxMin[i * 3 + 2] = box.getMinZ();
+                boxMax[i * 3] = box.getMaxX();
+                boxMax[i * 3 + 1] = box.getMaxY();
+                boxMax[i * 3 + 2] = box.getMaxZ();
+            }
+
+            if (source.blocks.isEmpty()) {
+                blockIds = null;
+            } else {
+                int maxId = 0;
+                for (Block block : source.blocks) {
+                    maxId = Math.max(maxId, Registries.BLOCK.getRawId(block));
+                }
+                blockIds = new boolean[maxId + 1];
+                for (Block block : source.blocks) {
+                    blockIds[Registries.BLOCK.getRawId(block)] = true;
+                }
+            }
+
+            predicates = source.predicates.toArray(new Predicate[0]);
+        }
+
+        @Override
+        public boolean test(BlockPos pos) {
+            int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+
+            long sectionKey = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            for (int slot = hash(sectionKey) & sectionMask; sectionBits[slot] != null; slot = (slot + 1) & sectionMask) {
+                if (sectionKeys[slot] == sectionKey) {
+                    int index = bitIndex(x, y, z);
+                    if ((sectionBits[slot][index >>> 6] & (1L << index)) != 0) return true;
+                    break;
+                }
+            }
+
+            for (int i = 0; i < boxCount * 3; i += 3) {
+                if (x >= boxMin[i] && x <= boxMax[i]
+                        && y >= boxMin[i + 1] && y <= boxMax[i + 1]
+                        && z >= boxMin[i + 2] && z <= boxMax[i + 2]) return true;
+            }
+
+            if (blockIds != null) {
+                ClientWorld world = MinecraftClient.getInstance().world;
+                if (world != null) {
+                    int id = Registries.BLOCK.getRawId(world.getBlockState(pos).getBlock());
+                    if (id >= 0 && id < blockIds.length && blockIds[id]) return true;
+                }
+            }
+
+            for (Predicate<BlockPos> predicate : predicates) {
+                if (predicate.test(pos)) return true;
+            }
+            return false;
+        }
+
+        private static int bitIndex(int x, int y, int z) {
+            return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        // Collects the section bitmaps while compiling
+        private static final class SectionBuilder {
+            private final LongArrayList keys = new LongArrayList();
+            private final ArrayList<long[]> bits = new ArrayList<>();
+            private final HashMap<Long, Integer> indices = new HashMap<>();
+
+            private void set(long packedPos) {
+                int x = BlockPos.unpackLongX(packedPos), y = BlockPos.unpackLongY(packedPos), z = BlockPos.unpackLongZ(packedPos);
+                long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+                Integer index = indices.get(key);
+                if (index == null) {
+                    index = bits.size();
+                    indices.put(key, index);
+                    keys.add(key);
+                    bits.add(new long[64]);
+                }
+                int bit = bitIndex(x, y, z);
+                bits.get(index)[bit >>> 6] |= 1L << bit;
+            }
+
+            private int size() {
+                return bits.size();
+            }
+        }
+    }
+}
@@ -1,25 +1,25 @@
 package adris.altoclef.util.baritone;
 
 import adris.altoclef.AltoClef;
-import adris.altoclef.Debug;
 import adris.altoclef.util.helpers.BaritoneHelper;
-import adris.altoclef.util.helpers.ProjectileHelper;
 import baritone.api.pathing.goals.Goal;
-import net.minecraft.util.math.Vec3d;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class GoalDodgeProjectiles implements Goal {
-
-    private static final double Y_SCALE = 0.3f;
+/**
+ * Moves out of the way of projectiles.
+ * <p>
+ * Baritone evaluates this for every node it looks at, so it only reads a snapshot of the projectiles
+ * (see {@link #takeSnapshot}) and does the closest approach math on primitives.
+ */
+public class GoalDodgeProjectiles implements Goal, ISnapshotGoal {
 
     private final AltoClef mod;
 
     private final double distanceHorizontal;
     private final double distanceVertical;
 
-    private final List<CachedProjectile> cachedProjectiles = new ArrayList<>();
+    private volatile ProjectileSnapshot snapshot = ProjectileSnapshot.EMPTY;
 
     public GoalDodgeProjectiles(AltoClef mod, double distanceHorizontal, double distanceVertical) {
         this.mod = mod;
@@ -27,80 +27,115 @@ public class GoalDodgeProjectiles implements Goal {
         this.distanceVertical = distanceVertical;
     }
 
-    private static boolean isInvalidProjectile(CachedProjectile projectile) {
-        //noinspection RedundantIfStatement
-        if (projectile == null) return true;
-        //if (projectile.getVelocity().lengthSquared() < 0.1) return false;
-        return false;
+    @Override
+    public void takeSnapshot() {
+        List<CachedProjectile> projectiles = mod.getEntityTracker().getProjectiles();
+        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
+            snapshot = new ProjectileSnapshot(projectiles);
+        }
     }
 
     @Override
     public boolean isInGoal(int x, int y, int z) {
-        List<CachedProjectile> projectiles = getProjectiles();
-        Vec3d p = new Vec3d(x, y, z);
-        //Debug.logMessage("SIZE: " + projectiles.size());
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            if (!projectiles.isEmpty()) {
-                for (CachedProjectile projectile : projectiles) {
-                    if (isInvalidProjectile(projectile)) continue;
-                    try {
-                        if (projectile.needsToRecache()) {
-                            projectile.setCacheHit(ProjectileHelper.calculateArrowClosestApproach(projectile, p));
-                        }
-                        Vec3d hit = projectile.getCachedHit();
-                        //Debug.logMessage("Hit Delta: " + p.subtract(hit));
-
-                        if (isHitCloseEnough(hit, p)) return false;
-                    } catch (Exception e) {
-                        Debug.logWarning("Weird exception caught while checking for goal: " + e.getMessage());
-                        /// ????? No clue why a nullptrexception happens here.
-                    }
-                    //double sqFromMob = creepuh.squaredDistanceTo(x, y, z);
-                    //if (sqFromMob < _distance*_distance) return false;
-                }
-            }
+        ProjectileSnapshot projectiles = snapshot;
+        for (int i = 0; i < projectiles.size; i++) {
+            if (projectiles.hitDistanceSq(i, x, y, z, distanceHorizontal, distanceVertical) >= 0) return false;
         }
-        //Debug.logMessage("COMFY: " + p.subtract(MinecraftClient.getInstance().player.getPos()));
         return true;
     }
 
     @Override
     public double heuristic(int x, int y, int z) {
-        Vec3d p = new Vec3d(x, y, z);
         // The HIGHER the cost, the better (total distance from arrows)
         double costFactor = 0;
-
-        List<CachedProjectile> projectiles = getProjectiles();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            if (!projectiles.isEmpty()) {
-                for (CachedProjectile projectile : projectiles) {
-                    if (isInvalidProjectile(projectile)) continue;
-
-                    if (projectile.needsToRecache()) {
-                        projectile.setCacheHit(ProjectileHelper.calculateArrowClosestApproach(projectile, p));
-                    }
-                    Vec3d hit = projectile.getCachedHit();
-
-                    double arrowPenalty = ProjectileHelper.getFlatDistanceSqr(projectile.position.x, projectile.position.z, projectile.velocity.x, projectile.velocity.z, p.x, p.z);
-                    //double arrowCost = hit.squaredDistanceTo(p); //Math.pow(p.x - hit.x, 2) + Math.pow(p.z - hit.z, 2);
-
-                    if (isHitCloseEnough(hit, p)) {
-                        costFactor += arrowPenalty;
-                    }
-                }
+        ProjectileSnapshot projectiles = snapshot;
+        for (int i = 0; i < projectiles.size; i++) {
+            double hitDistanceSq = projectiles.hitDistanceSq(i, x, y, z, distanceHorizontal, distanceVertical);
+            if (hitDistanceSq >= 0) {
+                // The flat distance to the arrow's path, which is where the closest approach lies horizontally
+                costFactor += hitDistanceSq;
             }
         }
         return -1 * costFactor;
     }
 
-    private boolean isHitCloseEnough(Vec3d hit, Vec3d to) {
-        Vec3d delta = to.subtract(hit);
-        double horizontalSquared = delta.x * delta.x + delta.z * delta.z;
-        double vertical = Math.abs(delta.y);
-        return horizontalSquared < distanceHorizontal * distanceHorizontal && vertical < distanceVertical;
-    }
+    /**
+     * Projectile positions, velocities and gravity copied into flat arrays. Never changed after it's created.
+     */
+    private static final class ProjectileSnapshot {
+        private static final ProjectileSnapshot EMPTY = new ProjectileSnapshot(List.of());
+
+        private final int size;
+        private final double[] posX, posY, posZ;
+        private final double[] velX, velY, velZ;
+        private final double[] gravity;
+        // Derived from the velocity, so nodes don't have to recompute them
+        private final double[] horizontalVel;
+        private final double[] horizontalVelSq;
+
+        private ProjectileSnapshot(List<CachedProjectile> projectiles) {
+            int count = 0;
+            for (CachedProjectile projectile : projectiles) {
+                if (isValid(projectile)) count++;
+            }
+            size = count;
+            posX = new double[count];
+            posY = new double[count];
+            posZ = new double[count];
+            velX = new double[count];
+            velY = new double[count];
+            velZ = new double[count];
+            gravity = new double[count];
+            horizontalVel = new double[count];
+            horizontalVelSq = new double[count];
+
+            int i = 0;
+            for (CachedProjectile projectile : projectiles) {
+                if (!isValid(projectile)) continue;
+                posX[i] = projectile.position.x;
+                posY[i] = projectile.position.y;
+                posZ[i] = projectile.position.z;
+                velX[i] = projectile.velocity.x;
+                velY[i] = projectile.velocity.y;
+                velZ[i] = projectile.velocity.z;
+                gravity[i] = projectile.gravity;
+                horizontalVelSq[i] = velX[i] * velX[i] + velZ[i] * velZ[i];
+                horizontalVel[i] = Math.sqrt(horizontalVelSq[i]);
+                i++;
+            }
+        }
 
-    private List<CachedProjectile> getProjectiles() {
-        return mod.getEntityTracker().getProjectiles();
+        private static boolean isValid(CachedProjectile projectile) {
+            return projectile != null && projectile.position != null && projectile.velocity != null;
+        }
+
+        /**
+         * Same math as {@link adris.altoclef.util.helpers.ProjectileHelper#calculateArrowClosestApproach}, without the vectors.
+         *
+         * @return the squared horizontal distance between (x, y, z) and where the projectile passes it closest,
+         * or -1 if it doesn't pass close enough to hit.
+         */
+        private double hitDistanceSq(int i, int x, int y, int z, double distanceHorizontal, double distanceVertical) {
+            // Closest point to us on the projectile's flat path
+            double t = (velX[i] * (x - posX[i]) + velZ[i] * (z - posZ[i])) / horizontalVelSq[i];
+            double hitX = posX[i] + velX[i] * t;
+            double hitZ = posZ[i] + velZ[i] * t;
+
+            // Height of the projectile once it gets there
+            double traveledX = hitX - posX[i];
+            double traveledZ = hitZ - posZ[i];
+            double time = Math.sqrt(traveledX * traveledX + traveledZ * traveledZ) / horizontalVel[i];
+            double hitY = posY[i] - (velY[i] * time) - 0.5 * (gravity[i] * time * time);
+
+            double deltaX = x - hitX;
+            double deltaZ = z - hitZ;
+            double horizontalSquared = deltaX * deltaX + deltaZ * deltaZ;
+            double vertical = Math.abs(y - hitY);
+            // Projectiles without horizontal movement end up as NaN here and never count as a hit, same as before
+            if (horizontalSquared < distanceHorizontal * distanceHorizontal && vertical < distanceVertical) {
+                return horizontalSquared;
+            }
+            return -1;
+        }
     }
 }
@@ -9,7 +9,16 @@ import net.minecraft.entity.Entity;
 
 import java.util.List;
 
-public abstract class GoalRunAwayFromEntities implements Goal {
+/**
+ * Moves away from a set of entities.
+ * <p>
+ * Baritone evaluates this for every node it looks at, so it only reads a snapshot of the entities
+ * (see {@link #takeSnapshot}) instead of the entities themselves.
+ */
+public abstract class GoalRunAwayFromEntities implements Goal, ISnapshotGoal {
+
+    // If we have 100 players, this will never calculate.
+    protected static final int MAX_HEURISTIC_ENTITIES = 10;
 
     private final AltoClef mod;
     private final double distance;
@@ -21,6 +30,8 @@ public abstract class GoalRunAwayFromEntities implements Goal {
     // Too low: We will just run straight into the entity to go past it.
     private final double penaltyFactor;
 
+    private volatile EntitySnapshot snapshot = EntitySnapshot.EMPTY;
+
     public GoalRunAwayFromEntities(AltoClef mod, double distance, boolean xzOnly, double penaltyFactor) {
         this.mod = mod;
         this.distance = distance;
@@ -29,21 +40,47 @@ public abstract class GoalRunAwayFromEntities implements Goal {
     }
 
     @Override
-    public boolean isInGoal(int x, int y, int z) {
+    public void takeSnapshot() {
         List<Entity> entities = getEntities(mod);
         synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            if (!entities.isEmpty()) {
-                for (Entity entity : entities) {
-                    if (entity == null || !entity.isAlive()) continue;
-                    double sqDistance;
-                    if (xzOnly) {
-                        sqDistance = entity.getPos().subtract(x, y, z).multiply(1, 0, 1).lengthSquared();
-                    } else {
-                        sqDistance = entity.squaredDistanceTo(x, y, z);
-                    }
-                    if (sqDistance < distance * distance) return false;
-                }
+            int count = 0;
+            for (Entity entity : entities) {
+                if (entity != null && entity.isAlive()) count++;
+            }
+            EntitySnapshot result = new EntitySnapshot(count);
+            Entity[] live = new Entity[count];
+            int i = 0;
+            for (Entity entity : entities) {
+                if (entity == null || !entity.isAlive()) continue;
+                live[i] = entity;
+                result.x[i] = entity.getX();
+                result.y[i] = entity.getY();
+                result.z[i] = entity.getZ();
+                result.eyeY[i] = entity.getEyeY();
+                result.blockX[i] = entity.getBlockX();
+                result.blockY[i] = entity.getBlockY();
+                result.blockZ[i] = entity.getBlockZ();
+                result.factor[i] = captureFactor(entity);
+                i++;
+            }
+            onSnapshot(result, live);
+            snapshot = result;
+        }
+    }
+
+    @Override
+    public boolean isInGoal(int x, int y, int z) {
+        EntitySnapshot entities = snapshot;
+        double distanceSq = distance * distance;
+        for (int i = 0; i < entities.size; i++) {
+            double dx = entities.x[i] - x;
+            double dz = entities.z[i] - z;
+            double sqDistance = dx * dx + dz * dz;
+            if (!xzOnly) {
+                double dy = entities.y[i] - y;
+                sqDistance += dy * dy;
             }
+            if (sqDistance < distanceSq) return false;
         }
         return true;
     }
@@ -52,41 +89,99 @@ public abstract class GoalRunAwayFromEntities implements Goal {
     public double heuristic(int x, int y, int z) {
         // The lower the cost, the better.
         double costSum = 0;
-        List<Entity> entities = getEntities(mod);
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            int max = 10; // If we have 100 players, this will never calculate.
-            int counter = 0;
-            if (!entities.isEmpty()) {
-                for (Entity entity : entities) {
-                    counter++;
-                    if (entity == null || !entity.isAlive()) continue;
-                    double cost = getCostOfEntity(entity, x, y, z);
-                    if (cost != 0) {
-                        // We want the CLOSER entities to have a bigger weight than the further ones.
-                        costSum += 1 / cost;
-                    } else {
-                        // Bad >:(
-                        costSum += 1000;
-                    }
-                    if (counter >= max) break;
-                }
+        EntitySnapshot entities = snapshot;
+        int count = Math.min(entities.size, MAX_HEURISTIC_ENTITIES);
+        for (int i = 0; i < count; i++) {
+            double cost = getCostOfEntity(entities, i, x, y, z);
+            if (cost != 0) {
+                // We want the CLOSER entities to have a bigger weight than the further ones.
+                costSum += 1 / cost;
+            } else {
+                // Bad >:(
+                costSum += 1000;
             }
-            if (counter > 0) {
-                costSum /= counter;
-            }
-            return costSum * penaltyFactor;
         }
+        if (count > 0) {
+            costSum /= count;
+        }
+        return costSum * penaltyFactor;
     }
 
+    /**
+     * Called from the client thread while taking a snapshot.
+     */
     protected abstract List<Entity> getEntities(AltoClef mod);
 
-    // Virtual
-    protected double getCostOfEntity(Entity entity, int x, int y, int z) {
+    /**
+     * Lets subclasses keep one extra value per entity for {@link #getCostOfEntity}, read on the client thread.
+     */
+    protected double captureFactor(Entity entity) {
+        return 1;
+    }
+
+    /**
+     * Lets subclasses copy anything else they need from the world, read on the client thread right before
+     * {@code snapshot} is published. {@code entities} is in the same order as the snapshot.
+     */
+    protected void onSnapshot(EntitySnapshot snapshot, Entity[] entities) {
+    }
+
+    // Virtual. Called from the pathing thread, only use the snapshot.
+    protected double getCostOfEntity(EntitySnapshot entities, int index, int x, int y, int z) {
         double heuristic = 0;
         if (!xzOnly) {
-            heuristic += GoalYLevel.calculate(entity.getBlockPos().getY(), y);
+            heuristic += GoalYLevel.calculate(entities.blockY[index], y);
+        }
+        heuristic += GoalXZ.calculate(entities.blockX[index] - x, entities.blockZ[index] - z);
+        return heuristic;
+    }
+
+    /**
+     * Entity positions copied into flat arrays. Never changed after it's published.
+     */
+    public static final class EntitySnapshot {
+        private static final EntitySnapshot EMPTY = new EntitySnapshot(0);
+
+        private final int size;
+        private final double[] x, y, z;
+        private final double[] eyeY;
+        private final int[] blockX, blockY, blockZ;
+        private final double[] factor;
+
+        private EntitySnapshot(int size) {
+            this.size = size;
+            x = new double[size];
+            y = new double[size];
+            z = new double[size];
+            eyeY = new double[size];
+            blockX = new int[size];
+            blockY = new int[size];
+            blockZ = new int[size];
+            factor = new double[size];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double getX(int index) {
+            return x[index];
+        }
+
+        public double getY(int index) {
+            return y[index];
+        }
+
+        public double getZ(int index) {
+            return z[index];
+        }
+
+        public double getEyeY(int index) {
+            return eyeY[index];
+        }
+
+        public double getFactor(int index) {
+            return factor[index];
         }
-        heuristic += GoalXZ.calculate(entity.getBlockPos().getX() - x, entity.getBlockPos().getZ() - z);
-        return heuristic; //entity.squaredDistanceTo(x, y, z);
     }
 }
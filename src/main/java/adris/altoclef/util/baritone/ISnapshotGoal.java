@@ -0,0 +1,12 @@
+package adris.altoclef.util.baritone;
+
+/**
+ * A goal that evaluates against its own copy of world/entity state, so baritone can call it from the
+ * pathing thread without taking locks or touching live entities.
+ */
+public interface ISnapshotGoal {
+    /**
+     * Copies whatever state the goal needs. Only call this from the client thread.
+     */
+    void takeSnapshot();
+}
@@ -0,0 +1,82 @@
+package adris.altoclef.util.collections;
+
+import net.minecraft.block.Block;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Block positions grouped by block, each group stored as a {@link LongHashSet} of packed positions.
+ */
+public class BlockPositionMap {
+
+    private final HashMap<Block, LongHashSet> positions = new HashMap<>();
+
+    public boolean add(Block block, BlockPos pos) {
+        return add(block, pos.asLong());
+    }
+
+    public boolean add(Block block, long packedPos) {
+        return positions.computeIfAbsent(block, ignored -> new LongHashSet()).add(packedPos);
+    }
+
+    public boolean remove(Block block, BlockPos pos) {
+        LongHashSet set = positions.get(block);
+        if (set == null || !set.remove(pos.asLong())) return false;
+        if (set.isEmpty()) {
+            positions.remove(block);
+        }
+        return true;
+    }
+
+    public boolean contains(Block block, BlockPos pos) {
+        LongHashSet set = positions.get(block);
+        return set != null && set.contains(pos.asLong());
+    }
+
+    /**
+     * @return the packed positions of this block, or null if there are none
+     */
+    public LongHashSet get(Block block) {
+        return positions.get(block);
+    }
+
+    public Set<Block> getBlocks() {
+        return positions.keySet();
+    }
+
+    public Set<Map.Entry<Block, LongHashSet>> entrySet() {
+        return positions.entrySet();
+    }
+
+    /**
+     * Empties every group but keeps the sets allocated, for maps that get refilled every tick.
+     */
+    public void clearPositions() {
+        for (LongHashSet set : positions.values()) {
+            set.clear();
+        }
+    }
+
+    public void removeEmpty() {
+        for (Iterator<LongHashSet> iterator = positions.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (LongHashSet set : positions.values()) {
+            if (!set.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        positions.clear();
+    }
+}
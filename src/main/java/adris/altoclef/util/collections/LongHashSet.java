@@ -0,0 +1,229 @@
+package adris.altoclef.util.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open addressing hash set of primitive longs, meant for block positions packed with `BlockPos.asLong()`.
+ * <p>
+ * Compared to a `HashSet<BlockPos>` this stores 8 bytes per slot instead of a boxed position plus a hash entry.
+ * Uses linear probing with backward shift deletion, so removing never leaves tombstones behind.
+ */
+public class LongHashSet {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    // 0 marks a free slot, the key 0 itself is kept track of separately.
+    private long[] keys;
+    private boolean containsZero;
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongHashSet(LongHashSet other) {
+        keys = other.keys.clone();
+        containsZero = other.containsZero;
+        mask = other.mask;
+        size = other.size;
+        maxFill = other.maxFill;
+    }
+
+    public boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) return false;
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        if (++size >= maxFill) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!containsZero) return false;
+            containsZero = false;
+            size--;
+            return true;
+        }
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                size--;
+                shiftKeys(pos);
+                return true;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) return containsZero;
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) return true;
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key but keeps the allocated table around, for sets that get refilled over and over.
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) consumer.accept(0);
+        for (long key : keys) {
+            if (key != 0) consumer.accept(key);
+        }
+    }
+
+    /**
+     * @return true as soon as one key passes the test
+     */
+    public boolean anyMatch(LongPredicate test) {
+        if (containsZero && test.test(0)) return true;
+        for (long key : keys) {
+            if (key != 0 && test.test(key)) return true;
+        }
+        return false;
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        if (containsZero) result[i++] = 0;
+        for (long key : keys) {
+            if (key != 0) result[i++] = key;
+        }
+        return result;
+    }
+
+    /**
+     * Iterates over the keys. The set must not be modified while iterating.
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private boolean zeroPending = containsZero;
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < keys.length && keys[from] == 0) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return zeroPending || next < keys.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (zeroPending) {
+                    zeroPending = false;
+                    return 0;
+                }
+                if (next >= keys.length) throw new NoSuchElementException();
+                long key = keys[next];
+                next = advance(next + 1);
+                return key;
+            }
+        };
+    }
+
+    // After removing a key, moves up the keys that probed past it so lookups don't stop early.
+    private void shiftKeys(int pos) {
+        int last;
+        long current;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                if ((current = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int slot = hash(current) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] old = keys;
+        allocate(newCapacity);
+        for (long key : old) {
+            if (key == 0) continue;
+            int pos = hash(key) & mask;
+            while (keys[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        maxFill = Math.min(capacity - 1, (int) Math.ceil(capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+}
@@ -0,0 +1,194 @@
+package adris.altoclef.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive longs to objects, meant for block positions packed with `BlockPos.asLong()`.
+ * <p>
+ * Same layout as {@link LongHashSet} with a parallel value array: linear probing with backward shift deletion, and
+ * the key 0 kept track of separately.
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    // 0 marks a free slot, the key 0 itself is kept track of separately.
+    private long[] keys;
+    private Object[] values;
+    private boolean containsZero;
+    private Object zeroValue;
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    public LongObjectHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0) return containsZero ? (V) zeroValue : null;
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) return (V) values[pos];
+            pos = (pos + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) return containsZero;
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) return true;
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the value that was there before, null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0) {
+            V previous = containsZero ? (V) zeroValue : null;
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                V previous = (V) values[pos];
+                values[pos] = value;
+                return previous;
+            }
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = value;
+        if (++size >= maxFill) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, null if the key wasn't there
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            if (!containsZero) return null;
+            V previous = (V) zeroValue;
+            containsZero = false;
+            zeroValue = null;
+            size--;
+            return previous;
+        }
+
+        int pos = hash(key) & mask;
+        long current;
+        while ((current = keys[pos]) != 0) {
+            if (current == key) {
+                V previous = (V) values[pos];
+                size--;
+                shiftKeys(pos);
+                return previous;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        containsZero = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer) {
+        if (containsZero) consumer.accept(0, (V) zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) consumer.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    // After removing a key, moves up the entries that probed past it so lookups don't stop early.
+    private void shiftKeys(int pos) {
+        int last;
+        long current;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                if ((current = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    values[last] = null;
+                    return;
+                }
+                int slot = hash(current) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0) continue;
+            int pos = hash(key) & mask;
+            while (keys[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+            values[pos] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        maxFill = Math.min(capacity - 1, (int) Math.ceil(capacity * LOAD_FACTOR));
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+}
@@ -45,6 +45,16 @@ public class StorageHelper {
     public static List<PlayerSlot> INACCESSIBLE_PLAYER_SLOTS = Stream.concat(Stream.of(PlayerSlot.CRAFT_INPUT_SLOTS), Stream.of(PlayerSlot.ARMOR_SLOTS)).toList();
     private static final int OFF_HAND_SLOT = 40;
 
+    // Results that only depend on slot contents, cached per inventory revision (see ItemStorageTracker#getInventoryRevision)
+    private static int garbageSlotRevision = -1;
+    private static int garbageSlotProtectedRevision = -1;
+    private static Settings garbageSlotSettings;
+    private static Optional<Slot> garbageSlot = Optional.empty();
+    private static int foodScoreRevision = -1;
+    private static int foodScore;
+    private static int recipeMaterialsRevision = -1;
+    private static final HashMap<List<RecipeTarget>, Boolean> recipeMaterials = new HashMap<>();
+
     public static void closeScreen() {
         if (MinecraftClient.getInstance().player == null)
             return;
@@ -195,6 +205,19 @@ public class StorageHelper {
 
     // Gets a slot with an item we can throw away
     public static Optional<Slot> getGarbageSlot(AltoClef mod) {
+        // Also depends on settings and protected items, which change without the inventory changing
+        int revision = mod.getItemStorage().getInventoryRevision();
+        int protectedRevision = mod.getBehaviour().getProtectedItemsRevision();
+        if (revision != garbageSlotRevision || protectedRevision != garbageSlotProtectedRevision || mod.getModSettings() != garbageSlotSettings) {
+            garbageSlot = findGarbageSlot(mod);
+            garbageSlotRevision = revision;
+            garbageSlotProtectedRevision = protectedRevision;
+            garbageSlotSettings = mod.getModSettings();
+        }
+        return garbageSlot;
+    }
+
+    private static Optional<Slot> findGarbageSlot(AltoClef mod) {
         // Throwaway items, but keep a few for building.
         Slot throwawayStackSlot = null;
         int throwawayStackBlockCount = Integer.MAX_VALUE;
@@ -516,7 +539,15 @@ public class StorageHelper {
 
     public static int calculateInventoryFoodScore() {
         ItemStorageTracker itemStorage = AltoClef.getInstance().getItemStorage();
+        int revision = itemStorage.getInventoryRevision();
+        if (revision != foodScoreRevision) {
+            foodScore = calculateFoodScore(itemStorage);
+            foodScoreRevision = revision;
+        }
+        return foodScore;
+    }
 
+    private static int calculateFoodScore(ItemStorageTracker itemStorage) {
         int result = 0;
         if (!itemStorage.getItemStacksPlayerInventory(true).isEmpty()) {
             for (ItemStack stack : itemStorage.getItemStacksPlayerInventory(true)) {
@@ -544,6 +575,21 @@ public class StorageHelper {
      */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public static boolean hasRecipeMaterialsOrTarget(AltoClef mod, RecipeTarget... targets) {
+        int revision = mod.getItemStorage().getInventoryRevision();
+        if (revision != recipeMaterialsRevision) {
+            recipeMaterials.clear();
+            recipeMaterialsRevision = revision;
+        }
+        List<RecipeTarget> key = List.of(targets);
+        Boolean cached = recipeMaterials.get(key);
+        if (cached == null) {
+            cached = checkRecipeMaterialsOrTarget(mod, targets);
+            recipeMaterials.put(key, cached);
+        }
+        return cached;
+    }
+
+    private static boolean checkRecipeMaterialsOrTarget(AltoClef mod, RecipeTarget... targets) {
         HashMap<Integer, Integer> slotUsedCounts = new HashMap<>();
         for (RecipeTarget target : targets) {
             CraftingRecipe recipe = target.getRecipe();
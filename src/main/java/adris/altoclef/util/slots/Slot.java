@@ -159,6 +159,13 @@ public abstract class Slot {
      */
     public boolean isSlotInPlayerInventory() {
         ScreenHandler handler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
+        return isSlotInPlayerInventory(handler);
+    }
+
+    /**
+     * Same as {@link #isSlotInPlayerInventory()}, for a given screen handler instead of the open one.
+     */
+    public boolean isSlotInPlayerInventory(ScreenHandler handler) {
         int windowSlot = getWindowSlot();
         if (handler instanceof PlayerScreenHandler) {
             // Everything visible is player inventory.